@@ -0,0 +1,6 @@
+package com.example.smartshop.commons.enums;
+
+public enum CacheCodecFormat {
+    JSON,  // GenericJackson2JsonRedisSerializer, class name on every typed value
+    SMILE  // binary Smile, repeated names/class ids back-referenced, Deflate above a size threshold
+}
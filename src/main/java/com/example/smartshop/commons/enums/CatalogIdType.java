@@ -0,0 +1,9 @@
+package com.example.smartshop.commons.enums;
+
+/**
+ * Id spaces tracked by the catalog id filter
+ */
+public enum CatalogIdType {
+    PRODUCT,
+    CATEGORY
+}
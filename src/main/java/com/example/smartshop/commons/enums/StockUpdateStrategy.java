@@ -0,0 +1,7 @@
+package com.example.smartshop.commons.enums;
+
+public enum StockUpdateStrategy {
+    PESSIMISTIC, // SELECT ... FOR UPDATE, modify entity, flush
+    ATOMIC,      // single conditional UPDATE ... WHERE stock + delta >= 0
+    OPTIMISTIC   // read stock + version, UPDATE ... WHERE version = :read, retry on conflict
+}
@@ -2,6 +2,7 @@ package com.example.smartshop.commons.exceptions;
 
 import com.example.smartshop.models.dtos.responses.ApiResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -100,6 +101,23 @@ public class GlobalExceptionHandler {
                         .build());
     }
 
+    /**
+     * The row changed between read and write (e.g. a purchase bumped the product version
+     * during an update): the client reloads and resubmits instead of overwriting blindly
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ApiResponse<Object>> handleOptimisticLocking(OptimisticLockingFailureException ex) {
+        log.warn("Concurrent modification: {}", ex.getMessage());
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(ApiResponse.builder()
+                        .success(false)
+                        .message("The resource was modified concurrently, reload and retry")
+                        .status(HttpStatus.CONFLICT.value())
+                        .timestamp(LocalDateTime.now())
+                        .build());
+    }
+
     @ExceptionHandler(InvalidQuantityException.class)
     public ResponseEntity<ApiResponse<Object>> handleInvalidQuantity(InvalidQuantityException ex) {
         log.error("Invalid quantity: {}", ex.getMessage());
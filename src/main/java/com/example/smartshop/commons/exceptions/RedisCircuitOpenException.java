@@ -0,0 +1,14 @@
+package com.example.smartshop.commons.exceptions;
+
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+/**
+ * Redis call rejected without being sent: the circuit breaker is open.
+ * A RedisConnectionFailureException, so existing Redis fallbacks handle it unchanged.
+ */
+public class RedisCircuitOpenException extends RedisConnectionFailureException {
+
+    public RedisCircuitOpenException() {
+        super("Redis circuit breaker is open");
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.smartshop.commons.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of string records, kept in numbered segment files
+ *
+ * - append() writes the records and (with fsync) forces them to disk before returning
+ * - ack() marks records as done; segments are deleted oldest first, once a segment and
+ *   every older one hold only acknowledged records
+ * - open() returns the records not acknowledged before the last shutdown or crash
+ *
+ * Lines: "E {seq} {payload}" for a record, "A {seq},{seq},..." for acknowledgements.
+ * Payloads must not contain line breaks. A torn last line (crash mid-write) is ignored.
+ * A record acknowledged but not yet on disk when the machine dies is returned again
+ * by open(): delivery is at least once, consumers must tolerate or dedupe replays.
+ * All methods are thread-safe.
+ */
+public class AppendOnlyJournal implements Closeable {
+
+    public record Entry(long seq, String payload) {
+    }
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final boolean fsync;
+
+    // By segment number (file order)
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    // By first record seq, segments holding records only
+    private final TreeMap<Long, Segment> segmentsBySeq = new TreeMap<>();
+    private Segment active;
+    private FileChannel channel;
+    private long nextSeq = 1;
+
+    public AppendOnlyJournal(Path directory, long segmentBytes, boolean fsync) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Replay existing segments and start a new one
+     *
+     * @return records without acknowledgement, in append order
+     */
+    public synchronized List<Entry> open() throws IOException {
+        Files.createDirectories(directory);
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(path -> segmentNumber(path) >= 0)
+                    .sorted((a, b) -> Long.compare(segmentNumber(a), segmentNumber(b)))
+                    .toList();
+        }
+
+        Map<Long, String> pending = new LinkedHashMap<>();
+        long lastSegment = 0;
+        for (Path file : files) {
+            Segment segment = new Segment(segmentNumber(file), file);
+            segment.size = Files.size(file);
+            segments.put(segment.number, segment);
+            lastSegment = segment.number;
+
+            String content = Files.readString(file, StandardCharsets.UTF_8);
+            // Text after the last line break is a torn write
+            int end = content.lastIndexOf('\n');
+            for (String line : end < 0 ? new String[0] : content.substring(0, end).split("\n")) {
+                replayLine(line, segment, pending);
+            }
+        }
+
+        for (Long seq : pending.keySet()) {
+            Map.Entry<Long, Segment> owner = segmentsBySeq.floorEntry(seq);
+            if (owner != null) {
+                owner.getValue().outstanding++;
+            }
+        }
+
+        startSegment(lastSegment + 1);
+        deleteAcknowledged();
+
+        List<Entry> entries = new ArrayList<>(pending.size());
+        pending.forEach((seq, payload) -> entries.add(new Entry(seq, payload)));
+        return entries;
+    }
+
+    /**
+     * @return the sequence number of each record, in order
+     */
+    public synchronized long[] append(List<String> payloads) throws IOException {
+        if (active.size >= segmentBytes) {
+            roll();
+        }
+
+        long[] seqs = new long[payloads.size()];
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < payloads.size(); i++) {
+            seqs[i] = nextSeq++;
+            lines.append("E ").append(seqs[i]).append(' ').append(payloads.get(i)).append('\n');
+        }
+        if (seqs.length == 0) {
+            return seqs;
+        }
+
+        if (active.firstSeq < 0) {
+            active.firstSeq = seqs[0];
+            segmentsBySeq.put(active.firstSeq, active);
+        }
+        write(lines);
+        active.outstanding += seqs.length;
+        if (fsync) {
+            channel.force(false);
+        }
+        return seqs;
+    }
+
+    public synchronized void ack(long[] seqs) throws IOException {
+        if (seqs.length == 0) {
+            return;
+        }
+        StringBuilder line = new StringBuilder("A ");
+        for (int i = 0; i < seqs.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append(seqs[i]);
+        }
+        write(line.append('\n'));
+
+        for (long seq : seqs) {
+            Map.Entry<Long, Segment> owner = segmentsBySeq.floorEntry(seq);
+            if (owner != null) {
+                owner.getValue().outstanding--;
+            }
+        }
+        deleteAcknowledged();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void replayLine(String line, Segment segment, Map<Long, String> pending) {
+        try {
+            if (line.startsWith("E ")) {
+                int separator = line.indexOf(' ', 2);
+                long seq = Long.parseLong(line.substring(2, separator));
+                pending.put(seq, line.substring(separator + 1));
+                if (segment.firstSeq < 0) {
+                    segment.firstSeq = seq;
+                    segmentsBySeq.put(seq, segment);
+                }
+                nextSeq = Math.max(nextSeq, seq + 1);
+            } else if (line.startsWith("A ")) {
+                for (String seq : line.substring(2).split(",")) {
+                    pending.remove(Long.parseLong(seq));
+                }
+            }
+        } catch (RuntimeException e) {
+            // Unreadable line: skipped, the remaining lines are still replayed
+        }
+    }
+
+    private void write(CharSequence lines) throws IOException {
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(lines.toString());
+        active.size += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void roll() throws IOException {
+        channel.close();
+        startSegment(active.number + 1);
+    }
+
+    private void startSegment(long number) throws IOException {
+        Path file = directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        active = new Segment(number, file);
+        active.size = channel.size();
+        segments.put(number, active);
+    }
+
+    private void deleteAcknowledged() throws IOException {
+        // Oldest first: acknowledgements in a segment only refer to records in it or older ones
+        while (!segments.isEmpty()) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest == active || oldest.outstanding > 0) {
+                return;
+            }
+            Files.deleteIfExists(oldest.path);
+            segments.pollFirstEntry();
+            if (oldest.firstSeq >= 0) {
+                segmentsBySeq.remove(oldest.firstSeq);
+            }
+        }
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static final class Segment {
+        private final long number;
+        private final Path path;
+        private long firstSeq = -1;
+        private long size;
+        private int outstanding;
+
+        private Segment(long number, Path path) {
+            this.number = number;
+            this.path = path;
+        }
+    }
+}
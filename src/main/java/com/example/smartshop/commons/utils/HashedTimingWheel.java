@@ -0,0 +1,74 @@
+package com.example.smartshop.commons.utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel: O(1) schedule, O(expired) per tick, no full scan.
+ *
+ * schedule() may be called from any thread; advance() must be called from a single
+ * thread (a fixed-rate task) every tickMillis. New entries go through a queue and are
+ * placed into buckets by the advancing thread, so no entry lands in a bucket that was
+ * already processed.
+ * Deadline precision is one tick. There is no cancel: callers check whether an
+ * expired entry is still relevant.
+ */
+public class HashedTimingWheel<T> {
+
+    private final long tickMillis;
+    private final List<List<Entry<T>>> buckets;
+    private final Queue<Entry<T>> pending = new ConcurrentLinkedQueue<>();
+    private final long startMillis;
+    private long currentTick;
+
+    public HashedTimingWheel(long tickMillis, int wheelSize) {
+        this.tickMillis = tickMillis;
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        this.startMillis = System.currentTimeMillis();
+    }
+
+    public void schedule(T item, long deadlineMillis) {
+        long deadlineTick = Math.max(0, (deadlineMillis - startMillis + tickMillis - 1) / tickMillis);
+        pending.add(new Entry<>(item, deadlineTick));
+    }
+
+    /**
+     * Process every tick that elapsed since the last call
+     */
+    public void advance(Consumer<T> onExpired) {
+        long nowTick = (System.currentTimeMillis() - startMillis) / tickMillis;
+
+        Entry<T> entry;
+        while ((entry = pending.poll()) != null) {
+            long tick = Math.max(entry.deadlineTick, currentTick);
+            buckets.get((int) (tick % buckets.size())).add(entry);
+        }
+
+        while (currentTick <= nowTick) {
+            Iterator<Entry<T>> iterator = buckets.get((int) (currentTick % buckets.size())).iterator();
+            while (iterator.hasNext()) {
+                Entry<T> candidate = iterator.next();
+                // Same bucket is shared by deadlines one or more revolutions apart
+                if (candidate.deadlineTick <= currentTick) {
+                    iterator.remove();
+                    onExpired.accept(candidate.item);
+                }
+            }
+            currentTick++;
+        }
+    }
+
+    public int pendingCount() {
+        return pending.size() + buckets.stream().mapToInt(List::size).sum();
+    }
+
+    private record Entry<T>(T item, long deadlineTick) {
+    }
+}
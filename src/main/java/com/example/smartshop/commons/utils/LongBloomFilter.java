@@ -0,0 +1,72 @@
+package com.example.smartshop.commons.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over long ids
+ *
+ * mightContain() never returns false for an added id; it returns true for an id that
+ * was never added with roughly the configured probability. Ids cannot be removed.
+ * add() and mightContain() are safe from any thread (bits are set with CAS).
+ *
+ * k bit positions per id by double hashing of one 64-bit mix (Kirsch-Mitzenmacher).
+ */
+public class LongBloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    public LongBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) >>> 6));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount << 6;
+        this.hashCount = (int) Math.max(1, Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    public void add(long id) {
+        long hash = mix(id);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = words.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!words.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    public boolean mightContain(long id) {
+        long hash = mix(id);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long index(int combined) {
+        // Flip negative values instead of Math.abs (abs(MIN_VALUE) stays negative)
+        return (combined < 0 ? ~combined : combined) % bitCount;
+    }
+
+    // Stafford variant 13 of the SplitMix64 finalizer: sequential ids spread over all bits
+    private static long mix(long id) {
+        long z = id;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.smartshop.commons.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Fixed-size fingerprint of a token, for in-memory structures and messages
+ * that must not hold the token itself
+ */
+public final class TokenHashes {
+
+    private TokenHashes() {
+    }
+
+    public static String sha256(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.smartshop.configs;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Background executors
+ *
+ * Each background job gets its own small, bounded pool so a slow job
+ * can never starve request threads or another job.
+ */
+@Configuration
+public class AsyncConfig {
+
+    /**
+     * Reconciles Redis stock counters with MySQL after failed reservations
+     */
+    @Bean
+    public ThreadPoolTaskExecutor stockReconcileExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("stock-reconcile-");
+        return executor;
+    }
+
+    /**
+     * Runs the single writer loop of the inventory log pipeline
+     */
+    @Bean
+    public ThreadPoolTaskExecutor inventoryLogWriterExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("inventory-log-writer-");
+        return executor;
+    }
+
+    /**
+     * Drives the stock hold timing wheel and the orphaned hold sweep
+     */
+    @Bean
+    public ThreadPoolTaskScheduler stockHoldScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("stock-hold-");
+        return scheduler;
+    }
+
+    /**
+     * Background reloads of cache entries close to expiry (refresh-ahead).
+     * A full queue rejects the task and the entry simply expires.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor cacheRefreshExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("cache-refresh-");
+        return executor;
+    }
+
+    /**
+     * Periodic cache housekeeping (namespace version resync, ...)
+     */
+    @Bean
+    public ThreadPoolTaskScheduler cacheMaintenanceScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("cache-maintenance-");
+        return scheduler;
+    }
+
+    /**
+     * Redis recovery probe of the circuit breaker (may block up to the command timeout)
+     */
+    @Bean
+    public ThreadPoolTaskScheduler redisProbeScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("redis-probe-");
+        return scheduler;
+    }
+
+    /**
+     * BCrypt for login and registration, off the request threads.
+     * Bounded so a login burst cannot take every core from the catalog endpoints;
+     * a full queue rejects the login (PasswordHashService).
+     */
+    @Bean
+    public ThreadPoolTaskExecutor passwordHashExecutor(
+            @Value("${auth.password-hash.threads:0}") int threads,
+            @Value("${auth.password-hash.queue-capacity:200}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-hash-");
+        return executor;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.smartshop.configs;
+
+import java.security.Principal;
+
+/**
+ * Principal set by JwtAuthenticationFilter, resolved from the token claims (no user query)
+ *
+ * getName() is the email, so authentication.getName() keeps returning it.
+ */
+public record AuthenticatedUser(Long id, String email, String role) implements Principal {
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
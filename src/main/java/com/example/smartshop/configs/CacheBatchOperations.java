@@ -0,0 +1,150 @@
+package com.example.smartshop.configs;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Multi-key cache access for one region
+ *
+ * - getAll: L1 first, then a single MGET for the rest; values found in Redis are copied into L1.
+ *   Keys missing from the result are misses; Redis errors count as misses too.
+ * - putAllIfAbsent: backfill with one pipeline of SET NX (never overwrites a fresher @CachePut)
+ */
+@Component
+@Slf4j
+public class CacheBatchOperations {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    public Map<Object, Object> getAll(String cacheName, Collection<?> keys) {
+        Map<Object, Object> found = new LinkedHashMap<>();
+        if (keys.isEmpty()) {
+            return found;
+        }
+        if (!(cacheManager instanceof TwoLevelCacheManager twoLevelCacheManager)) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                for (Object key : keys) {
+                    Cache.ValueWrapper cached = cache.get(key);
+                    if (cached != null && cached.get() != null) {
+                        found.put(key, cached.get());
+                    }
+                }
+            }
+            return found;
+        }
+
+        List<Object> remoteKeys = new ArrayList<>();
+        try {
+            // Local keys and the prefix need the region version, which may not be loadable
+            for (Object key : keys) {
+                Object local = twoLevelCacheManager.getLocal(cacheName, key);
+                if (local != null) {
+                    found.put(key, unwrap(local));
+                } else {
+                    remoteKeys.add(key);
+                }
+            }
+            if (remoteKeys.isEmpty()) {
+                return found;
+            }
+
+            RedisCacheConfiguration configuration = twoLevelCacheManager.getRedisCacheConfiguration(cacheName);
+            String prefix = configuration.getKeyPrefixFor(cacheName);
+            byte[][] rawKeys = remoteKeys.stream()
+                    .map(key -> (prefix + key).getBytes(StandardCharsets.UTF_8))
+                    .toArray(byte[][]::new);
+
+            List<byte[]> values = stringRedisTemplate.execute(
+                    (RedisCallback<List<byte[]>>) connection -> connection.stringCommands().mGet(rawKeys));
+            if (values == null) {
+                return found;
+            }
+            for (int i = 0; i < remoteKeys.size(); i++) {
+                byte[] raw = values.get(i);
+                if (raw == null) {
+                    continue;
+                }
+                Object value = configuration.getValueSerializationPair().read(ByteBuffer.wrap(raw));
+                if (value != null) {
+                    twoLevelCacheManager.putLocal(cacheName, remoteKeys.get(i), value);
+                    found.put(remoteKeys.get(i), unwrap(value));
+                }
+            }
+        } catch (Exception e) {
+            // Same policy as the cache error handler: misses fall back to the database
+            log.error("❌ Cache MGET failed - cache: '{}', {} keys, falling back to database",
+                    cacheName, keys.size());
+            log.debug("Cache MGET error details:", e);
+        }
+        return found;
+    }
+
+    /**
+     * Write values loaded from the database, in one pipeline, with the region TTL
+     */
+    public void putAllIfAbsent(String cacheName, Map<?, ?> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        if (!(cacheManager instanceof TwoLevelCacheManager twoLevelCacheManager)) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                values.forEach(cache::putIfAbsent);
+            }
+            return;
+        }
+
+        RedisCacheConfiguration configuration = twoLevelCacheManager.getRedisCacheConfiguration(cacheName);
+        Map<Object, Object> stored = new LinkedHashMap<>();
+        values.forEach((key, value) -> stored.put(key, twoLevelCacheManager.toStoredValue(cacheName, value)));
+
+        try {
+            String prefix = configuration.getKeyPrefixFor(cacheName);
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                stored.forEach((key, value) -> {
+                    ByteBuffer serialized = configuration.getValueSerializationPair().write(value);
+                    byte[] rawValue = new byte[serialized.remaining()];
+                    serialized.get(rawValue);
+                    connection.stringCommands().set(
+                            (prefix + key).getBytes(StandardCharsets.UTF_8),
+                            rawValue,
+                            Expiration.from(configuration.getTtlFunction().getTimeToLive(key, value)),
+                            RedisStringCommands.SetOption.ifAbsent()
+                    );
+                });
+                return null;
+            });
+            stored.forEach((key, value) -> twoLevelCacheManager.putLocal(cacheName, key, value));
+            log.debug("Backfilled {} keys of cache '{}'", stored.size(), cacheName);
+        } catch (Exception e) {
+            log.error("❌ Cache pipelined PUT failed - cache: '{}', {} keys, continuing without caching",
+                    cacheName, stored.size());
+            log.debug("Cache pipelined PUT error details:", e);
+        }
+    }
+
+    private Object unwrap(Object cached) {
+        return cached instanceof RefreshAheadEntry entry ? entry.getValue() : cached;
+    }
+}
@@ -1,11 +1,21 @@
 package com.example.smartshop.configs;
 
+import com.example.smartshop.commons.enums.CacheCodecFormat;
+import com.example.smartshop.commons.exceptions.RedisCircuitOpenException;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CachingConfigurer;
@@ -13,12 +23,14 @@ import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.interceptor.CacheErrorHandler;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
-import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
@@ -31,14 +43,32 @@ import java.util.Map;
  * Cache Strategy:
  * - Category: 30 min (rarely changes)
  * - Categories list: 20 min
- * - Product detail: 15 min (infrequent updates)
+ * - Product detail: 60 min (stock is overlaid from the live counter, the rest rarely changes)
  * - Products list: 5 min (frequent updates)
- * - Product stock: 3 min (changes with every order/restock)
  * - Order: 5 min
  * - Orders list: 3 min (new orders frequently)
  * - Inventory logs: 2 min (needs fresh data)
  * - User: 15 min
  *
+ * L1 (in-process Caffeine, in front of Redis):
+ * - Category: 60 s, Categories list: 60 s, Product detail: 30 s
+ * - Other nodes drop their L1 copy through pub/sub (LocalCacheInvalidationBus)
+ *
+ * Hot reads use @Cacheable(sync = true): a missing key is loaded once per node,
+ * and once per cluster when cache.single-flight.lease-enabled (SingleFlightCache)
+ *
+ * Product detail and products list refresh ahead of expiry (XFetch, RefreshAheadCache):
+ * near the end of the TTL a few reads trigger a background reload, nobody waits for it
+ *
+ * Values are stored as Smile (binary JSON), Deflate-compressed above cache.codec.compress-threshold-bytes
+ *
+ * Keys are versioned per region (product::v{n}::123): clearing a region bumps
+ * its version in O(1) instead of scanning and deleting keys (CacheNamespaceVersions)
+ *
+ * Redis access goes through RedisCircuitBreaker: while Redis is unreachable cache calls fail
+ * immediately and reads go to the database; every region version is bumped on recovery
+ * because evictions were lost meanwhile
+ *
  * @author SmartShop Team
  * @version 2.0
  */
@@ -55,9 +85,8 @@ public class CacheConfig implements CachingConfigurer {
     private static final int CATEGORIES_LIST_TTL_MINUTES = 20;
 
     // Product caches
-    private static final int PRODUCT_DETAIL_TTL_MINUTES = 15;
+    private static final int PRODUCT_DETAIL_TTL_MINUTES = 60;
     private static final int PRODUCTS_LIST_TTL_MINUTES = 5;
-    private static final int PRODUCT_STOCK_TTL_MINUTES = 3;
 
     // Order caches
     private static final int ORDER_TTL_MINUTES = 5;
@@ -69,53 +98,160 @@ public class CacheConfig implements CachingConfigurer {
     // User cache
     private static final int USER_TTL_MINUTES = 15;
 
+    // ==================== L1 (CAFFEINE) LIMITS ====================
+    // Short TTLs bound staleness if an invalidation message is lost
+    private static final int CATEGORY_L1_MAX_SIZE = 1_000;
+    private static final int CATEGORY_L1_TTL_SECONDS = 60;
+    private static final int CATEGORIES_LIST_L1_MAX_SIZE = 200;
+    private static final int CATEGORIES_LIST_L1_TTL_SECONDS = 60;
+    private static final int PRODUCT_DETAIL_L1_MAX_SIZE = 10_000;
+    private static final int PRODUCT_DETAIL_L1_TTL_SECONDS = 30;
+    private static final int USER_L1_MAX_SIZE = 10_000;
+    private static final int USER_L1_TTL_SECONDS = 60;
+
+    private CacheNamespaceVersions versions;
+
     /**
      * Configure Redis CacheManager with custom settings for each cache region
      */
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public CacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                     RedisCircuitBreaker redisCircuitBreaker,
+                                     CacheNamespaceVersions versions,
+                                     LocalCacheInvalidationBus invalidationBus,
+                                     CacheLoadLeases loadLeases,
+                                     @Qualifier("cacheRefreshExecutor") TaskExecutor cacheRefreshExecutor,
+                                     ObjectProvider<CacheRegionLoader> cacheRegionLoaders,
+                                     @Value("${cache.refresh-ahead.beta:1.0}") double refreshAheadBeta,
+                                     @Value("${cache.refresh-ahead.default-compute-millis:50}") long refreshAheadComputeMillis,
+                                     @Value("${cache.codec.format:SMILE}") CacheCodecFormat codecFormat,
+                                     @Value("${cache.codec.compress-threshold-bytes:1024}") int compressThresholdBytes) {
         log.info("=== Initializing Redis CacheManager ===");
 
-        ObjectMapper objectMapper = createObjectMapper();
-        RedisCacheConfiguration defaultConfig = createCacheConfig(objectMapper, DEFAULT_TTL_MINUTES);
+        RedisSerializer<Object> valueSerializer = createValueSerializer(codecFormat, compressThresholdBytes);
+        this.versions = versions;
+        RedisCacheConfiguration defaultConfig = createCacheConfig(valueSerializer, DEFAULT_TTL_MINUTES);
 
         Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
 
         // Category caches
-        cacheConfigurations.put("category", createCacheConfig(objectMapper, CATEGORY_TTL_MINUTES));
-        cacheConfigurations.put("categories", createCacheConfig(objectMapper, CATEGORIES_LIST_TTL_MINUTES));
+        cacheConfigurations.put("category", createCacheConfig(valueSerializer, CATEGORY_TTL_MINUTES));
+        cacheConfigurations.put("categories", createCacheConfig(valueSerializer, CATEGORIES_LIST_TTL_MINUTES));
 
         // Product caches
-        cacheConfigurations.put("product", createCacheConfig(objectMapper, PRODUCT_DETAIL_TTL_MINUTES));
-        cacheConfigurations.put("products", createCacheConfig(objectMapper, PRODUCTS_LIST_TTL_MINUTES));
-        cacheConfigurations.put("productStock", createCacheConfig(objectMapper, PRODUCT_STOCK_TTL_MINUTES));
+        cacheConfigurations.put("product", createCacheConfig(valueSerializer, PRODUCT_DETAIL_TTL_MINUTES));
+        cacheConfigurations.put("products", createCacheConfig(valueSerializer, PRODUCTS_LIST_TTL_MINUTES));
 
         // Order caches
-        cacheConfigurations.put("order", createCacheConfig(objectMapper, ORDER_TTL_MINUTES));
-        cacheConfigurations.put("orders", createCacheConfig(objectMapper, ORDERS_LIST_TTL_MINUTES));
+        cacheConfigurations.put("order", createCacheConfig(valueSerializer, ORDER_TTL_MINUTES));
+        cacheConfigurations.put("orders", createCacheConfig(valueSerializer, ORDERS_LIST_TTL_MINUTES));
 
         // Inventory caches
-        cacheConfigurations.put("inventory-log", createCacheConfig(objectMapper, INVENTORY_LOG_TTL_MINUTES));
+        cacheConfigurations.put("inventory-log", createCacheConfig(valueSerializer, INVENTORY_LOG_TTL_MINUTES));
 
         // User cache
-        cacheConfigurations.put("user", createCacheConfig(objectMapper, USER_TTL_MINUTES));
+        cacheConfigurations.put("user", createCacheConfig(valueSerializer, USER_TTL_MINUTES));
 
         log.info("Configured {} cache regions: {}", cacheConfigurations.size(), cacheConfigurations.keySet());
 
-        return RedisCacheManager.builder(connectionFactory)
-                .cacheDefaults(defaultConfig)
-                .withInitialCacheConfigurations(cacheConfigurations)
-                .transactionAware() // Support Spring transactions
+        VersionedRedisCacheManager redisCacheManager = new VersionedRedisCacheManager(
+                RedisCacheWriter.nonLockingRedisCacheWriter(redisCircuitBreaker.protect(connectionFactory)),
+                defaultConfig,
+                cacheConfigurations,
+                versions
+        );
+        redisCacheManager.afterPropertiesSet();
+
+        // L1 regions: read-mostly data served from local memory
+        Map<String, Caffeine<Object, Object>> localCacheSpecs = new HashMap<>();
+        localCacheSpecs.put("category", createLocalCacheSpec(CATEGORY_L1_MAX_SIZE, CATEGORY_L1_TTL_SECONDS));
+        localCacheSpecs.put("categories", createLocalCacheSpec(CATEGORIES_LIST_L1_MAX_SIZE, CATEGORIES_LIST_L1_TTL_SECONDS));
+        localCacheSpecs.put("product", createLocalCacheSpec(PRODUCT_DETAIL_L1_MAX_SIZE, PRODUCT_DETAIL_L1_TTL_SECONDS));
+        localCacheSpecs.put("user", createLocalCacheSpec(USER_L1_MAX_SIZE, USER_L1_TTL_SECONDS));
+
+        // Refresh-ahead regions: hot keys reload in the background shortly before they expire
+        Map<String, Duration> refreshAheadTtls = new HashMap<>();
+        refreshAheadTtls.put("product", Duration.ofMinutes(PRODUCT_DETAIL_TTL_MINUTES));
+        refreshAheadTtls.put("products", Duration.ofMinutes(PRODUCTS_LIST_TTL_MINUTES));
+        RefreshAheadPolicy refreshAheadPolicy = new RefreshAheadPolicy(
+                refreshAheadTtls,
+                refreshAheadBeta,
+                refreshAheadComputeMillis,
+                cacheRefreshExecutor,
+                cacheRegionLoaders
+        );
+
+        TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(
+                redisCacheManager,
+                localCacheSpecs,
+                versions,
+                invalidationBus,
+                loadLeases,
+                refreshAheadPolicy
+        );
+        cacheManager.setTransactionAware(true); // Support Spring transactions (wraps L1 and L2)
+        return cacheManager;
+    }
+
+    /**
+     * Value codec of the cache regions
+     *
+     * SMILE: compact binary (see CompactCacheSerializer), still reads JSON entries
+     * written before the switch; JSON: the original GenericJackson2JsonRedisSerializer
+     *
+     * Package-private and static for CompactCacheSerializerTest
+     */
+    static RedisSerializer<Object> createValueSerializer(CacheCodecFormat format, int compressThresholdBytes) {
+        GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer(createObjectMapper());
+        if (format == CacheCodecFormat.JSON) {
+            return jsonSerializer;
+        }
+        log.info("Cache codec: Smile, Deflate above {} bytes", compressThresholdBytes);
+        return new CompactCacheSerializer(createSmileMapper(), jsonSerializer, compressThresholdBytes);
+    }
+
+    /**
+     * Smile ObjectMapper for cache values
+     *
+     * Shared string values let the repeated @class ids of a page be back-referenced,
+     * and only registered cache types (DTOs, enums, JDK value/collection types) can be read back.
+     */
+    private static ObjectMapper createSmileMapper() {
+        SmileFactory smileFactory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+
+        PolymorphicTypeValidator cacheTypes = BasicPolymorphicTypeValidator.builder()
+                .allowIfSubType("com.example.smartshop.models.dtos.")
+                .allowIfSubType("com.example.smartshop.commons.enums.")
+                .allowIfSubType(RefreshAheadEntry.class)
+                .allowIfSubType("java.util.")
+                .allowIfSubType("java.time.")
+                .allowIfSubType("java.math.")
+                // Not java.lang.*: that would admit ProcessBuilder, Thread, ClassLoader subtypes, ...
+                .allowIfSubType(String.class)
+                .allowIfSubType(Boolean.class)
+                .allowIfSubType(Character.class)
+                .allowIfSubType(Byte.class)
+                .allowIfSubType(Short.class)
+                .allowIfSubType(Integer.class)
+                .allowIfSubType(Long.class)
+                .allowIfSubType(Float.class)
+                .allowIfSubType(Double.class)
                 .build();
+
+        return configureObjectMapper(new ObjectMapper(smileFactory), cacheTypes);
     }
 
     /**
      * Create ObjectMapper for Redis serialization
      * Supports Java 8 Date/Time API and polymorphic types
      */
-    private ObjectMapper createObjectMapper() {
-        ObjectMapper mapper = new ObjectMapper();
+    private static ObjectMapper createObjectMapper() {
+        return configureObjectMapper(new ObjectMapper(), LaissezFaireSubTypeValidator.instance);
+    }
 
+    private static ObjectMapper configureObjectMapper(ObjectMapper mapper, PolymorphicTypeValidator typeValidator) {
         // Support LocalDateTime, LocalDate, etc.
         mapper.registerModule(new JavaTimeModule());
 
@@ -124,7 +260,7 @@ public class CacheConfig implements CachingConfigurer {
 
         // Enable polymorphic type handling (needed for inheritance)
         mapper.activateDefaultTyping(
-                LaissezFaireSubTypeValidator.instance,
+                typeValidator,
                 ObjectMapper.DefaultTyping.NON_FINAL,
                 JsonTypeInfo.As.PROPERTY
         );
@@ -141,11 +277,11 @@ public class CacheConfig implements CachingConfigurer {
     /**
      * Create RedisCacheConfiguration with custom TTL
      *
-     * @param objectMapper Jackson ObjectMapper for JSON serialization
+     * @param valueSerializer Cache value codec (createValueSerializer)
      * @param ttlMinutes Time-to-live in minutes
      * @return Configured RedisCacheConfiguration
      */
-    private RedisCacheConfiguration createCacheConfig(ObjectMapper objectMapper, int ttlMinutes) {
+    private RedisCacheConfiguration createCacheConfig(RedisSerializer<Object> valueSerializer, int ttlMinutes) {
         return RedisCacheConfiguration.defaultCacheConfig()
                 // Set TTL
                 .entryTtl(Duration.ofMinutes(ttlMinutes))
@@ -153,6 +289,9 @@ public class CacheConfig implements CachingConfigurer {
                 // Don't cache null values (prevents cache pollution)
                 .disableCachingNullValues()
 
+                // Region version in every key: product::v3::123
+                .computePrefixWith(cacheName -> cacheName + "::v" + versions.current(cacheName) + "::")
+
                 // Serialize keys as strings
                 .serializeKeysWith(
                         RedisSerializationContext.SerializationPair.fromSerializer(
@@ -160,22 +299,30 @@ public class CacheConfig implements CachingConfigurer {
                         )
                 )
 
-                // Serialize values as JSON
+                // Serialize values with the configured codec
                 .serializeValuesWith(
-                        RedisSerializationContext.SerializationPair.fromSerializer(
-                                new GenericJackson2JsonRedisSerializer(objectMapper)
-                        )
+                        RedisSerializationContext.SerializationPair.fromSerializer(valueSerializer)
                 );
     }
 
+    /**
+     * Bounded in-process cache for one region
+     */
+    private Caffeine<Object, Object> createLocalCacheSpec(int maxSize, int ttlSeconds) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds));
+    }
+
     /**
      * RedisTemplate for manual Redis operations (non-cache usage)
      * Useful for custom Redis commands outside Spring Cache abstraction
      */
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory,
+                                                       RedisCircuitBreaker redisCircuitBreaker) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
-        template.setConnectionFactory(connectionFactory);
+        template.setConnectionFactory(redisCircuitBreaker.protect(connectionFactory));
 
         // String serializer for keys
         StringRedisSerializer stringSerializer = new StringRedisSerializer();
@@ -208,6 +355,11 @@ public class CacheConfig implements CachingConfigurer {
 
             @Override
             public void handleCacheGetError(RuntimeException exception, Cache cache, Object key) {
+                if (exception instanceof RedisCircuitOpenException) {
+                    // Expected while the circuit is open, logged once by RedisCircuitBreaker
+                    log.debug("Cache bypassed (Redis circuit open) - cache: '{}', key: '{}'", cache.getName(), key);
+                    return;
+                }
                 log.error("❌ Cache GET failed - cache: '{}', key: '{}', falling back to database",
                         cache.getName(), key);
                 log.debug("Cache GET error details:", exception);
@@ -216,6 +368,10 @@ public class CacheConfig implements CachingConfigurer {
 
             @Override
             public void handleCachePutError(RuntimeException exception, Cache cache, Object key, Object value) {
+                if (exception instanceof RedisCircuitOpenException) {
+                    log.debug("Cache PUT skipped (Redis circuit open) - cache: '{}', key: '{}'", cache.getName(), key);
+                    return;
+                }
                 log.error("❌ Cache PUT failed - cache: '{}', key: '{}', continuing without caching",
                         cache.getName(), key);
                 log.debug("Cache PUT error details:", exception);
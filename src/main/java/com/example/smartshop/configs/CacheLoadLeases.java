@@ -0,0 +1,104 @@
+package com.example.smartshop.configs;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Short Redis leases so only one node recomputes a missing cache entry
+ *
+ * cache:lease:{cacheName}::{key} = token, SET NX PX. The lease expires on its own
+ * if the holder dies; other nodes wait for the value and load it themselves if it never comes.
+ */
+@Component
+@Slf4j
+public class CacheLoadLeases {
+
+    /**
+     * Returned when no Redis lease is used (disabled or Redis unavailable): the caller just loads
+     */
+    public static final String NO_LEASE = "";
+
+    private static final String LEASE_KEY_PREFIX = "cache:lease:";
+
+    /**
+     * Delete the lease only if it still belongs to the caller
+     */
+    private static final RedisScript<Long> RELEASE_LEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "  return redis.call('DEL', KEYS[1]) " +
+            "end " +
+            "return 0",
+            Long.class
+    );
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${cache.single-flight.lease-enabled:false}")
+    private boolean enabled;
+
+    @Value("${cache.single-flight.lease-millis:3000}")
+    private long leaseMillis;
+
+    @Value("${cache.single-flight.wait-millis:2000}")
+    private long waitMillis;
+
+    @Value("${cache.single-flight.poll-millis:25}")
+    private long pollMillis;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getWaitMillis() {
+        return waitMillis;
+    }
+
+    public long getPollMillis() {
+        return pollMillis;
+    }
+
+    /**
+     * @return lease token, NO_LEASE when leases are not in use, null when another node holds the lease
+     */
+    public String tryAcquire(String cacheName, Object key) {
+        if (!enabled) {
+            return NO_LEASE;
+        }
+        String token = UUID.randomUUID().toString();
+        try {
+            Boolean acquired = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(leaseKey(cacheName, key), token, Duration.ofMillis(leaseMillis));
+            return Boolean.TRUE.equals(acquired) ? token : null;
+        } catch (Exception e) {
+            log.warn("Cache load lease not acquired, loading without it: {}::{}, reason={}",
+                    cacheName, key, e.getMessage());
+            return NO_LEASE;
+        }
+    }
+
+    public void release(String cacheName, Object key, String token) {
+        if (token == null || NO_LEASE.equals(token)) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(RELEASE_LEASE_SCRIPT, List.of(leaseKey(cacheName, key)), token);
+        } catch (Exception e) {
+            // Lease expires by itself
+            log.debug("Cache load lease not released: {}::{}", cacheName, key, e);
+        }
+    }
+
+    private String leaseKey(String cacheName, Object key) {
+        return LEASE_KEY_PREFIX + cacheName + "::" + key;
+    }
+}
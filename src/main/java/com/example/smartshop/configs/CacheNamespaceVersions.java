@@ -0,0 +1,150 @@
+package com.example.smartshop.configs;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Generation counters of the cache regions
+ *
+ * Every cache key embeds its region version: product::v3::123.
+ * Clearing a region = INCR cache:version:{region} (O(1)); keys of older
+ * versions are never read again and expire via TTL.
+ *
+ * Versions are read from a local map (no Redis call per cache access), kept in
+ * sync by pub/sub on every bump and by a periodic resync for missed messages.
+ * After a Redis outage (circuit breaker recovery) every region is bumped.
+ */
+@Component
+@Slf4j
+public class CacheNamespaceVersions {
+
+    private static final String VERSION_KEY_PREFIX = "cache:version:";
+    private static final String VERSION_CHANNEL = "cache:version";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    @Qualifier("cacheMaintenanceScheduler")
+    private TaskScheduler cacheMaintenanceScheduler;
+
+    @Autowired
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    @Value("${cache.namespace.resync-millis:30000}")
+    private long resyncMillis;
+
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() {
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            int separator = body.lastIndexOf(':');
+            if (separator > 0) {
+                advanceTo(body.substring(0, separator), Long.parseLong(body.substring(separator + 1)));
+            }
+        }, new ChannelTopic(VERSION_CHANNEL));
+
+        cacheMaintenanceScheduler.scheduleWithFixedDelay(this::resync, Duration.ofMillis(resyncMillis));
+
+        // Evictions and bumps failed while Redis was unreachable: drop everything cached before
+        redisCircuitBreaker.onRecovery(() -> {
+            resync();
+            bumpAll();
+            log.info("🗑️ Bumped all cache regions after Redis recovery");
+        });
+    }
+
+    /**
+     * Current version of a region, loaded from Redis on first use.
+     * Throws while the version cannot be loaded (the cache error handler then bypasses
+     * the cache); a failed load is not remembered, the next access tries again.
+     */
+    public long current(String cacheName) {
+        Long version = versions.get(cacheName);
+        if (version != null) {
+            return version;
+        }
+        advanceTo(cacheName, load(cacheName));
+        return versions.get(cacheName);
+    }
+
+    /**
+     * Invalidate every key of a region
+     */
+    public long bump(String cacheName) {
+        Long version = stringRedisTemplate.opsForValue().increment(VERSION_KEY_PREFIX + cacheName);
+        if (version == null) {
+            throw new IllegalStateException("Cache version increment returned nothing: " + cacheName);
+        }
+        advanceTo(cacheName, version);
+        stringRedisTemplate.convertAndSend(VERSION_CHANNEL, cacheName + ":" + version);
+        log.debug("🗑️ Cache region '{}' moved to version {}", cacheName, version);
+        return version;
+    }
+
+    /**
+     * Invalidate every region this node has used
+     */
+    public void bumpAll() {
+        for (String cacheName : new ArrayList<>(versions.keySet())) {
+            bump(cacheName);
+        }
+    }
+
+    private void advanceTo(String cacheName, long version) {
+        // Versions only move forward, late or duplicate messages are harmless
+        versions.merge(cacheName, version, Math::max);
+    }
+
+    private long load(String cacheName) {
+        try {
+            String value = stringRedisTemplate.opsForValue().get(VERSION_KEY_PREFIX + cacheName);
+            return value != null ? Long.parseLong(value) : 0L;
+        } catch (RuntimeException e) {
+            // Falling back to v0 could serve entries written before earlier bumps
+            log.warn("Cache version of '{}' not loaded, bypassing the cache: {}", cacheName, e.getMessage());
+            throw e;
+        }
+    }
+
+    private void resync() {
+        try {
+            List<String> names = new ArrayList<>(versions.keySet());
+            if (names.isEmpty()) {
+                return;
+            }
+            List<String> values = stringRedisTemplate.opsForValue()
+                    .multiGet(names.stream().map(name -> VERSION_KEY_PREFIX + name).toList());
+            if (values == null) {
+                return;
+            }
+            for (int i = 0; i < names.size(); i++) {
+                if (values.get(i) != null) {
+                    advanceTo(names.get(i), Long.parseLong(values.get(i)));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Cache version resync failed: {}", e.getMessage());
+        }
+    }
+}
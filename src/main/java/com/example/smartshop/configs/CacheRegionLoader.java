@@ -0,0 +1,19 @@
+package com.example.smartshop.configs;
+
+import java.util.Set;
+
+/**
+ * Loads a cache entry from its key, for background reloads (RefreshAheadCache)
+ *
+ * Implemented by the bean that fills the regions and called on its proxy, so the
+ * reload gets the bean's own transaction instead of replaying a request's invocation.
+ */
+public interface CacheRegionLoader {
+
+    Set<String> getRegionNames();
+
+    /**
+     * Fresh value for the key, read from the database (never from the cache)
+     */
+    Object load(String cacheName, Object key);
+}
@@ -0,0 +1,111 @@
+package com.example.smartshop.configs;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Set;
+
+/**
+ * Connection factory decorator: rejects new connections while the circuit is open and
+ * reports the outcome and duration of every command to the breaker.
+ *
+ * Not a bean: the templates and the cache manager are built on top of it, the
+ * underlying factory keeps its own lifecycle.
+ */
+class CircuitBreakingRedisConnectionFactory implements RedisConnectionFactory {
+
+    // Local bookkeeping, never reaches Redis
+    private static final Set<String> UNGUARDED_METHODS = Set.of(
+            "close", "isClosed", "isQueueing", "isPipelined", "getNativeConnection", "getSentinelConnection"
+    );
+
+    private final RedisConnectionFactory delegate;
+    private final RedisCircuitBreaker breaker;
+
+    CircuitBreakingRedisConnectionFactory(RedisConnectionFactory delegate, RedisCircuitBreaker breaker) {
+        this.delegate = delegate;
+        this.breaker = breaker;
+    }
+
+    @Override
+    public RedisConnection getConnection() {
+        breaker.acquirePermission();
+        RedisConnection connection;
+        try {
+            connection = delegate.getConnection();
+        } catch (RuntimeException e) {
+            breaker.recordFailure(e);
+            throw e;
+        }
+        return guard(connection, RedisConnection.class);
+    }
+
+    @Override
+    public RedisClusterConnection getClusterConnection() {
+        breaker.acquirePermission();
+        return delegate.getClusterConnection();
+    }
+
+    @Override
+    public boolean getConvertPipelineAndTxResults() {
+        return delegate.getConvertPipelineAndTxResults();
+    }
+
+    @Override
+    public RedisSentinelConnection getSentinelConnection() {
+        return delegate.getSentinelConnection();
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return delegate.translateExceptionIfPossible(ex);
+    }
+
+    private <T> T guard(Object target, Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(
+                type.getClassLoader(),
+                new Class<?>[]{type},
+                (proxy, method, args) -> invoke(target, method, args)
+        ));
+    }
+
+    private Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class || UNGUARDED_METHODS.contains(method.getName())) {
+            return invokeDirect(target, method, args);
+        }
+        if (isCommandsAccessor(method)) {
+            // connection.stringCommands().get(...): the command itself runs on the returned object
+            Object commands = invokeDirect(target, method, args);
+            return commands != null ? guard(commands, method.getReturnType()) : null;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            Object result = invokeDirect(target, method, args);
+            breaker.recordSuccess(System.currentTimeMillis() - start);
+            return result;
+        } catch (Throwable e) {
+            breaker.recordFailure(e);
+            throw e;
+        }
+    }
+
+    private static boolean isCommandsAccessor(Method method) {
+        return method.getParameterCount() == 0
+                && method.getReturnType().isInterface()
+                && method.getName().endsWith("Commands");
+    }
+
+    private static Object invokeDirect(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
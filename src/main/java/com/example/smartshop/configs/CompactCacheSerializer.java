@@ -0,0 +1,135 @@
+package com.example.smartshop.configs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary cache value codec: Smile, Deflate-compressed above a size threshold
+ *
+ * Layout: [format byte][payload]
+ * - 0x00: Smile document
+ * - 0x01: original length (4 bytes) + Deflate(Smile document)
+ * - '{' / '[' / '"': JSON written by the previous serializer, read with the fallback
+ *
+ * Smile back-references repeated property names and short strings, so the class id
+ * of each element in a page is written once per value instead of once per element.
+ */
+public class CompactCacheSerializer implements RedisSerializer<Object> {
+
+    private static final byte SMILE = 0x00;
+    private static final byte SMILE_DEFLATED = 0x01;
+
+    private final ObjectMapper smileMapper;
+    private final RedisSerializer<Object> jsonFallback;
+    private final int compressThresholdBytes;
+
+    public CompactCacheSerializer(ObjectMapper smileMapper,
+                                  RedisSerializer<Object> jsonFallback,
+                                  int compressThresholdBytes) {
+        this.smileMapper = smileMapper;
+        this.jsonFallback = jsonFallback;
+        this.compressThresholdBytes = compressThresholdBytes;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        byte[] document;
+        try {
+            document = smileMapper.writeValueAsBytes(value);
+        } catch (Exception e) {
+            throw new SerializationException("Could not write cache value as Smile", e);
+        }
+
+        if (document.length < compressThresholdBytes) {
+            return withHeader(SMILE, document);
+        }
+        byte[] compressed = deflate(document);
+        if (compressed.length + Integer.BYTES >= document.length) {
+            // Not worth it (already dense payload)
+            return withHeader(SMILE, document);
+        }
+        return ByteBuffer.allocate(1 + Integer.BYTES + compressed.length)
+                .put(SMILE_DEFLATED)
+                .putInt(document.length)
+                .put(compressed)
+                .array();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            return switch (bytes[0]) {
+                case SMILE -> smileMapper.readValue(bytes, 1, bytes.length - 1, Object.class);
+                case SMILE_DEFLATED -> {
+                    int originalLength = ByteBuffer.wrap(bytes, 1, Integer.BYTES).getInt();
+                    byte[] document = inflate(bytes, 1 + Integer.BYTES, originalLength);
+                    yield smileMapper.readValue(document, Object.class);
+                }
+                default -> jsonFallback.deserialize(bytes);
+            };
+        } catch (SerializationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SerializationException("Could not read cache value", e);
+        }
+    }
+
+    private byte[] withHeader(byte format, byte[] document) {
+        byte[] bytes = new byte[document.length + 1];
+        bytes[0] = format;
+        System.arraycopy(document, 0, bytes, 1, document.length);
+        return bytes;
+    }
+
+    private byte[] deflate(byte[] input) {
+        // BEST_SPEED: cache writes are on the request path
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 2);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] inflate(byte[] input, int offset, int originalLength) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input, offset, input.length - offset);
+            byte[] output = new byte[originalLength];
+            int written = 0;
+            while (written < originalLength && !inflater.finished()) {
+                int count = inflater.inflate(output, written, originalLength - written);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                written += count;
+            }
+            if (written != originalLength) {
+                throw new DataFormatException("Truncated cache value: " + written + "/" + originalLength + " bytes");
+            }
+            return output;
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.example.smartshop.configs;
 
 import com.example.smartshop.services.JWTService;
 import com.example.smartshop.services.RedisService;
+import com.example.smartshop.services.TokenVersionService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
@@ -37,6 +38,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private RedisService redisService;
 
+    @Autowired
+    private TokenVersionService tokenVersionService;
+
     @Override
     protected void doFilterInternal(
             HttpServletRequest request,
@@ -57,24 +61,36 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         jwt = authHeader.substring(7);
         log.info("Token extracted: {}...", jwt.substring(0, Math.min(20, jwt.length())));
 
-        if (redisService.isBlacklisted(jwt)) {
-            log.error("Token is blacklisted");
+        Claims claims;
+        try {
+            claims = jwtService.extractAllClaims(jwt);
+        } catch (Exception e) {
+            log.error("JWT validation failed: {}", e.getMessage());
             sendErrorResponse(response, HttpServletResponse.SC_UNAUTHORIZED,
-                    "Token is blacklisted", null);
+                    "Invalid or expired token", e.getMessage());
+            return;
+        }
+
+        if (isRevoked(jwt, claims)) {
+            log.error("Token is revoked");
+            sendErrorResponse(response, HttpServletResponse.SC_UNAUTHORIZED,
+                    "Token is revoked", null);
             return;
         }
 
         try {
-            Claims claims = jwtService.extractAllClaims(jwt);
             String email = claims.getSubject();
             String role = (String) claims.get("role");
+            Long userId = claims.get("userId") instanceof Number id ? id.longValue() : null;
 
-            if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            if (email != null && userId != null && SecurityContextHolder.getContext().getAuthentication() == null) {
                 List<SimpleGrantedAuthority> authorities =
                         List.of(new SimpleGrantedAuthority("ROLE_" + role));
 
+                // Resolved from the claims: services take the user id from here instead of querying by email
+                AuthenticatedUser principal = new AuthenticatedUser(userId, email, role);
                 UsernamePasswordAuthenticationToken authToken =
-                        new UsernamePasswordAuthenticationToken(email, null, authorities);
+                        new UsernamePasswordAuthenticationToken(principal, null, authorities);
                 authToken.setDetails(
                         new WebAuthenticationDetailsSource().buildDetails(request)
                 );
@@ -90,6 +106,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Versioned tokens: older than the user's current token version (logout everywhere, local map lookup).
+     * Every token: per-token blacklist (single logout, local replica).
+     */
+    boolean isRevoked(String jwt, Claims claims) {
+        if (claims.get(JWTService.TOKEN_VERSION_CLAIM) instanceof Number tokenVersion
+                && claims.get("userId") instanceof Number userId
+                && tokenVersion.longValue() < tokenVersionService.current(userId.longValue())) {
+            return true;
+        }
+        return redisService.isBlacklisted(jwt);
+    }
+
     /**
      * Send detailed error response in JSON format
      */
@@ -0,0 +1,80 @@
+package com.example.smartshop.configs;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Pub/sub channel that keeps the in-process (L1) caches of all nodes consistent
+ *
+ * Message: {nodeId}|{cacheName}|{key} evicts one key, {nodeId}|{cacheName} clears the region.
+ * A node ignores its own messages, it already applied the change locally.
+ */
+@Component
+@Slf4j
+public class LocalCacheInvalidationBus {
+
+    private static final String INVALIDATION_CHANNEL = "cache:l1:invalidate";
+    private static final String SEPARATOR = "|";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private volatile Listener listener;
+
+    /**
+     * Receives invalidations published by other nodes
+     */
+    public interface Listener {
+
+        /**
+         * @param key evicted key, null when the whole region was cleared
+         */
+        void onInvalidate(String cacheName, String key);
+    }
+
+    @PostConstruct
+    public void start() {
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 3);
+            Listener current = listener;
+            if (parts.length < 2 || nodeId.equals(parts[0]) || current == null) {
+                return;
+            }
+            current.onInvalidate(parts[1], parts.length == 3 ? parts[2] : null);
+        }, new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void publishEvict(String cacheName, Object key) {
+        publish(nodeId + SEPARATOR + cacheName + SEPARATOR + key);
+    }
+
+    public void publishClear(String cacheName) {
+        publish(nodeId + SEPARATOR + cacheName);
+    }
+
+    private void publish(String message) {
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, message);
+        } catch (Exception e) {
+            // Other nodes keep the stale entry until their short L1 TTL expires
+            log.error("❌ L1 cache invalidation not published: {}", message, e);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.smartshop.configs;
+
+import com.example.smartshop.commons.utils.TokenHashes;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process replica of the token blacklist: the per-request revocation check without Redis
+ *
+ * Exact set of SHA-256 token hashes (no false positives, so a hit needs no confirmation),
+ * each entry dropped when its token would have expired anyway. Revoked tokens are few
+ * (logouts within one token lifetime), so the set stays small.
+ *
+ * - Seeded from Redis (SCAN BLACKLIST:* + PTTL) at startup, again every resync-millis
+ *   (bounds the damage of a missed message) and after a Redis outage
+ * - Logouts on any node arrive by pub/sub, message {expiresAtMillis}|{tokenHash}
+ * - Until the first seed completes, callers must still ask Redis (isSeeded)
+ *
+ * Logouts whose Redis write failed are kept as unsynced and written again on recovery.
+ */
+@Component
+@Slf4j
+public class LocalTokenBlacklist {
+
+    public static final String BLACKLIST_KEY_PREFIX = "BLACKLIST:";
+    public static final String BLACKLIST_CHANNEL = "auth:blacklist";
+    private static final int SCAN_BATCH_SIZE = 1000;
+    private static final long PURGE_MILLIS = 60_000;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    @Autowired
+    @Qualifier("cacheMaintenanceScheduler")
+    private TaskScheduler cacheMaintenanceScheduler;
+
+    @Value("${auth.blacklist.resync-millis:300000}")
+    private long resyncMillis;
+
+    // tokenHash -> expiresAtMillis
+    private final Map<String, Long> tokenHashes = new ConcurrentHashMap<>();
+    // raw token -> expiresAtMillis (needed to write the Redis key again)
+    private final Map<String, Long> unsynced = new ConcurrentHashMap<>();
+
+    private volatile boolean seeded;
+
+    @PostConstruct
+    public void start() {
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            int separator = body.indexOf('|');
+            if (separator > 0) {
+                add(body.substring(separator + 1), Long.parseLong(body.substring(0, separator)));
+            }
+        }, new ChannelTopic(BLACKLIST_CHANNEL));
+
+        // First seed right away (off the startup thread)
+        cacheMaintenanceScheduler.scheduleWithFixedDelay(this::seed, Duration.ofMillis(resyncMillis));
+        cacheMaintenanceScheduler.scheduleWithFixedDelay(this::purgeExpired, Duration.ofMillis(PURGE_MILLIS));
+        redisCircuitBreaker.onRecovery(this::seed);
+    }
+
+    public void add(String tokenHash, long expiresAtMillis) {
+        if (expiresAtMillis > System.currentTimeMillis()) {
+            tokenHashes.merge(tokenHash, expiresAtMillis, Math::max);
+        }
+    }
+
+    public boolean contains(String tokenHash) {
+        Long expiresAt = tokenHashes.get(tokenHash);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    /**
+     * The replica holds every revocation known to Redis (up to pub/sub delivery)
+     */
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    /**
+     * Remember a logout that is not in Redis yet
+     */
+    public void markUnsynced(String token, long expiresAtMillis) {
+        unsynced.put(token, expiresAtMillis);
+    }
+
+    /**
+     * Logouts to write to Redis again; removed from the unsynced set
+     */
+    public Map<String, Long> drainUnsynced() {
+        Map<String, Long> drained = new HashMap<>();
+        for (String token : unsynced.keySet()) {
+            Long expiresAt = unsynced.remove(token);
+            if (expiresAt != null && expiresAt > System.currentTimeMillis()) {
+                drained.put(token, expiresAt);
+            }
+        }
+        return drained;
+    }
+
+    private void seed() {
+        long start = System.currentTimeMillis();
+        int loaded = 0;
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(BLACKLIST_KEY_PREFIX + "*")
+                .count(SCAN_BATCH_SIZE)
+                .build();
+        try (Cursor<String> cursor = stringRedisTemplate.scan(options)) {
+            List<String> batch = new ArrayList<>(SCAN_BATCH_SIZE);
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() == SCAN_BATCH_SIZE) {
+                    loaded += load(batch);
+                    batch.clear();
+                }
+            }
+            loaded += load(batch);
+            seeded = true;
+            log.info("🔐 Token blacklist replica seeded: {} revoked tokens, took={}ms",
+                    loaded, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("Token blacklist replica not seeded, keeping current entries: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * One pipelined PTTL per batch of keys
+     */
+    private int load(List<String> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        List<Object> ttls = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.keyCommands().pTtl(key.getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+
+        long now = System.currentTimeMillis();
+        int loaded = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            // -1: no TTL (never written by logout), -2: expired since SCAN
+            if (ttls.get(i) instanceof Long ttlMillis && ttlMillis > 0) {
+                String token = keys.get(i).substring(BLACKLIST_KEY_PREFIX.length());
+                add(TokenHashes.sha256(token), now + ttlMillis);
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        tokenHashes.values().removeIf(expiresAt -> expiresAt <= now);
+        unsynced.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+}
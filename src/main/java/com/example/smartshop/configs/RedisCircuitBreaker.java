@@ -0,0 +1,174 @@
+package com.example.smartshop.configs;
+
+import com.example.smartshop.commons.exceptions.RedisCircuitOpenException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Circuit breaker in front of every Redis connection (templates and cache manager)
+ *
+ * - Closed: calls go through; connection failures, command timeouts and calls slower than
+ *   slow-call-millis count as failures, any fast success resets the count
+ * - Open (failure-threshold consecutive failures): calls fail immediately with
+ *   RedisCircuitOpenException, so requests fall back (cache bypass, local blacklist replica)
+ *   instead of waiting for the Lettuce timeout
+ * - A background PING every probe-millis closes the circuit again; no request traffic is
+ *   used as a probe. Recovery listeners then repair state missed while open.
+ *
+ * The pub/sub listener container uses the raw factory, it reconnects on its own.
+ */
+@Component
+@Slf4j
+public class RedisCircuitBreaker {
+
+    @Autowired
+    private RedisConnectionFactory redisConnectionFactory;
+
+    @Autowired
+    @Qualifier("redisProbeScheduler")
+    private TaskScheduler redisProbeScheduler;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${redis.circuit-breaker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${redis.circuit-breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${redis.circuit-breaker.slow-call-millis:1000}")
+    private long slowCallMillis;
+
+    @Value("${redis.circuit-breaker.probe-millis:2000}")
+    private long probeMillis;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final List<Runnable> recoveryListeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean open;
+    private ScheduledFuture<?> probe;
+
+    private Counter openedCounter;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        meterRegistry.gauge("redis.circuit.open", this, breaker -> breaker.open ? 1 : 0);
+        openedCounter = meterRegistry.counter("redis.circuit.opened");
+        rejectedCounter = meterRegistry.counter("redis.circuit.rejected");
+    }
+
+    /**
+     * Connection factory whose connections go through this breaker
+     */
+    public RedisConnectionFactory protect(RedisConnectionFactory connectionFactory) {
+        return enabled ? new CircuitBreakingRedisConnectionFactory(connectionFactory, this) : connectionFactory;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Run after the circuit closes again (on the probe thread)
+     */
+    public void onRecovery(Runnable listener) {
+        recoveryListeners.add(listener);
+    }
+
+    void acquirePermission() {
+        if (open) {
+            rejectedCounter.increment();
+            throw new RedisCircuitOpenException();
+        }
+    }
+
+    void recordSuccess(long elapsedMillis) {
+        if (elapsedMillis >= slowCallMillis) {
+            recordFailure(new QueryTimeoutException("Slow Redis call: " + elapsedMillis + "ms"));
+        } else {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    void recordFailure(Throwable failure) {
+        if (!isOutage(failure)) {
+            // Script errors, wrong types, ...: Redis answered
+            consecutiveFailures.set(0);
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            trip(failure);
+        }
+    }
+
+    private synchronized void trip(Throwable failure) {
+        if (open) {
+            return;
+        }
+        open = true;
+        openedCounter.increment();
+        log.error("🔌 Redis circuit OPEN after {} consecutive failures, bypassing Redis: {}",
+                consecutiveFailures.get(), failure.getMessage());
+        probe = redisProbeScheduler.scheduleWithFixedDelay(this::probe, Duration.ofMillis(probeMillis));
+    }
+
+    private void probe() {
+        long start = System.currentTimeMillis();
+        try (RedisConnection connection = redisConnectionFactory.getConnection()) {
+            String pong = connection.ping();
+            long elapsed = System.currentTimeMillis() - start;
+            if ("PONG".equalsIgnoreCase(pong) && elapsed < slowCallMillis) {
+                reset();
+            } else {
+                log.debug("Redis probe: response={}, took={}ms", pong, elapsed);
+            }
+        } catch (Exception e) {
+            log.debug("Redis probe failed: {}", e.getMessage());
+        }
+    }
+
+    private void reset() {
+        synchronized (this) {
+            if (!open) {
+                return;
+            }
+            consecutiveFailures.set(0);
+            open = false;
+            probe.cancel(false);
+        }
+        log.info("✅ Redis circuit CLOSED, Redis reachable again");
+        for (Runnable listener : recoveryListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                log.error("❌ Redis recovery listener failed", e);
+            }
+        }
+    }
+
+    private static boolean isOutage(Throwable failure) {
+        // RedisConnectionFailureException is a DataAccessResourceFailureException,
+        // Lettuce command timeouts are translated to QueryTimeoutException
+        return failure instanceof DataAccessResourceFailureException
+                || failure instanceof QueryTimeoutException;
+    }
+}
@@ -18,8 +18,19 @@ public class RedisHealthCheck implements HealthIndicator {
     @Autowired
     private RedisConnectionFactory redisConnectionFactory;
 
+    @Autowired
+    private RedisCircuitBreaker redisCircuitBreaker;
+
     @Override
     public Health health() {
+        // Open circuit: report without waiting for a timeout, the breaker probes in the background
+        if (redisCircuitBreaker.isOpen()) {
+            return Health.down()
+                    .withDetail("redis", "Circuit open")
+                    .withDetail("circuit", "OPEN")
+                    .withDetail("status", "Bypassed (database fallback)")
+                    .build();
+        }
         try {
             // Test ping Redis
             String pong = redisConnectionFactory.getConnection().ping();
@@ -30,6 +41,7 @@ public class RedisHealthCheck implements HealthIndicator {
                         .withDetail("redis", "Connected")
                         .withDetail("ping", pong)
                         .withDetail("status", "Available")
+                        .withDetail("circuit", "CLOSED")
                         .build();
             } else {
                 log.warn("Redis health check: UNEXPECTED RESPONSE - {}", pong);
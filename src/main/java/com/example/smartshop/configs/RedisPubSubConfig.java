@@ -0,0 +1,23 @@
+package com.example.smartshop.configs;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Redis pub/sub between application nodes (cache invalidation, shared state changes)
+ */
+@Configuration
+public class RedisPubSubConfig {
+
+    /**
+     * One subscriber connection shared by every channel listener
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.smartshop.configs;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * String template used by every Redis service, behind the circuit breaker
+ * (replaces the auto-configured one)
+ */
+@Configuration
+public class RedisTemplateConfig {
+
+    @Bean
+    public StringRedisTemplate stringRedisTemplate(RedisConnectionFactory connectionFactory,
+                                                   RedisCircuitBreaker redisCircuitBreaker) {
+        return new StringRedisTemplate(redisCircuitBreaker.protect(connectionFactory));
+    }
+}
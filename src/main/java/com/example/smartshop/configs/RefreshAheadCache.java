@@ -0,0 +1,237 @@
+package com.example.smartshop.configs;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Probabilistic early refresh (XFetch) for @Cacheable(sync = true) regions
+ *
+ * Values are stored as RefreshAheadEntry (value + load time + expiry). On a hit, a read
+ * triggers a background reload when now - delta * beta * ln(random) >= expiry, so the
+ * chance grows as the entry nears expiry and with how slow it is to rebuild.
+ * The caller always gets the current value; at most one reload per key runs on this node.
+ *
+ * Values written without a measured load (@CachePut, putIfAbsent) get the region's typical
+ * load time: a moving average of the measured loads, seeded with a configured default.
+ *
+ * The reload calls the region's CacheRegionLoader (through its proxy, with its own transaction)
+ * and only writes if the entry is still the one it set out to replace: a put or evict on this
+ * node cancels it, and the entry in the cache must be unchanged (no @CachePut or evict elsewhere).
+ */
+@Slf4j
+public class RefreshAheadCache implements Cache {
+
+    private final Cache delegate;
+    private final Duration ttl;
+    private final double beta;
+    private final AtomicLong typicalComputeMillis;
+    private final TaskExecutor refreshExecutor;
+    private final Function<Object, Object> reloader;
+
+    // Key -> token of the running reload; removed by local writes to cancel it
+    private final Map<String, Object> refreshing = new ConcurrentHashMap<>();
+
+    public RefreshAheadCache(Cache delegate,
+                             Duration ttl,
+                             double beta,
+                             AtomicLong typicalComputeMillis,
+                             TaskExecutor refreshExecutor,
+                             Function<Object, Object> reloader) {
+        this.delegate = delegate;
+        this.ttl = ttl;
+        this.beta = beta;
+        this.typicalComputeMillis = typicalComputeMillis;
+        this.refreshExecutor = refreshExecutor;
+        this.reloader = reloader;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper cached = delegate.get(key);
+        if (cached != null) {
+            if (cached.get() instanceof RefreshAheadEntry entry && shouldRefresh(entry)) {
+                refreshAsync(key, entry);
+            }
+            return (T) unwrap(cached.get());
+        }
+
+        Object loaded = delegate.get(key, () -> {
+            long start = System.currentTimeMillis();
+            T value = valueLoader.call();
+            return value != null ? wrap(value, System.currentTimeMillis() - start) : null;
+        });
+        return (T) unwrap(loaded);
+    }
+
+    private boolean shouldRefresh(RefreshAheadEntry entry) {
+        double gap = -entry.getComputeMillis() * beta * Math.log(ThreadLocalRandom.current().nextDouble());
+        return System.currentTimeMillis() + gap >= entry.getExpiresAtMillis();
+    }
+
+    private void refreshAsync(Object key, RefreshAheadEntry observed) {
+        String refreshKey = String.valueOf(key);
+        Object token = new Object();
+        if (refreshing.putIfAbsent(refreshKey, token) != null) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    long start = System.currentTimeMillis();
+                    Object value = reloader.apply(key);
+                    if (value != null) {
+                        RefreshAheadEntry refreshed = wrap(value, System.currentTimeMillis() - start);
+                        // Local put/evict wait for this and win; they remove the token first otherwise
+                        refreshing.computeIfPresent(refreshKey, (k, current) -> {
+                            if (current == token && isUnchanged(key, observed)) {
+                                delegate.put(key, refreshed);
+                                log.debug("🔄 Refreshed cache entry ahead of expiry: {}::{}", getName(), key);
+                            } else {
+                                log.debug("Cache entry changed during refresh, keeping it: {}::{}", getName(), key);
+                            }
+                            return current;
+                        });
+                    }
+                } catch (Exception e) {
+                    log.warn("Early cache refresh failed, entry expires normally: {}::{}, reason={}",
+                            getName(), key, e.getMessage());
+                } finally {
+                    refreshing.remove(refreshKey, token);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            // Refresh pool busy: the entry just expires normally
+            refreshing.remove(refreshKey, token);
+        }
+    }
+
+    /**
+     * Same load as when the refresh started, i.e. not rewritten or evicted by another node
+     */
+    private boolean isUnchanged(Object key, RefreshAheadEntry observed) {
+        ValueWrapper cached = delegate.get(key);
+        return cached != null
+                && cached.get() instanceof RefreshAheadEntry current
+                && current.getExpiresAtMillis() == observed.getExpiresAtMillis()
+                && current.getComputeMillis() == observed.getComputeMillis();
+    }
+
+    private void cancelRefresh(Object key) {
+        refreshing.remove(String.valueOf(key));
+    }
+
+    private RefreshAheadEntry wrap(Object value, long computeMillis) {
+        // Moving average, 1/8 weight per new load
+        typicalComputeMillis.accumulateAndGet(computeMillis, (typical, sample) -> typical + (sample - typical) / 8);
+        return new RefreshAheadEntry(value, computeMillis, System.currentTimeMillis() + ttl.toMillis());
+    }
+
+    private RefreshAheadEntry wrapTypical(Object value) {
+        return new RefreshAheadEntry(value, typicalComputeMillis.get(), System.currentTimeMillis() + ttl.toMillis());
+    }
+
+    private Object unwrap(Object cached) {
+        // Entries written before the region used refresh-ahead are plain values
+        return cached instanceof RefreshAheadEntry entry ? entry.getValue() : cached;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper cached = delegate.get(key);
+        return cached != null && cached.get() instanceof RefreshAheadEntry entry
+                ? new SimpleValueWrapper(entry.getValue())
+                : cached;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper cached = get(key);
+        Object value = cached != null ? cached.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    public CompletableFuture<?> retrieve(Object key) {
+        CompletableFuture<?> future = delegate.retrieve(key);
+        return future != null ? future.thenApply(this::unwrap) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> retrieve(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+        return delegate.retrieve(key, () -> {
+                    long start = System.currentTimeMillis();
+                    return valueLoader.get().thenApply(value -> (T) wrap(value, System.currentTimeMillis() - start));
+                })
+                .thenApply(value -> (T) unwrap(value));
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        cancelRefresh(key);
+        // Load time not measured here (@CachePut): the region's typical load time
+        delegate.put(key, value != null ? wrapTypical(value) : null);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        cancelRefresh(key);
+        ValueWrapper existing = delegate.putIfAbsent(key, value != null ? wrapTypical(value) : null);
+        return existing != null && existing.get() instanceof RefreshAheadEntry entry
+                ? new SimpleValueWrapper(entry.getValue())
+                : existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        cancelRefresh(key);
+        delegate.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        cancelRefresh(key);
+        return delegate.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        refreshing.clear();
+        delegate.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        refreshing.clear();
+        return delegate.invalidate();
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.smartshop.configs;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Cached value of a refresh-ahead region, with what XFetch needs to decide on an early reload
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RefreshAheadEntry {
+
+    private Object value;
+
+    /**
+     * How long the last load took (delta in XFetch)
+     */
+    private long computeMillis;
+
+    private long expiresAtMillis;
+}
@@ -0,0 +1,75 @@
+package com.example.smartshop.configs;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.core.task.TaskExecutor;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Which regions refresh ahead of expiry (RefreshAheadCache), and with what
+ */
+public class RefreshAheadPolicy {
+
+    private final Map<String, Duration> regionTtls;
+    private final double beta;
+    private final long defaultComputeMillis;
+    private final TaskExecutor refreshExecutor;
+    private final ObjectProvider<CacheRegionLoader> loaders;
+
+    // Typical load time per region, for values stored without a measured load (@CachePut, backfill)
+    private final Map<String, AtomicLong> computeMillisByRegion = new ConcurrentHashMap<>();
+
+    /**
+     * @param regionTtls           refresh-ahead regions and their Redis TTL
+     * @param beta                 XFetch beta: above 1 refreshes earlier, 0 disables early refresh
+     * @param defaultComputeMillis load time assumed for a region until a load has been measured
+     * @param loaders              beans that reload the regions (looked up lazily, they depend on the cache manager)
+     */
+    public RefreshAheadPolicy(Map<String, Duration> regionTtls,
+                              double beta,
+                              long defaultComputeMillis,
+                              TaskExecutor refreshExecutor,
+                              ObjectProvider<CacheRegionLoader> loaders) {
+        this.regionTtls = regionTtls;
+        this.beta = beta;
+        this.defaultComputeMillis = defaultComputeMillis;
+        this.refreshExecutor = refreshExecutor;
+        this.loaders = loaders;
+    }
+
+    /**
+     * Value written directly to Redis (batch backfill): the envelope RefreshAheadCache would write
+     */
+    public Object toStoredValue(String cacheName, Object value) {
+        Duration ttl = regionTtls.get(cacheName);
+        if (ttl == null || beta <= 0 || value == null) {
+            return value;
+        }
+        return new RefreshAheadEntry(value, computeMillis(cacheName).get(), System.currentTimeMillis() + ttl.toMillis());
+    }
+
+    public Cache decorate(Cache cache) {
+        Duration ttl = regionTtls.get(cache.getName());
+        if (ttl == null || beta <= 0) {
+            return cache;
+        }
+        String cacheName = cache.getName();
+        return new RefreshAheadCache(cache, ttl, beta, computeMillis(cacheName), refreshExecutor,
+                key -> loaderFor(cacheName).load(cacheName, key));
+    }
+
+    private CacheRegionLoader loaderFor(String cacheName) {
+        return loaders.orderedStream()
+                .filter(loader -> loader.getRegionNames().contains(cacheName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No CacheRegionLoader for region " + cacheName));
+    }
+
+    private AtomicLong computeMillis(String cacheName) {
+        return computeMillisByRegion.computeIfAbsent(cacheName, name -> new AtomicLong(defaultComputeMillis));
+    }
+}
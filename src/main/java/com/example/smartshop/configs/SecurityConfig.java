@@ -3,7 +3,9 @@ package com.example.smartshop.configs;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -28,6 +30,7 @@ import java.util.Map;
 @Configuration
 @RequiredArgsConstructor
 @EnableMethodSecurity(prePostEnabled = true)
+@Slf4j
 public class SecurityConfig {
     @Autowired
     private JwtAuthenticationFilter jwtAuthFilter;
@@ -70,9 +73,15 @@ public class SecurityConfig {
                         "/swagger-resources/**");
     }
 
+    /**
+     * BCrypt with the cost factor pinned in auth.password-hash.strength, so every node hashes with
+     * the same cost (stored hashes with a lower cost are rehashed on login).
+     * Each step doubles the time per hash: size it on the slowest node, not per node at startup.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${auth.password-hash.strength:10}") int strength) {
+        log.info("🔐 BCrypt cost factor: {}", strength);
+        return new BCryptPasswordEncoder(strength);
     }
     @Bean
     public AuthenticationManager authenticationManager(AuthenticationConfiguration config) throws Exception {
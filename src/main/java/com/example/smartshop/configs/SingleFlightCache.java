@@ -0,0 +1,199 @@
+package com.example.smartshop.configs;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Cache wrapper that loads each missing key once, for @Cacheable(sync = true)
+ *
+ * - Per node: the first caller registers a future, concurrent callers for the same key wait on it
+ *   for at most the lease wait (CacheLoadLeases wait-millis), then load themselves
+ * - Across nodes (optional, CacheLoadLeases): only the lease holder runs the loader,
+ *   the others poll the cache until the value appears or the wait runs out
+ *
+ * The loader result is written with put() instead of the delegate's synchronized get(key, loader),
+ * which would serialize misses on different keys of the same region.
+ */
+@Slf4j
+public class SingleFlightCache implements Cache {
+
+    private final Cache delegate;
+    private final CacheLoadLeases leases;
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    public SingleFlightCache(Cache delegate, CacheLoadLeases leases) {
+        this.delegate = delegate;
+        this.leases = leases;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper cached = delegate.get(key);
+        if (cached != null) {
+            return (T) cached.get();
+        }
+
+        String flightKey = String.valueOf(key);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(flightKey, flight);
+        if (leader != null) {
+            log.debug("Waiting for in-flight load: {}::{}", getName(), key);
+            return (T) await(leader, key, valueLoader);
+        }
+
+        try {
+            Object value = load(key, valueLoader);
+            flight.complete(value);
+            return (T) value;
+        } catch (RuntimeException e) {
+            // Any failure must release the followers
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, flight);
+        }
+    }
+
+    private Object load(Object key, Callable<?> valueLoader) {
+        String token = leases.tryAcquire(getName(), key);
+        if (token == null) {
+            ValueWrapper shared = waitForOtherNode(key);
+            if (shared != null) {
+                return shared.get();
+            }
+            log.debug("Lease holder did not publish {}::{} in time, loading locally", getName(), key);
+        }
+
+        try {
+            return loadAndPut(key, valueLoader);
+        } finally {
+            leases.release(getName(), key, token);
+        }
+    }
+
+    private Object loadAndPut(Object key, Callable<?> valueLoader) {
+        Object value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+
+        // sync=true bypasses CacheErrorHandler: a failed write must not fail the read
+        if (value != null) {
+            try {
+                delegate.put(key, value);
+            } catch (RuntimeException e) {
+                log.warn("Failed to cache loaded value {}::{}: {}", getName(), key, e.getMessage());
+            }
+        }
+        return value;
+    }
+
+    private ValueWrapper waitForOtherNode(Object key) {
+        long deadline = System.currentTimeMillis() + leases.getWaitMillis();
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                Thread.sleep(leases.getPollMillis());
+                ValueWrapper cached = delegate.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * Bounded wait: a slow leader must not pin every request thread asking for this key
+     */
+    private Object await(CompletableFuture<Object> leader, Object key, Callable<?> valueLoader) {
+        try {
+            return leader.get(leases.getWaitMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.debug("In-flight load of {}::{} not done in time, loading directly", getName(), key);
+            return loadAndPut(key, valueLoader);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ValueRetrievalException retrievalException) {
+                throw retrievalException;
+            }
+            throw new ValueRetrievalException(key, valueLoader, e.getCause());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return delegate.get(key, type);
+    }
+
+    @Override
+    public CompletableFuture<?> retrieve(Object key) {
+        return delegate.retrieve(key);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> retrieve(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+        return delegate.retrieve(key, valueLoader);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        delegate.put(key, value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        return delegate.putIfAbsent(key, value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        return delegate.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        return delegate.invalidate();
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.smartshop.configs;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Programmatic transactions
+ *
+ * Used where a request must not hold a DB connection for its whole duration
+ * (e.g. while waiting for a combined purchase batch).
+ */
+@Configuration
+public class TransactionConfig {
+
+    /**
+     * Same settings as @Transactional(isolation = Isolation.READ_COMMITTED) on stock mutations
+     */
+    @Bean
+    public TransactionTemplate readCommittedTransactionTemplate(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        return template;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.smartshop.configs;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * In-process Caffeine cache (L1) in front of a Redis cache (L2)
+ *
+ * Reads: L1 -> L2 -> method. An L2 hit is copied into L1.
+ * Writes and evictions go to both levels and are broadcast so other nodes drop their L1 copy.
+ *
+ * L1 keys carry the region version, so a version bump made by any node
+ * hides older L1 entries even before the invalidation message arrives.
+ */
+public class TwoLevelCache implements Cache {
+
+    private final Cache redisCache;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> localCache;
+    private final CacheNamespaceVersions versions;
+    private final LocalCacheInvalidationBus invalidationBus;
+
+    public TwoLevelCache(Cache redisCache,
+                         com.github.benmanes.caffeine.cache.Cache<String, Object> localCache,
+                         CacheNamespaceVersions versions,
+                         LocalCacheInvalidationBus invalidationBus) {
+        this.redisCache = redisCache;
+        this.localCache = localCache;
+        this.versions = versions;
+        this.invalidationBus = invalidationBus;
+    }
+
+    @Override
+    public String getName() {
+        return redisCache.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return redisCache.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        // Version taken before reading L2: a concurrent bump can only make this entry unreachable
+        String localKey = localKey(key);
+        Object value = localCache.getIfPresent(localKey);
+        if (value != null) {
+            return new SimpleValueWrapper(value);
+        }
+
+        ValueWrapper wrapper = redisCache.get(key);
+        if (wrapper != null && wrapper.get() != null) {
+            localCache.put(localKey, wrapper.get());
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String localKey = localKey(key);
+        Object value = localCache.getIfPresent(localKey);
+        if (value != null) {
+            return (T) value;
+        }
+
+        T loaded = redisCache.get(key, valueLoader);
+        if (loaded != null) {
+            localCache.put(localKey, loaded);
+        }
+        return loaded;
+    }
+
+    @Override
+    public CompletableFuture<?> retrieve(Object key) {
+        Object value = localCache.getIfPresent(localKey(key));
+        if (value != null) {
+            return CompletableFuture.completedFuture(value);
+        }
+        return redisCache.retrieve(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> retrieve(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+        Object value = localCache.getIfPresent(localKey(key));
+        if (value != null) {
+            return CompletableFuture.completedFuture((T) value);
+        }
+        return redisCache.retrieve(key, valueLoader);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        redisCache.put(key, value);
+        if (value != null) {
+            localCache.put(localKey(key), value);
+        }
+        invalidationBus.publishEvict(getName(), key);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = redisCache.putIfAbsent(key, value);
+        Object cached = existing != null ? existing.get() : value;
+        if (cached != null) {
+            localCache.put(localKey(key), cached);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        redisCache.evict(key);
+        evictLocal(key);
+        invalidationBus.publishEvict(getName(), key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean evicted = redisCache.evictIfPresent(key);
+        evictLocal(key);
+        invalidationBus.publishEvict(getName(), key);
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        redisCache.clear();
+        clearLocal();
+        invalidationBus.publishClear(getName());
+    }
+
+    @Override
+    public boolean invalidate() {
+        clear();
+        return true;
+    }
+
+    /**
+     * L1 lookup only, value as stored (no Redis call)
+     */
+    public Object getLocal(Object key) {
+        return localCache.getIfPresent(localKey(key));
+    }
+
+    /**
+     * Copy a value read from Redis by other means (CacheBatchOperations) into L1
+     */
+    public void putLocal(Object key, Object value) {
+        localCache.put(localKey(key), value);
+    }
+
+    /**
+     * Drop a key from this node's L1 only (L2 already handled elsewhere)
+     */
+    public void evictLocal(Object key) {
+        try {
+            localCache.invalidate(localKey(key));
+        } catch (RuntimeException e) {
+            // Region version never loaded on this node: nothing of it is in L1
+        }
+    }
+
+    public void clearLocal() {
+        localCache.invalidateAll();
+    }
+
+    private String localKey(Object key) {
+        return versions.current(getName()) + "::" + key;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.smartshop.configs;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Composite CacheManager: regions with an L1 spec become TwoLevelCache
+ * (Caffeine over Redis), every other region is served by Redis alone.
+ * Every region is wrapped in SingleFlightCache, so @Cacheable(sync = true) misses load once,
+ * and chosen regions in RefreshAheadCache on top of that.
+ *
+ * Transaction-aware decoration is applied here, around both levels,
+ * so L1 and L2 are updated together after commit.
+ */
+@Slf4j
+public class TwoLevelCacheManager extends AbstractTransactionSupportingCacheManager {
+
+    private final RedisCacheManager redisCacheManager;
+    private final Map<String, Caffeine<Object, Object>> localCacheSpecs;
+    private final CacheNamespaceVersions versions;
+    private final LocalCacheInvalidationBus invalidationBus;
+    private final CacheLoadLeases loadLeases;
+    private final RefreshAheadPolicy refreshAheadPolicy;
+
+    private final Map<String, TwoLevelCache> twoLevelCaches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(RedisCacheManager redisCacheManager,
+                                Map<String, Caffeine<Object, Object>> localCacheSpecs,
+                                CacheNamespaceVersions versions,
+                                LocalCacheInvalidationBus invalidationBus,
+                                CacheLoadLeases loadLeases,
+                                RefreshAheadPolicy refreshAheadPolicy) {
+        this.redisCacheManager = redisCacheManager;
+        this.localCacheSpecs = localCacheSpecs;
+        this.versions = versions;
+        this.invalidationBus = invalidationBus;
+        this.loadLeases = loadLeases;
+        this.refreshAheadPolicy = refreshAheadPolicy;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        invalidationBus.setListener(this::onRemoteInvalidation);
+        super.afterPropertiesSet();
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        List<Cache> caches = new ArrayList<>();
+        for (String cacheName : redisCacheManager.getCacheNames()) {
+            Cache cache = redisCacheManager.getCache(cacheName);
+            if (cache != null) {
+                caches.add(decorateRegion(cache));
+            }
+        }
+        log.info("L1 cache enabled for regions: {}", localCacheSpecs.keySet());
+        return caches;
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        Cache cache = redisCacheManager.getCache(name);
+        return cache != null ? decorateRegion(cache) : null;
+    }
+
+    public RedisCacheConfiguration getRedisCacheConfiguration(String cacheName) {
+        RedisCacheConfiguration configuration = redisCacheManager.getCacheConfigurations().get(cacheName);
+        return configuration != null ? configuration : redisCacheManager.getDefaultCacheConfiguration();
+    }
+
+    /**
+     * Value as the region stores it (refresh-ahead regions keep an envelope)
+     */
+    public Object toStoredValue(String cacheName, Object value) {
+        return refreshAheadPolicy.toStoredValue(cacheName, value);
+    }
+
+    /**
+     * L1 value of a key, null when the region has no L1 or the key is not there
+     */
+    public Object getLocal(String cacheName, Object key) {
+        TwoLevelCache cache = twoLevelCaches.get(cacheName);
+        return cache != null ? cache.getLocal(key) : null;
+    }
+
+    public void putLocal(String cacheName, Object key, Object value) {
+        TwoLevelCache cache = twoLevelCaches.get(cacheName);
+        if (cache != null) {
+            cache.putLocal(key, value);
+        }
+    }
+
+    private Cache decorateRegion(Cache redisCache) {
+        return refreshAheadPolicy.decorate(new SingleFlightCache(withLocalCache(redisCache), loadLeases));
+    }
+
+    private Cache withLocalCache(Cache redisCache) {
+        Caffeine<Object, Object> spec = localCacheSpecs.get(redisCache.getName());
+        if (spec == null) {
+            return redisCache;
+        }
+        return twoLevelCaches.computeIfAbsent(redisCache.getName(),
+                name -> new TwoLevelCache(redisCache, spec.build(), versions, invalidationBus));
+    }
+
+    private void onRemoteInvalidation(String cacheName, String key) {
+        TwoLevelCache cache = twoLevelCaches.get(cacheName);
+        if (cache == null) {
+            return;
+        }
+        if (key == null) {
+            cache.clearLocal();
+        } else {
+            cache.evictLocal(key);
+        }
+    }
+}
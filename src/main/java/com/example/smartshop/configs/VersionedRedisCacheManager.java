@@ -0,0 +1,30 @@
+package com.example.smartshop.configs;
+
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.util.Map;
+
+/**
+ * RedisCacheManager whose caches clear by version bump (see CacheNamespaceVersions).
+ * Transaction-aware decoration, when enabled, stays on the outside, so a bump happens after commit.
+ */
+public class VersionedRedisCacheManager extends RedisCacheManager {
+
+    private final CacheNamespaceVersions versions;
+
+    public VersionedRedisCacheManager(RedisCacheWriter cacheWriter,
+                                      RedisCacheConfiguration defaultCacheConfiguration,
+                                      Map<String, RedisCacheConfiguration> initialCacheConfigurations,
+                                      CacheNamespaceVersions versions) {
+        super(cacheWriter, defaultCacheConfiguration, initialCacheConfigurations);
+        this.versions = versions;
+    }
+
+    @Override
+    protected Cache decorateCache(Cache cache) {
+        return super.decorateCache(new VersionedRedisCache(cache, versions));
+    }
+}
@@ -7,7 +7,6 @@ import com.example.smartshop.models.dtos.responses.ApiResponse;
 import com.example.smartshop.models.dtos.responses.TokenDTO;
 import com.example.smartshop.models.dtos.responses.UserResponse;
 import com.example.smartshop.services.AuthService;
-import com.example.smartshop.services.RedisService;
 import com.example.smartshop.services.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -32,8 +31,6 @@ public class AuthController {
     @Autowired
     private UserService userService;
 
-    @Autowired
-    private RedisService redisService;
 
     @PostMapping("/login")
     @Operation(summary = "Login")
@@ -57,8 +54,7 @@ public class AuthController {
         if (token != null && token.startsWith("Bearer ")) {
             token = token.substring(7);
 
-            long expirationMillis = authService.getExpirationMillis(token);
-            redisService.addToBlacklist(token, expirationMillis);
+            authService.logout(token);
 
             SecurityContextHolder.clearContext();
 
@@ -67,4 +63,22 @@ public class AuthController {
 
         return ResponseUtil.error("No valid token found", HttpStatus.UNAUTHORIZED);
     }
+
+    @PostMapping("/logout-all")
+    @Operation(summary = "Logout everywhere", description = "Revokes every token of the user, on all devices")
+    public ResponseEntity<ApiResponse<Object>> logoutAll(HttpServletRequest request) {
+        String token = request.getHeader("Authorization");
+
+        if (token != null && token.startsWith("Bearer ")) {
+            token = token.substring(7);
+
+            authService.logoutAll(token);
+
+            SecurityContextHolder.clearContext();
+
+            return ResponseUtil.success("Logged out from all devices successfully", null);
+        }
+
+        return ResponseUtil.error("No valid token found", HttpStatus.UNAUTHORIZED);
+    }
 }
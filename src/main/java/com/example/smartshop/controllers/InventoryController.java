@@ -5,6 +5,8 @@ import com.example.smartshop.models.dtos.requets.*;
 import com.example.smartshop.models.dtos.responses.ApiResponse;
 import com.example.smartshop.models.dtos.responses.CacheablePage;
 import com.example.smartshop.models.dtos.responses.InventoryLogResponse;
+import com.example.smartshop.models.dtos.responses.InventoryRollupResponse;
+import com.example.smartshop.models.dtos.responses.InventoryRollupSummaryResponse;
 import com.example.smartshop.services.InventoryService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -18,6 +20,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -160,4 +163,65 @@ public class InventoryController {
 
         return ResponseUtil.success("Stock adjusted successfully", null);
     }
+
+    @PostMapping("/{productId}/shards")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Enable sharded stock", description = "Split stock of a hot product over several rows (Admin only)")
+    public ResponseEntity<ApiResponse<Object>> enableShardedStock(
+            @PathVariable Long productId,
+            @RequestParam(defaultValue = "8") int count) {
+        log.info("Enable sharded stock request: productId={}, shards={}", productId, count);
+
+        inventoryService.enableShardedStock(productId, count);
+
+        return ResponseUtil.success("Sharded stock enabled successfully", null);
+    }
+
+    @DeleteMapping("/{productId}/shards")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Disable sharded stock", description = "Merge stock shards back into the product (Admin only)")
+    public ResponseEntity<ApiResponse<Object>> disableShardedStock(@PathVariable Long productId) {
+        log.info("Disable sharded stock request: productId={}", productId);
+
+        inventoryService.disableShardedStock(productId);
+
+        return ResponseUtil.success("Sharded stock disabled successfully", null);
+    }
+
+    @GetMapping("/rollups/product/{productId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Get daily movements", description = "Daily stock movements of a product from rollups (Admin only)")
+    public ResponseEntity<ApiResponse<List<InventoryRollupResponse>>> getDailyMovements(
+            @PathVariable Long productId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        List<InventoryRollupResponse> movements = inventoryService.getDailyMovements(productId, from, to);
+
+        return ResponseUtil.success("Daily movements retrieved successfully", movements);
+    }
+
+    @GetMapping("/rollups/summary")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Get inventory summary", description = "Totals per operation for a date range (Admin only)")
+    public ResponseEntity<ApiResponse<List<InventoryRollupSummaryResponse>>> getRollupSummary(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        List<InventoryRollupSummaryResponse> summary = inventoryService.getRollupSummary(from, to);
+
+        return ResponseUtil.success("Inventory summary retrieved successfully", summary);
+    }
+
+    @PostMapping("/rollups/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Rebuild rollups", description = "Recompute rollups of a past day from the logs (Admin only)")
+    public ResponseEntity<ApiResponse<Object>> rebuildRollups(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        log.info("Rebuild rollups request: date={}", date);
+
+        inventoryService.rebuildRollups(date);
+
+        return ResponseUtil.success("Rollups rebuilt successfully", null);
+    }
 }
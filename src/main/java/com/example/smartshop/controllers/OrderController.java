@@ -1,17 +1,21 @@
 package com.example.smartshop.controllers;
 
 import com.example.smartshop.commons.utils.ResponseUtil;
+import com.example.smartshop.configs.AuthenticatedUser;
 import com.example.smartshop.models.dtos.requets.CreateOrderRequest;
+import com.example.smartshop.models.dtos.requets.CreateStockHoldRequest;
 import com.example.smartshop.models.dtos.responses.ApiResponse;
 import com.example.smartshop.models.dtos.responses.CacheablePage;
 import com.example.smartshop.models.dtos.responses.OrderResponse;
+import com.example.smartshop.models.dtos.responses.StockHoldResponse;
 import com.example.smartshop.services.OrderService;
+import com.example.smartshop.services.StockHoldService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -21,14 +25,16 @@ public class OrderController {
     @Autowired
     private OrderService orderService;
 
+    @Autowired
+    private StockHoldService stockHoldService;
+
     @PostMapping
     @Operation(summary = "Create Order")
     public ResponseEntity<ApiResponse<OrderResponse>> createOrder(
             @Valid @RequestBody CreateOrderRequest request,
-            Authentication authentication) {
+            @AuthenticationPrincipal AuthenticatedUser user) {
 
-        String userEmail = authentication.getName();
-        OrderResponse order = orderService.createOrder(request, userEmail);
+        OrderResponse order = orderService.createOrder(request, user.id());
 
         return ResponseUtil.created("Order created successfully", order);
     }
@@ -37,10 +43,9 @@ public class OrderController {
     @Operation(summary = "Get Order Detail")
     public ResponseEntity<ApiResponse<OrderResponse>> getOrder(
             @PathVariable Long orderId,
-            Authentication authentication) {
+            @AuthenticationPrincipal AuthenticatedUser user) {
 
-        String userEmail = authentication.getName();
-        OrderResponse order = orderService.getOrderById(orderId, userEmail);
+        OrderResponse order = orderService.getOrderById(orderId, user.id());
 
         return ResponseUtil.success("Order detail retrieved successfully", order);
     }
@@ -48,13 +53,46 @@ public class OrderController {
     @GetMapping
     @Operation(summary = "Get My Order")
     public ResponseEntity<ApiResponse<CacheablePage<OrderResponse>>> getMyOrders(
-            Authentication authentication,
+            @AuthenticationPrincipal AuthenticatedUser user,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
 
-        String userEmail = authentication.getName();
-        CacheablePage<OrderResponse> orders = orderService.getOrdersByUser(userEmail, page, size);
+        CacheablePage<OrderResponse> orders = orderService.getOrdersByUser(user.id(), page, size);
 
         return ResponseUtil.success("Orders retrieved successfully", orders);
     }
+
+    @PostMapping("/holds")
+    @Operation(summary = "Hold Stock", description = "Hold stock for checkout, released automatically when it expires")
+    public ResponseEntity<ApiResponse<StockHoldResponse>> createHold(
+            @Valid @RequestBody CreateStockHoldRequest request,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+
+        StockHoldResponse hold = stockHoldService.createHold(request, user);
+
+        return ResponseUtil.created("Stock held successfully", hold);
+    }
+
+    @PostMapping("/holds/{holdId}/confirm")
+    @Operation(summary = "Confirm Stock Hold", description = "Turn a stock hold into an order")
+    public ResponseEntity<ApiResponse<OrderResponse>> confirmHold(
+            @PathVariable String holdId,
+            @RequestParam(required = false) String notes,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+
+        OrderResponse order = stockHoldService.confirmHold(holdId, user, notes);
+
+        return ResponseUtil.created("Order created successfully", order);
+    }
+
+    @DeleteMapping("/holds/{holdId}")
+    @Operation(summary = "Release Stock Hold")
+    public ResponseEntity<ApiResponse<Object>> releaseHold(
+            @PathVariable String holdId,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+
+        stockHoldService.releaseHold(holdId, user);
+
+        return ResponseUtil.success("Stock hold released successfully", null);
+    }
 }
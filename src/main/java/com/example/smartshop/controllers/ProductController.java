@@ -15,6 +15,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/v1/products")
 @Tag(name = "Product Management", description = "APIs for managing products")
@@ -35,6 +37,13 @@ public class ProductController {
     }
 
 
+    @GetMapping("/batch")
+    @Operation(summary = "Get several products by ID (max 50, request order)")
+    public ResponseEntity<ApiResponse<List<ProductResponse>>> getProductsByIds(@RequestParam List<Long> ids) {
+        List<ProductResponse> products = productService.getProductsByIds(ids);
+        return ResponseUtil.success("Get Products Successfully", products);
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Get product by ID")
     public ResponseEntity<ApiResponse<ProductResponse>> getProductById(@PathVariable Long id) {
@@ -0,0 +1,61 @@
+package com.example.smartshop.entities;
+
+import com.example.smartshop.commons.enums.OperationType;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+
+import java.time.LocalDate;
+
+/**
+ * Per product, day and operation totals of inventory_logs.
+ * Maintained incrementally by InventoryLogPipeline together with the log rows.
+ *
+ * Schema (ddl-auto is none; the upsert relies on the unique key):
+ *   CREATE TABLE inventory_daily_rollups (
+ *       id BIGINT AUTO_INCREMENT PRIMARY KEY,
+ *       product_id BIGINT NOT NULL,
+ *       rollup_date DATE NOT NULL,
+ *       operation VARCHAR(32) NOT NULL,
+ *       total_quantity BIGINT NOT NULL,
+ *       log_count BIGINT NOT NULL,
+ *       created_at DATETIME(6), updated_at DATETIME(6), deleted_at DATETIME(6),
+ *       UNIQUE KEY uk_rollup_product_date_operation (product_id, rollup_date, operation),
+ *       KEY idx_rollup_date (rollup_date),
+ *       CONSTRAINT fk_rollup_product FOREIGN KEY (product_id) REFERENCES products (id)
+ *   );
+ * Existing history: POST /api/v1/inventories/rollups/rebuild?date=... per past day.
+ */
+@Entity
+@Table(name = "inventory_daily_rollups",
+        uniqueConstraints = {
+                @UniqueConstraint(columnNames = {"product_id", "rollup_date", "operation"})
+        },
+        indexes = {
+                @Index(columnList = "rollup_date")
+        })
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@SuperBuilder
+public class InventoryDailyRollupEntity extends BaseEntity {
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_id", nullable = false)
+    private ProductEntity product;
+
+    @Column(nullable = false)
+    private LocalDate rollupDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OperationType operation;
+
+    // Sum of quantityChange
+    @Column(nullable = false)
+    private Long totalQuantity;
+
+    // Number of log rows
+    @Column(nullable = false)
+    private Long logCount;
+}
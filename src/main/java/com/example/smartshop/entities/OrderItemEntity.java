@@ -14,7 +14,7 @@ import java.math.BigDecimal;
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
-public class OrderItemEntity extends BaseEntity{
+public class OrderItemEntity extends PooledIdEntity {
 
     @ManyToOne
     @JoinColumn(name = "order_id", nullable = false)
@@ -0,0 +1,42 @@
+package com.example.smartshop.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+
+/**
+ * Entity with ids taken from a pooled table sequence instead of AUTO_INCREMENT.
+ *
+ * IDENTITY needs the INSERT to run to learn the id, so Hibernate cannot batch it.
+ * Here one UPDATE of id_sequences reserves ALLOCATION_SIZE ids in memory,
+ * and inserts are sent in JDBC batches (hibernate.jdbc.batch_size).
+ *
+ * Schema:
+ *   CREATE TABLE id_sequences (sequence_name VARCHAR(64) PRIMARY KEY, next_val BIGINT NOT NULL);
+ *   INSERT INTO id_sequences VALUES ('order_ids',
+ *       GREATEST((SELECT COALESCE(MAX(id), 0) FROM orders), (SELECT COALESCE(MAX(id), 0) FROM order_items)) + 50 + 1);
+ *
+ * The seed adds ALLOCATION_SIZE because of the pooled optimizer (pinned in application.yml):
+ * a block read as next_val = N hands out N - 49 .. N, so a seed of MAX(id) + 1 would reuse existing ids.
+ */
+@Getter
+@Setter
+@SuperBuilder
+@AllArgsConstructor
+@NoArgsConstructor
+@MappedSuperclass
+public abstract class PooledIdEntity extends AuditableEntity {
+    public static final int ALLOCATION_SIZE = 50;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_ids")
+    @TableGenerator(
+            name = "order_ids",
+            table = "id_sequences",
+            pkColumnName = "sequence_name",
+            valueColumnName = "next_val",
+            pkColumnValue = "order_ids",
+            allocationSize = ALLOCATION_SIZE
+    )
+    private Long id;
+}
@@ -37,4 +37,15 @@ public class ProductEntity extends BaseEntity{
         @ManyToOne
         @JoinColumn(name = "category_id", nullable = false)
         private CategoryEntity category;
+
+        // Bumped on every write, including the native stock updates in ProductRepository.
+        // Required by every stock update strategy: products.version BIGINT NOT NULL DEFAULT 0
+        @Version
+        @Builder.Default
+        @Column(nullable = false)
+        private Long version = 0L;
+
+        // Number of product_stock_shards rows holding the stock of a hot product.
+        // null = not sharded, stock lives in the stock column.
+        private Integer stockShards;
 }
@@ -0,0 +1,43 @@
+package com.example.smartshop.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+
+/**
+ * One bucket of a sharded product's stock.
+ * Buyers of a hot product are spread over several rows instead of queueing on products.stock.
+ *
+ * Schema (ddl-auto is none):
+ *   ALTER TABLE products ADD COLUMN stock_shards INT NULL;
+ *   CREATE TABLE product_stock_shards (
+ *       id BIGINT AUTO_INCREMENT PRIMARY KEY,
+ *       product_id BIGINT NOT NULL,
+ *       shard_no INT NOT NULL,
+ *       stock INT NOT NULL,
+ *       created_at DATETIME(6), updated_at DATETIME(6), deleted_at DATETIME(6),
+ *       UNIQUE KEY uk_shard_product_no (product_id, shard_no),
+ *       CONSTRAINT fk_shard_product FOREIGN KEY (product_id) REFERENCES products (id)
+ *   );
+ */
+@Entity
+@Table(name = "product_stock_shards",
+        uniqueConstraints = {
+                @UniqueConstraint(columnNames = {"product_id", "shard_no"})
+        })
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@SuperBuilder
+public class ProductStockShardEntity extends BaseEntity {
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_id", nullable = false)
+    private ProductEntity product;
+
+    @Column(nullable = false)
+    private Integer shardNo;
+
+    @Column(nullable = false)
+    private Integer stock;
+}
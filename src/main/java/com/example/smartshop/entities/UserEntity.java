@@ -27,4 +27,10 @@ public class UserEntity extends BaseEntity{
 
     @Enumerated(EnumType.STRING)
     private Role role;
+
+    // Embedded in every access token (claim "tv"); incrementing it revokes all tokens of the user.
+    // Column: users.token_version BIGINT NOT NULL DEFAULT 0
+    @Builder.Default
+    @Column(name = "token_version", nullable = false)
+    private Long tokenVersion = 0L;
 }
@@ -0,0 +1,26 @@
+package com.example.smartshop.models.dtos.requets;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CreateStockHoldRequest {
+
+    @NotEmpty(message = "Hold items cannot be empty")
+    @Valid
+    private List<OrderItemRequest> items;
+
+    // Optional, defaults to inventory.holds.default-seconds
+    @Positive(message = "Hold duration must be positive")
+    private Integer holdSeconds;
+}
@@ -0,0 +1,22 @@
+package com.example.smartshop.models.dtos.responses;
+
+import com.example.smartshop.commons.enums.OperationType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class InventoryRollupResponse {
+    private Long productId;
+    private LocalDate date;
+    private OperationType operation;
+    private String operationDisplay;
+    private Long totalQuantity;
+    private Long logCount;
+}
@@ -0,0 +1,19 @@
+package com.example.smartshop.models.dtos.responses;
+
+import com.example.smartshop.commons.enums.OperationType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class InventoryRollupSummaryResponse {
+    private OperationType operation;
+    private String operationDisplay;
+    private Long totalQuantity;
+    private Long logCount;
+    private Long productCount;
+}
@@ -0,0 +1,47 @@
+package com.example.smartshop.models.dtos.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Page;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Cached product list page: ids and totals only, products come from the product cache
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductIdPage implements Serializable {
+
+    private List<Long> productIds;
+    private int pageNumber;
+    private int pageSize;
+    private long totalElements;
+    private int totalPages;
+    private boolean first;
+    private boolean last;
+    private boolean empty;
+
+    public static ProductIdPage of(Page<Long> page) {
+        return new ProductIdPage(
+                page.getContent(),
+                page.getNumber(),
+                page.getSize(),
+                page.getTotalElements(),
+                page.getTotalPages(),
+                page.isFirst(),
+                page.isLast(),
+                page.isEmpty()
+        );
+    }
+
+    /**
+     * Same page with its products filled in
+     */
+    public <T> CacheablePage<T> withContent(List<T> content) {
+        return new CacheablePage<>(content, pageNumber, pageSize, totalElements, totalPages, first, last, empty);
+    }
+}
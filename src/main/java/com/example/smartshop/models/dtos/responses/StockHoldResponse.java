@@ -0,0 +1,20 @@
+package com.example.smartshop.models.dtos.responses;
+
+import com.example.smartshop.models.dtos.requets.OrderItemRequest;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockHoldResponse {
+    private String holdId;
+    private List<OrderItemRequest> items;
+    private LocalDateTime expiresAt;
+}
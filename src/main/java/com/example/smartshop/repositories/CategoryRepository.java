@@ -9,6 +9,9 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface CategoryRepository extends JpaRepository<CategoryEntity, Long> {
     boolean existsByNameAndDeletedAtIsNull(String name);
@@ -21,4 +24,10 @@ public interface CategoryRepository extends JpaRepository<CategoryEntity, Long>
     Page<CategoryEntity> findByDeletedAtIsNull(Pageable pageable);
 
     Page<CategoryEntity> findByNameContainingIgnoreCaseAndDeletedAtIsNull(String name, Pageable pageable);
+
+    Optional<CategoryEntity> findByIdAndDeletedAtIsNull(Long id);
+
+    // All live ids, for the catalog id filter rebuild
+    @Query("SELECT c.id FROM CategoryEntity c WHERE c.deletedAt IS NULL")
+    List<Long> findAllLiveIds();
 }
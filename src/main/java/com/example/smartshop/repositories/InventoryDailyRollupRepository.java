@@ -0,0 +1,55 @@
+package com.example.smartshop.repositories;
+
+import com.example.smartshop.commons.enums.OperationType;
+import com.example.smartshop.entities.InventoryDailyRollupEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface InventoryDailyRollupRepository extends JpaRepository<InventoryDailyRollupEntity, Long> {
+
+    @Query("SELECT r FROM InventoryDailyRollupEntity r " +
+            "WHERE r.product.id = :productId AND r.rollupDate BETWEEN :from AND :to " +
+            "ORDER BY r.rollupDate, r.operation")
+    List<InventoryDailyRollupEntity> findByProductAndDateRange(
+            @Param("productId") Long productId,
+            @Param("from") LocalDate from,
+            @Param("to") LocalDate to
+    );
+
+    @Query("SELECT r.operation AS operation, SUM(r.totalQuantity) AS totalQuantity, " +
+            "SUM(r.logCount) AS logCount, COUNT(DISTINCT r.product.id) AS productCount " +
+            "FROM InventoryDailyRollupEntity r " +
+            "WHERE r.rollupDate BETWEEN :from AND :to " +
+            "GROUP BY r.operation")
+    List<OperationTotal> summarizeByOperation(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query("DELETE FROM InventoryDailyRollupEntity r WHERE r.rollupDate = :date")
+    int deleteByRollupDate(@Param("date") LocalDate date);
+
+    /**
+     * Recompute one day from inventory_logs (backfill / repair)
+     */
+    @Modifying
+    @Query(value = "INSERT INTO inventory_daily_rollups " +
+            "(product_id, rollup_date, operation, total_quantity, log_count, created_at, updated_at) " +
+            "SELECT product_id, DATE(created_at), operation, COALESCE(SUM(quantity_change), 0), COUNT(*), NOW(), NOW() " +
+            "FROM inventory_logs " +
+            "WHERE created_at >= :date AND created_at < DATE_ADD(:date, INTERVAL 1 DAY) AND operation IS NOT NULL " +
+            "GROUP BY product_id, DATE(created_at), operation", nativeQuery = true)
+    int rebuildForDate(@Param("date") LocalDate date);
+
+    interface OperationTotal {
+        OperationType getOperation();
+        Long getTotalQuantity();
+        Long getLogCount();
+        Long getProductCount();
+    }
+}
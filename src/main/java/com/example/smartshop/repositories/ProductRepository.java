@@ -4,6 +4,7 @@ import com.example.smartshop.entities.ProductEntity;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
@@ -12,6 +13,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,6 +29,15 @@ public interface ProductRepository extends JpaRepository<ProductEntity, Long> {
     @Query("SELECT p FROM ProductEntity p WHERE p.id IN :ids AND p.deletedAt IS NULL ORDER BY p.id")
     List<ProductEntity> findAllByIdInForUpdate(@Param("ids") List<Long> ids);
 
+    @Query("SELECT p.stock FROM ProductEntity p WHERE p.id = :id AND p.deletedAt IS NULL")
+    Optional<Integer> findStockById(@Param("id") Long id);
+
+    @Query("SELECT p.id, p.stock FROM ProductEntity p WHERE p.id IN :ids AND p.deletedAt IS NULL")
+    List<Object[]> findStocksByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT p.id, p.stockShards FROM ProductEntity p WHERE p.id IN :ids AND p.stockShards IS NOT NULL")
+    List<Object[]> findStockShardsByIdIn(@Param("ids") Collection<Long> ids);
+
     @Modifying
     @Query("UPDATE ProductEntity p SET p.deletedAt = CURRENT_TIMESTAMP WHERE p.id = :id AND p.deletedAt IS NULL")
     void softDelete(@Param("id") Long id);
@@ -41,7 +52,62 @@ public interface ProductRepository extends JpaRepository<ProductEntity, Long> {
             String name, Long categoryId, Pageable pageable
     );
 
+    // Id-only pages for the normalized products list cache
+    @Query("SELECT p.id FROM ProductEntity p WHERE p.deletedAt IS NULL")
+    Page<Long> findIdsByDeletedAtIsNull(Pageable pageable);
+
+    @Query("SELECT p.id FROM ProductEntity p WHERE LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%')) " +
+            "AND p.deletedAt IS NULL")
+    Page<Long> findIdsByNameContaining(@Param("name") String name, Pageable pageable);
+
+    @Query("SELECT p.id FROM ProductEntity p WHERE p.category.id = :categoryId AND p.deletedAt IS NULL")
+    Page<Long> findIdsByCategoryId(@Param("categoryId") Long categoryId, Pageable pageable);
+
+    @Query("SELECT p.id FROM ProductEntity p WHERE LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%')) " +
+            "AND p.category.id = :categoryId AND p.deletedAt IS NULL")
+    Page<Long> findIdsByNameContainingAndCategoryId(
+            @Param("name") String name, @Param("categoryId") Long categoryId, Pageable pageable
+    );
+
+    Optional<ProductEntity> findByIdAndDeletedAtIsNull(Long id);
+
+    // All live ids, for the catalog id filter rebuild
+    @Query("SELECT p.id FROM ProductEntity p WHERE p.deletedAt IS NULL")
+    List<Long> findAllLiveIds();
+
+    @EntityGraph(attributePaths = "category")
+    List<ProductEntity> findByIdInAndDeletedAtIsNull(Collection<Long> ids);
+
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT p FROM ProductEntity p WHERE p.id IN :ids AND p.deletedAt IS NULL")
     List<ProductEntity> findAllByIdInAndDeletedAtIsNullForUpdate(@Param("ids") List<Long> ids);
+
+    /**
+     * Single-statement stock change. Returns the number of updated rows (0 = not found or
+     * not enough stock). The new stock value is stored in LAST_INSERT_ID() of this connection,
+     * read it with {@link #findLastUpdatedStock()}.
+     */
+    @Modifying
+    @Query(value = "UPDATE products SET stock = LAST_INSERT_ID(stock + :delta), version = version + 1, updated_at = NOW() " +
+            "WHERE id = :id AND deleted_at IS NULL AND stock + :delta >= 0", nativeQuery = true)
+    int addStockIfSufficient(@Param("id") Long id, @Param("delta") int delta);
+
+    @Query(value = "SELECT LAST_INSERT_ID()", nativeQuery = true)
+    Long findLastUpdatedStock();
+
+    @Query("SELECT p.stock AS stock, p.version AS version FROM ProductEntity p WHERE p.id = :id AND p.deletedAt IS NULL")
+    Optional<StockVersion> findStockVersionById(@Param("id") Long id);
+
+    /**
+     * Optimistic write: only succeeds if nobody changed the row since version was read
+     */
+    @Modifying
+    @Query(value = "UPDATE products SET stock = :stock, version = version + 1, updated_at = NOW() " +
+            "WHERE id = :id AND version = :version AND deleted_at IS NULL", nativeQuery = true)
+    int updateStockIfVersion(@Param("id") Long id, @Param("version") Long version, @Param("stock") int stock);
+
+    interface StockVersion {
+        Integer getStock();
+        Long getVersion();
+    }
 }
@@ -0,0 +1,41 @@
+package com.example.smartshop.repositories;
+
+import com.example.smartshop.entities.ProductStockShardEntity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ProductStockShardRepository extends JpaRepository<ProductStockShardEntity, Long> {
+
+    @Modifying
+    @Query(value = "UPDATE product_stock_shards SET stock = stock + :delta, updated_at = NOW() " +
+            "WHERE product_id = :productId AND shard_no = :shardNo AND stock + :delta >= 0", nativeQuery = true)
+    int addToShard(@Param("productId") Long productId, @Param("shardNo") int shardNo, @Param("delta") int delta);
+
+    /**
+     * Spread an increase evenly: every shard gets base, the first remainder shards get one more
+     */
+    @Modifying
+    @Query(value = "UPDATE product_stock_shards " +
+            "SET stock = stock + :base + (CASE WHEN shard_no < :remainder THEN 1 ELSE 0 END), updated_at = NOW() " +
+            "WHERE product_id = :productId", nativeQuery = true)
+    int addToAllShards(@Param("productId") Long productId, @Param("base") int base, @Param("remainder") int remainder);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ProductStockShardEntity s WHERE s.product.id = :productId ORDER BY s.shardNo")
+    List<ProductStockShardEntity> findByProductIdForUpdate(@Param("productId") Long productId);
+
+    @Query("SELECT COALESCE(SUM(s.stock), 0) FROM ProductStockShardEntity s WHERE s.product.id = :productId")
+    Long sumStockByProductId(@Param("productId") Long productId);
+
+    @Modifying
+    @Query("DELETE FROM ProductStockShardEntity s WHERE s.product.id = :productId")
+    void deleteByProductId(@Param("productId") Long productId);
+}
@@ -2,6 +2,9 @@ package com.example.smartshop.repositories;
 
 import com.example.smartshop.entities.UserEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -10,4 +13,19 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<UserEntity, Long> {
     Optional<UserEntity> findByEmail(String email);
     Optional<UserEntity> findByEmailAndDeletedAtIsNull(String email);
+    Optional<UserEntity> findByIdAndDeletedAtIsNull(Long id);
+
+    @Query("SELECT u.tokenVersion FROM UserEntity u WHERE u.id = :id")
+    Optional<Long> findTokenVersionById(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE UserEntity u SET u.tokenVersion = u.tokenVersion + 1 WHERE u.id = :id")
+    int incrementTokenVersion(@Param("id") Long id);
+
+    // Rehash on login: skipped if the password was changed meanwhile
+    @Modifying
+    @Query("UPDATE UserEntity u SET u.password = :newPassword WHERE u.id = :id AND u.password = :oldPassword")
+    int updatePasswordIfUnchanged(@Param("id") Long id,
+                                  @Param("oldPassword") String oldPassword,
+                                  @Param("newPassword") String newPassword);
 }
@@ -6,4 +6,14 @@ import com.example.smartshop.models.dtos.responses.TokenDTO;
 public interface AuthService {
     TokenDTO login(LoginDTO login);
     long getExpirationMillis(String token);
+
+    /**
+     * Revoke this token only (blacklist, other sessions stay logged in)
+     */
+    void logout(String token);
+
+    /**
+     * Revoke every token of the token's user (token version increment), this one included
+     */
+    void logoutAll(String token);
 }
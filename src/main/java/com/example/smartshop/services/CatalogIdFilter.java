@@ -0,0 +1,37 @@
+package com.example.smartshop.services;
+
+import com.example.smartshop.commons.enums.CatalogIdType;
+
+/**
+ * Rejects product/category ids that do not exist before they reach the cache or MySQL
+ *
+ * - Bloom filter of the live ids, rebuilt at startup and periodically (drops deleted ids),
+ *   new ids added after commit and pushed to the other nodes by pub/sub
+ * - Ids above the highest id seen by the last rebuild always pass (created on another
+ *   node, message not received yet)
+ * - Ids that pass the filter but are not found get a short-TTL negative entry in Redis
+ *
+ * Fails open: before the first rebuild, or when disabled, every id passes.
+ */
+public interface CatalogIdFilter {
+
+    /**
+     * false = the id certainly does not exist (no Redis or DB access)
+     */
+    boolean mightContain(CatalogIdType type, Long id);
+
+    /**
+     * The id was looked up recently and not found
+     */
+    boolean isMarkedMissing(CatalogIdType type, Long id);
+
+    /**
+     * Record a failed lookup or a delete (after commit inside a transaction)
+     */
+    void markMissing(CatalogIdType type, Long id);
+
+    /**
+     * Register a created id on every node (after commit inside a transaction)
+     */
+    void add(CatalogIdType type, Long id);
+}
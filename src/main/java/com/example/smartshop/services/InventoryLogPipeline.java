@@ -0,0 +1,38 @@
+package com.example.smartshop.services;
+
+import com.example.smartshop.entities.InventoryLogEntity;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Write-behind pipeline for inventory logs (inventory.log-pipeline.enabled)
+ *
+ * Logs are handed over when the surrounding transaction commits, journaled to local
+ * disk and inserted later in multi-row batches, so the audit write is off the request path.
+ * Rolled back transactions produce no logs.
+ * inventory_daily_rollups is kept up to date in the same write.
+ */
+public interface InventoryLogPipeline {
+
+    /**
+     * Queue logs for insertion after the current transaction commits
+     * (immediately when no transaction is active)
+     */
+    void submit(List<InventoryLogEntity> logs);
+
+    default void submit(InventoryLogEntity log) {
+        submit(List.of(log));
+    }
+
+    /**
+     * Write everything still queued, in the calling thread
+     */
+    void flush();
+
+    /**
+     * Whether logs created on the date are still queued, being written or deferred on this node
+     * (journal entries recovered at startup included): the rollups of that day are not final yet
+     */
+    boolean hasPendingEntries(LocalDate date);
+}
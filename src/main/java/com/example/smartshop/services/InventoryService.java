@@ -3,8 +3,11 @@ package com.example.smartshop.services;
 import com.example.smartshop.models.dtos.requets.*;
 import com.example.smartshop.models.dtos.responses.CacheablePage;
 import com.example.smartshop.models.dtos.responses.InventoryLogResponse;
+import com.example.smartshop.models.dtos.responses.InventoryRollupResponse;
+import com.example.smartshop.models.dtos.responses.InventoryRollupSummaryResponse;
 import org.springframework.data.domain.Pageable;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -24,4 +27,11 @@ public interface InventoryService {
 
     void returnProduct(ReturnRequest request);
     void adjustStock(AdjustStockRequest request);
+
+    void enableShardedStock(Long productId, int shardCount);
+    void disableShardedStock(Long productId);
+
+    List<InventoryRollupResponse> getDailyMovements(Long productId, LocalDate from, LocalDate to);
+    List<InventoryRollupSummaryResponse> getRollupSummary(LocalDate from, LocalDate to);
+    void rebuildRollups(LocalDate date);
 }
@@ -5,6 +5,12 @@ import io.jsonwebtoken.Claims;
 import org.springframework.security.core.userdetails.UserDetails;
 
 public interface JWTService {
+
+    /**
+     * Token version of the user at issue time (TokenVersionService)
+     */
+    String TOKEN_VERSION_CLAIM = "tv";
+
     String generateTokenWithUserInfo(UserEntity user);
     String extractEmail(String token);
     boolean isTokenExpired(String token);
@@ -5,7 +5,12 @@ import com.example.smartshop.models.dtos.responses.CacheablePage;
 import com.example.smartshop.models.dtos.responses.OrderResponse;
 
 public interface OrderService {
-    OrderResponse createOrder(CreateOrderRequest request, String userEmail);
-    OrderResponse getOrderById(Long orderId, String userEmail);
-    CacheablePage<OrderResponse> getOrdersByUser(String userEmail, int page, int size);
+    OrderResponse createOrder(CreateOrderRequest request, Long userId);
+
+    /**
+     * Create an order for units already taken from the Redis counters by a stock hold
+     */
+    OrderResponse createOrderFromHold(CreateOrderRequest request, Long userId);
+    OrderResponse getOrderById(Long orderId, Long userId);
+    CacheablePage<OrderResponse> getOrdersByUser(Long userId, int page, int size);
 }
@@ -0,0 +1,27 @@
+package com.example.smartshop.services;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Password hashing on the bounded passwordHashExecutor
+ *
+ * The calling thread waits for the result (at most auth.password-hash.timeout-millis);
+ * when the executor is saturated the call is rejected right away instead of queueing
+ * without bound.
+ */
+public interface PasswordHashService {
+
+    boolean matches(String rawPassword, String encodedPassword);
+
+    String encode(String rawPassword);
+
+    /**
+     * Hash in the background, nobody waits (rehash on login)
+     */
+    CompletableFuture<String> encodeAsync(String rawPassword);
+
+    /**
+     * The hash was made with a lower cost factor than the current one
+     */
+    boolean upgradeEncoding(String encodedPassword);
+}
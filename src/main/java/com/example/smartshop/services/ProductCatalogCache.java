@@ -0,0 +1,31 @@
+package com.example.smartshop.services;
+
+import com.example.smartshop.models.dtos.responses.ProductIdPage;
+import com.example.smartshop.models.dtos.responses.ProductResponse;
+
+import java.util.List;
+
+/**
+ * Cached product catalog (the cold part of a product)
+ *
+ * - products::{page-size-search-category} holds only ids and totals
+ * - product::{id} holds name, description, price and category; its stock field
+ *   is not kept current, callers overlay the live stock counter
+ */
+public interface ProductCatalogCache {
+
+    ProductIdPage findProductIdPage(int page, int size, String search, Long categoryId);
+
+    ProductResponse findProductDetail(Long productId);
+
+    /**
+     * Products in the given order: L1, then one MGET, then one query for the misses
+     * (written back to product::{id} in one pipeline). Unknown or deleted products are skipped.
+     */
+    List<ProductResponse> findProductDetails(List<Long> productIds);
+
+    /**
+     * List membership changed (create, delete, rename, category move)
+     */
+    void evictProductLists();
+}
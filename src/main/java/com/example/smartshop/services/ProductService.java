@@ -4,9 +4,12 @@ import com.example.smartshop.models.dtos.requets.ProductRequest;
 import com.example.smartshop.models.dtos.responses.CacheablePage;
 import com.example.smartshop.models.dtos.responses.ProductResponse;
 
+import java.util.List;
+
 public interface ProductService {
     CacheablePage<ProductResponse> getAllProducts(int page, int size, String search, Long categoryId);
     ProductResponse getProductById(Long id);
+    List<ProductResponse> getProductsByIds(List<Long> ids);
     ProductResponse createProduct(ProductRequest request);
     ProductResponse updateProduct(Long id, ProductRequest request);
     void deleteProduct(Long id);
@@ -0,0 +1,23 @@
+package com.example.smartshop.services;
+
+import com.example.smartshop.models.dtos.requets.PurchaseRequest;
+
+/**
+ * Group commit for concurrent single-product purchases (inventory.purchase-combiner.enabled)
+ *
+ * Purchases of the same product arriving within a short window are applied
+ * as one stock update in one transaction. Every caller still gets its own
+ * outcome: stock after its purchase, or its own exception.
+ */
+public interface PurchaseCombiner {
+
+    boolean isEnabled();
+
+    /**
+     * Blocks until the batch containing this purchase has committed or failed.
+     * Must be called outside a transaction.
+     *
+     * @return stock of the product right after this purchase
+     */
+    int purchase(PurchaseRequest request);
+}
@@ -1,9 +1,81 @@
 package com.example.smartshop.services;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
 public interface RedisService {
     void addToBlacklist(String token, long expirationMillis);
     boolean isBlacklisted(String token);
     Integer getStock(Long productId);
+
+    /**
+     * Stock counters of several products with one MGET, products without a counter are absent
+     */
+    Map<Long, Integer> getStocks(Collection<Long> productIds);
     void updateStock(Long productId, Integer stock);
     void evictStock(Long productId);
+
+    /**
+     * Seed a stock counter only if it does not exist yet (SET NX)
+     */
+    boolean initStockIfAbsent(Long productId, Integer stock);
+
+    /**
+     * Atomically check and decrement several stock counters with one Lua script.
+     *
+     * @return 0 when every counter was decremented,
+     *         i (1-based) when the i-th product does not have enough stock,
+     *         -i when the i-th counter is not initialised
+     */
+    long reserveStock(List<Long> productIds, List<Integer> quantities);
+
+    /**
+     * Add (or subtract, for negative values) quantities to counters that still exist.
+     * Missing counters are left alone so they are re-seeded from the database.
+     */
+    void incrementStockIfPresent(List<Long> productIds, List<Integer> quantities);
+
+    /**
+     * Lower a counter to at most the given value (DECRBY the excess, TTL kept).
+     * Never raises it, so units reserved by in-flight transactions are not overwritten.
+     */
+    void lowerStockTo(Long productId, int maxStock);
+
+    /**
+     * Store a stock hold, add its quantities to the per-product held totals
+     * and index it by expiry time, in one script
+     */
+    void saveStockHold(String holdId, String owner, Map<Long, Integer> quantities, long expiresAtMillis);
+
+    Optional<String> getStockHoldOwner(String holdId);
+
+    /**
+     * Delete a hold and subtract it from the held totals, atomically.
+     * Exactly one caller gets the quantities, everybody else gets an empty map.
+     */
+    Map<Long, Integer> claimStockHold(String holdId);
+
+    /**
+     * Delete a hold but keep its units in the held totals, atomically (confirm: the units stay
+     * held until the order deducting them has committed, see releaseHeldStock).
+     * Exactly one caller gets the quantities, everybody else gets an empty map.
+     */
+    Map<Long, Integer> takeStockHold(String holdId);
+
+    /**
+     * Subtract quantities from the held totals (units of a taken hold, once settled)
+     */
+    void releaseHeldStock(Map<Long, Integer> quantities);
+
+    /**
+     * Ids of holds that expired before the given time (oldest first)
+     */
+    List<String> findExpiredStockHolds(long beforeMillis, int limit);
+
+    /**
+     * Units of a product currently taken by holds (already subtracted from its counter)
+     */
+    int getHeldStock(Long productId);
 }
@@ -0,0 +1,60 @@
+package com.example.smartshop.services;
+
+import com.example.smartshop.entities.ProductEntity;
+import com.example.smartshop.services.StockUpdateService.StockChange;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Sharded stock for hot products (inventory.sharding.enabled).
+ *
+ * The stock of a sharded product is split over N rows of product_stock_shards,
+ * products.stock keeps only the value it had when sharding was enabled.
+ * inventory.sharding.enabled only gates enabling shards; existing shards are always used.
+ * Must be called inside the caller's transaction.
+ */
+public interface ShardedStockService {
+
+    /**
+     * True if new products may be sharded (enableSharding)
+     */
+    boolean isEnabled();
+
+    /**
+     * True if stock of this product is read from / written to its shards
+     */
+    boolean isSharded(ProductEntity product);
+
+    /**
+     * Shard count of the sharded products among productIds
+     */
+    Map<Long, Integer> findShardCounts(Collection<Long> productIds);
+
+    /**
+     * Add delta to the shards of a product (negative delta = deduct).
+     * Throws InsufficientStockException if the shards together cannot cover it.
+     * stockAfter - stockBefore is always exactly delta.
+     */
+    StockChange applyDelta(Long productId, int shardCount, int delta);
+
+    /**
+     * Sum of all shards, non-locking read
+     */
+    Integer getTotalStock(Long productId);
+
+    /**
+     * Overwrite the stock of a sharded product, spread evenly over its shards
+     */
+    void resetStock(Long productId, int stock);
+
+    /**
+     * Move the current stock of a product into shardCount shards (or re-shard)
+     */
+    void enableSharding(Long productId, int shardCount);
+
+    /**
+     * Fold the shards back into products.stock and delete them
+     */
+    void disableSharding(Long productId);
+}
@@ -0,0 +1,19 @@
+package com.example.smartshop.services;
+
+import com.example.smartshop.configs.AuthenticatedUser;
+import com.example.smartshop.models.dtos.requets.CreateStockHoldRequest;
+import com.example.smartshop.models.dtos.responses.OrderResponse;
+import com.example.smartshop.models.dtos.responses.StockHoldResponse;
+
+/**
+ * Time-limited stock holds for checkout (requires inventory.reservation.enabled)
+ *
+ * A hold takes units from the Redis stock counters only; the products rows are
+ * not touched until the hold is confirmed into an order. Unconfirmed holds are
+ * given back when they expire. A hold belongs to the user id that created it.
+ */
+public interface StockHoldService {
+    StockHoldResponse createHold(CreateStockHoldRequest request, AuthenticatedUser user);
+    OrderResponse confirmHold(String holdId, AuthenticatedUser user, String notes);
+    void releaseHold(String holdId, AuthenticatedUser user);
+}
@@ -0,0 +1,55 @@
+package com.example.smartshop.services;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Optional Redis front line for stock deduction.
+ *
+ * When enabled, purchases decrement the product:stock: counters atomically (Lua)
+ * before any database row lock is taken, so oversell attempts are rejected without
+ * queueing on the products row. MySQL stays the source of truth.
+ */
+public interface StockReservationService {
+    boolean isEnabled();
+
+    /**
+     * Reserve quantities (productId -> quantity) in Redis.
+     * Throws InsufficientStockException when a counter cannot cover the request.
+     * If called inside a transaction, the reservation is released automatically on rollback.
+     *
+     * @return true if the counters were decremented, false if reservation was skipped
+     */
+    boolean reserve(Map<Long, Integer> quantities);
+
+    /**
+     * Give reserved quantities back to the counters (compensation for failed orders)
+     */
+    void release(Map<Long, Integer> quantities);
+
+    /**
+     * Propagate a stock change that bypassed reserve() (restock, return, adjustment,
+     * a purchase whose reservation was skipped) to the counter. Inside a transaction it runs after commit.
+     * Applied as a delta to an existing counter, never as an absolute value: after-commit
+     * callbacks of concurrent transactions run in any order.
+     */
+    void syncStock(Long productId, int quantityChange);
+
+    /**
+     * Drop the counter after an absolute stock overwrite (product update), so the next
+     * read re-seeds it from the committed value. Inside a transaction it runs after commit.
+     */
+    void resetStock(Long productId);
+
+    /**
+     * Lower the counter to the committed database value (minus held units), in the background.
+     * Inside a transaction it runs after completion, once a rollback has released the reservation.
+     */
+    void reconcile(Long productId);
+
+    /**
+     * Current stock for display, read from the product:stock: counters.
+     * Missing counters are seeded from the database; unknown products are absent.
+     */
+    Map<Long, Integer> getLiveStock(Collection<Long> productIds);
+}
@@ -0,0 +1,51 @@
+package com.example.smartshop.services;
+
+import com.example.smartshop.entities.ProductEntity;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Applies stock changes to the products table using the configured strategy
+ * (inventory.stock-update-strategy). Must be called inside the caller's transaction.
+ *
+ * Products with sharded stock (see ShardedStockService) are routed to their shards.
+ *
+ * Throws ProductNotFoundException / InsufficientStockException, never leaves stock negative.
+ */
+public interface StockUpdateService {
+
+    /**
+     * Add delta to the stock of one product (negative delta = deduct)
+     */
+    StockChange applyDelta(Long productId, int delta);
+
+    /**
+     * Deduct quantities (productId -> quantity) from several products, all or nothing.
+     * Rows are updated in ascending id order to avoid deadlocks.
+     */
+    List<StockChange> deduct(Map<Long, Integer> quantities);
+
+    /**
+     * Committed stock of a product without locking (products.stock or the sum of its shards)
+     */
+    Optional<Integer> findCurrentStock(Long productId);
+
+    /**
+     * findCurrentStock for several products with one query (plus one per sharded product).
+     * Unknown or deleted products are absent.
+     */
+    Map<Long, Integer> findCurrentStocks(Collection<Long> productIds);
+
+    @Getter
+    @AllArgsConstructor
+    class StockChange {
+        private final ProductEntity product;
+        private final int stockBefore;
+        private final int stockAfter;
+    }
+}
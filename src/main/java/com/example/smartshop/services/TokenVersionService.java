@@ -0,0 +1,23 @@
+package com.example.smartshop.services;
+
+/**
+ * Per-user token generation counter
+ *
+ * Every access token carries the version of its user at issue time (claim "tv").
+ * A token is valid only while its version equals the current one, so revoking every
+ * token of a user is one increment, and the per-request check is a local map lookup.
+ */
+public interface TokenVersionService {
+
+    /**
+     * Current version of a user, from the local map (Redis, then DB on a miss)
+     */
+    long current(Long userId);
+
+    /**
+     * Revoke every token issued to the user so far ("log out everywhere")
+     *
+     * @return the new version
+     */
+    long revokeAll(Long userId);
+}
@@ -5,4 +5,9 @@ import com.example.smartshop.models.dtos.responses.UserResponse;
 
 public interface UserService {
     UserResponse createUser(RegisterRequest user);
+
+    /**
+     * Live user by id, cached (name/email for responses and log notes without a user query)
+     */
+    UserResponse getUserById(Long userId);
 }
@@ -6,47 +6,113 @@ import com.example.smartshop.models.dtos.responses.TokenDTO;
 import com.example.smartshop.repositories.UserRepository;
 import com.example.smartshop.services.AuthService;
 import com.example.smartshop.services.JWTService;
+import com.example.smartshop.services.PasswordHashService;
+import com.example.smartshop.services.RedisService;
+import com.example.smartshop.services.TokenVersionService;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.AuthenticationException;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+
 @Service
+@Slf4j
 public class AuthServiceImpl implements AuthService {
     @Autowired
     private UserRepository userRepository;
     @Autowired
-    private AuthenticationManager authenticationManager;
+    private PasswordHashService passwordHashService;
     @Autowired
     private JWTService jwtService;
+    @Autowired
+    private TokenVersionService tokenVersionService;
+    @Autowired
+    private RedisService redisService;
+    @Autowired
+    @Qualifier("readCommittedTransactionTemplate")
+    private TransactionTemplate readCommittedTransactionTemplate;
+
+    // Compared against for unknown emails, so response time does not reveal which emails exist
+    private volatile String dummyHash;
 
+    /**
+     * One user query per login; BCrypt runs on the bounded hashing executor.
+     * A hash made with an older (lower) cost factor is replaced in the background.
+     */
     @Override
     public TokenDTO login(LoginDTO login) {
-        try {
-            authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(login.getEmail(), login.getPassword())
-            );
+        Optional<UserEntity> found = userRepository.findByEmailAndDeletedAtIsNull(login.getEmail());
 
-            UserEntity user = userRepository.findByEmail(login.getEmail())
-                    .orElseThrow(() -> new RuntimeException("User not found"));
+        String encodedPassword = found.map(UserEntity::getPassword).orElseGet(this::getDummyHash);
+        boolean matches = passwordHashService.matches(login.getPassword(), encodedPassword);
+        if (found.isEmpty() || !matches) {
+            throw new RuntimeException("Invalid email or password");
+        }
 
-            String token = jwtService.generateTokenWithUserInfo(user);
+        UserEntity user = found.get();
+        if (passwordHashService.upgradeEncoding(user.getPassword())) {
+            rehash(user.getId(), login.getPassword(), user.getPassword());
+        }
 
-            return TokenDTO.builder()
-                    .token(token)
-                    .userId(user.getId())
-                    .role(user.getRole().name())
-                    .build();
+        String token = jwtService.generateTokenWithUserInfo(user);
 
-        } catch (AuthenticationException e) {
-            throw new RuntimeException("Invalid email or password");
-        }
+        return TokenDTO.builder()
+                .token(token)
+                .userId(user.getId())
+                .role(user.getRole().name())
+                .build();
     }
 
     @Override
     public long getExpirationMillis(String token) {
         return jwtService.getExpirationMillis(token);
     }
+
+    @Override
+    public void logout(String token) {
+        redisService.addToBlacklist(token, getExpirationMillis(token));
+    }
+
+    @Override
+    public void logoutAll(String token) {
+        Claims claims = jwtService.extractAllClaims(token);
+        if (!(claims.get("userId") instanceof Number userId)) {
+            throw new RuntimeException("Token has no user id");
+        }
+        tokenVersionService.revokeAll(userId.longValue());
+        if (claims.get(JWTService.TOKEN_VERSION_CLAIM) == null) {
+            // Issued before token versions: not covered by the version increment
+            redisService.addToBlacklist(token, getExpirationMillis(token));
+        }
+    }
+
+    private void rehash(Long userId, String rawPassword, String oldHash) {
+        try {
+            passwordHashService.encodeAsync(rawPassword)
+                    .thenAccept(newHash -> readCommittedTransactionTemplate.executeWithoutResult(status ->
+                            userRepository.updatePasswordIfUnchanged(userId, oldHash, newHash)))
+                    .whenComplete((ignored, e) -> {
+                        if (e != null) {
+                            log.warn("Password rehash failed for user {}: {}", userId, e.getMessage());
+                        } else {
+                            log.info("🔐 Password rehashed with the current cost factor: user {}", userId);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            // Hashing executor saturated: retried at the next login
+            log.debug("Password rehash skipped for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private String getDummyHash() {
+        String hash = dummyHash;
+        if (hash == null) {
+            hash = passwordHashService.encode("dummy-password-for-unknown-users");
+            dummyHash = hash;
+        }
+        return hash;
+    }
 }
@@ -0,0 +1,274 @@
+package com.example.smartshop.services.serviceimpl;
+
+import com.example.smartshop.commons.enums.CatalogIdType;
+import com.example.smartshop.commons.utils.LongBloomFilter;
+import com.example.smartshop.configs.RedisCircuitBreaker;
+import com.example.smartshop.repositories.CategoryRepository;
+import com.example.smartshop.repositories.ProductRepository;
+import com.example.smartshop.services.CatalogIdFilter;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * One Bloom filter per id space, swapped as a whole on rebuild
+ *
+ * Rebuild: the flag is raised before the id query, so an id committed after the query
+ * started is either seen by the query or queued in pendingAdds and replayed into the
+ * new filter. Adds are applied after commit only, never for uncommitted rows.
+ *
+ * A missed add message can hide an id below the watermark: IDENTITY ids are assigned at
+ * INSERT, so a lower id may commit after a higher one raised the watermark. Every node
+ * therefore rebuilds after a Redis outage (its subscription may have dropped), and a node
+ * whose publish failed asks all nodes to rebuild (REBUILD message) once Redis is back.
+ *
+ * Bean name is referenced from @Cacheable conditions (@catalogIdFilter).
+ */
+@Service("catalogIdFilter")
+@Slf4j
+public class CatalogIdFilterImpl implements CatalogIdFilter {
+
+    private static final String ADD_CHANNEL = "catalog:ids";
+    private static final String REBUILD_MESSAGE = "REBUILD";
+    private static final long REBUILD_REQUEST_RETRY_MILLIS = 5000;
+    private static final String MISSING_KEY_PREFIX = "catalog:missing:";
+    private static final long MIN_EXPECTED_INSERTIONS = 1024;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    @Qualifier("cacheMaintenanceScheduler")
+    private TaskScheduler cacheMaintenanceScheduler;
+
+    @Autowired
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    @Value("${catalog.id-filter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${catalog.id-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${catalog.id-filter.rebuild-millis:21600000}")
+    private long rebuildMillis;
+
+    @Value("${catalog.id-filter.negative-ttl-seconds:60}")
+    private long negativeTtlSeconds;
+
+    private final Map<CatalogIdType, IdSet> idSets = new EnumMap<>(CatalogIdType.class);
+    // An add was not published: other nodes must rebuild
+    private final AtomicBoolean rebuildRequestPending = new AtomicBoolean();
+
+    private static final class IdSet {
+        private volatile Snapshot snapshot;
+        private volatile boolean rebuilding;
+        private final Queue<Long> pendingAdds = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * @param highWatermark highest id seen by the rebuild, larger ids always pass
+     */
+    private record Snapshot(LongBloomFilter filter, long highWatermark) {
+    }
+
+    @PostConstruct
+    public void start() {
+        for (CatalogIdType type : CatalogIdType.values()) {
+            idSets.put(type, new IdSet());
+        }
+        if (!enabled) {
+            log.info("Catalog id filter disabled");
+            return;
+        }
+
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            if (REBUILD_MESSAGE.equals(body)) {
+                scheduleRebuild();
+                return;
+            }
+            int separator = body.indexOf(':');
+            if (separator > 0) {
+                apply(CatalogIdType.valueOf(body.substring(0, separator)), Long.parseLong(body.substring(separator + 1)));
+            }
+        }, new ChannelTopic(ADD_CHANNEL));
+
+        // First run right away (off the startup thread), ids pass until it completes
+        cacheMaintenanceScheduler.scheduleWithFixedDelay(this::rebuildAll, Duration.ofMillis(rebuildMillis));
+        redisCircuitBreaker.onRecovery(() -> {
+            scheduleRebuild();
+            publishRebuildRequest();
+        });
+    }
+
+    @Override
+    public boolean mightContain(CatalogIdType type, Long id) {
+        if (!enabled || id == null) {
+            return true;
+        }
+        Snapshot snapshot = idSets.get(type).snapshot;
+        return snapshot == null || id > snapshot.highWatermark() || snapshot.filter().mightContain(id);
+    }
+
+    @Override
+    public boolean isMarkedMissing(CatalogIdType type, Long id) {
+        if (!enabled) {
+            return false;
+        }
+        try {
+            return Boolean.TRUE.equals(stringRedisTemplate.hasKey(missingKey(type, id)));
+        } catch (Exception e) {
+            // Unknown, let the lookup go to the DB
+            log.warn("Negative cache lookup failed for {} {}: {}", type, id, e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void markMissing(CatalogIdType type, Long id) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> {
+            try {
+                stringRedisTemplate.opsForValue().set(missingKey(type, id), "1", Duration.ofSeconds(negativeTtlSeconds));
+            } catch (Exception e) {
+                log.warn("Negative cache entry not written for {} {}: {}", type, id, e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void add(CatalogIdType type, Long id) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> {
+            apply(type, id);
+            try {
+                // A probe before the insert may have left a negative entry for this id
+                stringRedisTemplate.delete(missingKey(type, id));
+                stringRedisTemplate.convertAndSend(ADD_CHANNEL, type.name() + ":" + id);
+            } catch (Exception e) {
+                // Other nodes may reject the id (below their watermark) until they rebuild
+                log.error("❌ Catalog id {} {} not published, requesting a rebuild on all nodes", type, id, e);
+                rebuildRequestPending.set(true);
+                cacheMaintenanceScheduler.schedule(this::publishRebuildRequest,
+                        Instant.now().plusMillis(REBUILD_REQUEST_RETRY_MILLIS));
+            }
+        });
+    }
+
+    private void publishRebuildRequest() {
+        if (!rebuildRequestPending.getAndSet(false)) {
+            return;
+        }
+        try {
+            // Received by this node as well
+            stringRedisTemplate.convertAndSend(ADD_CHANNEL, REBUILD_MESSAGE);
+            log.info("🧱 Requested a catalog id filter rebuild on all nodes");
+        } catch (Exception e) {
+            rebuildRequestPending.set(true);
+            cacheMaintenanceScheduler.schedule(this::publishRebuildRequest,
+                    Instant.now().plusMillis(REBUILD_REQUEST_RETRY_MILLIS));
+        }
+    }
+
+    private void scheduleRebuild() {
+        // Off the listener / probe thread: the rebuild queries every live id
+        cacheMaintenanceScheduler.schedule(this::rebuildAll, Instant.now());
+    }
+
+    private void apply(CatalogIdType type, long id) {
+        IdSet idSet = idSets.get(type);
+        if (idSet.rebuilding) {
+            idSet.pendingAdds.add(id);
+        }
+        Snapshot snapshot = idSet.snapshot;
+        if (snapshot != null) {
+            snapshot.filter().add(id);
+        }
+    }
+
+    private void rebuildAll() {
+        rebuild(CatalogIdType.PRODUCT, productRepository::findAllLiveIds);
+        rebuild(CatalogIdType.CATEGORY, categoryRepository::findAllLiveIds);
+    }
+
+    private void rebuild(CatalogIdType type, Supplier<List<Long>> loader) {
+        IdSet idSet = idSets.get(type);
+        idSet.pendingAdds.clear();
+        idSet.rebuilding = true;
+        try {
+            long start = System.currentTimeMillis();
+            List<Long> ids = loader.get();
+
+            LongBloomFilter filter = new LongBloomFilter(
+                    Math.max(MIN_EXPECTED_INSERTIONS, ids.size() * 2L), falsePositiveRate);
+            long highWatermark = 0;
+            for (Long id : ids) {
+                filter.add(id);
+                highWatermark = Math.max(highWatermark, id);
+            }
+            idSet.snapshot = new Snapshot(filter, highWatermark);
+
+            Long pending;
+            while ((pending = idSet.pendingAdds.poll()) != null) {
+                filter.add(pending);
+            }
+            log.info("🧱 Catalog id filter rebuilt: type={}, ids={}, highWatermark={}, took={}ms",
+                    type, ids.size(), highWatermark, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("Catalog id filter rebuild failed for {}, keeping the previous one: {}", type, e.getMessage());
+        } finally {
+            idSet.rebuilding = false;
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static String missingKey(CatalogIdType type, Long id) {
+        return MISSING_KEY_PREFIX + type.name().toLowerCase() + ":" + id;
+    }
+}
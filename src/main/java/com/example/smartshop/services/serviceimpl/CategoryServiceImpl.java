@@ -1,11 +1,13 @@
 package com.example.smartshop.services.serviceimpl;
 
+import com.example.smartshop.commons.enums.CatalogIdType;
 import com.example.smartshop.entities.CategoryEntity;
 import com.example.smartshop.models.dtos.requets.CategoryRequest;
 import com.example.smartshop.models.dtos.responses.CacheablePage;
 import com.example.smartshop.models.dtos.responses.CategoryResponse;
 import com.example.smartshop.models.mappers.CaterogyMapper;
 import com.example.smartshop.repositories.CategoryRepository;
+import com.example.smartshop.services.CatalogIdFilter;
 import com.example.smartshop.services.CategoryService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -39,6 +41,9 @@ public class CategoryServiceImpl implements CategoryService {
     @Autowired
     private CaterogyMapper caterogyMapper;
 
+    @Autowired
+    private CatalogIdFilter catalogIdFilter;
+
     /**
      * Get all categories with pagination and search
      *
@@ -54,7 +59,7 @@ public class CategoryServiceImpl implements CategoryService {
     @Cacheable(
             value = "categories",
             key = "#page + '-' + #size + '-' + (#search != null ? #search : 'null')",
-            unless = "#result == null || #result.isEmpty()"
+            sync = true
     )
     public CacheablePage<CategoryResponse> findAllCategories(int page, int size, String search) {
         log.debug("📂 Fetching categories from DB: page={}, size={}, search={}", page, size, search);
@@ -79,19 +84,31 @@ public class CategoryServiceImpl implements CategoryService {
      * TTL: 30 minutes (categories rarely change)
      *
      * Example: category::5
+     *
+     * Unknown ids: rejected by the id filter without touching the cache (condition),
+     * then by the negative cache before the query
      */
     @Override
     @Transactional(readOnly = true)
     @Cacheable(
             value = "category",
             key = "#id",
-            unless = "#result == null"
+            condition = "@catalogIdFilter.mightContain(T(com.example.smartshop.commons.enums.CatalogIdType).CATEGORY, #id)",
+            sync = true
     )
     public CategoryResponse GetCategoryById(Long id) {
+        if (!catalogIdFilter.mightContain(CatalogIdType.CATEGORY, id)
+                || catalogIdFilter.isMarkedMissing(CatalogIdType.CATEGORY, id)) {
+            throw new RuntimeException("Category not found with id: " + id);
+        }
+
         log.debug("📂 Fetching category from DB: id={}", id);
 
-        CategoryEntity category = categoryRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Category not found with id: " + id));
+        CategoryEntity category = categoryRepository.findByIdAndDeletedAtIsNull(id)
+                .orElseThrow(() -> {
+                    catalogIdFilter.markMissing(CatalogIdType.CATEGORY, id);
+                    return new RuntimeException("Category not found with id: " + id);
+                });
 
         return caterogyMapper.toResponse(category);
     }
@@ -121,6 +138,7 @@ public class CategoryServiceImpl implements CategoryService {
                 .build();
 
         CategoryEntity savedCategory = categoryRepository.save(category);
+        catalogIdFilter.add(CatalogIdType.CATEGORY, savedCategory.getId());
 
         log.info("✅ Category created: id={}, name={}", savedCategory.getId(), savedCategory.getName());
         log.debug("🗑️ Evicted cache: categories (all entries)");
@@ -134,7 +152,8 @@ public class CategoryServiceImpl implements CategoryService {
      * Cache strategy:
      * - Use @CachePut to update category detail cache
      * - Evict categories list cache
-     * - Also evict products cache (product responses include category name)
+     * - Also evict product detail cache (product responses include category name,
+     *   products lists are hydrated from it)
      */
     @Override
     @Transactional
@@ -142,7 +161,7 @@ public class CategoryServiceImpl implements CategoryService {
             put = @CachePut(value = "category", key = "#id"),
             evict = {
                     @CacheEvict(value = "categories", allEntries = true),
-                    @CacheEvict(value = "products", allEntries = true)  // Products show category name
+                    @CacheEvict(value = "product", allEntries = true)  // Products show category name
             }
     )
     public CategoryResponse updateCategory(Long id, CategoryRequest categoryRequest) {
@@ -165,7 +184,7 @@ public class CategoryServiceImpl implements CategoryService {
 
         log.info("✅ Category updated: id={}, name={}", updatedCategory.getId(), updatedCategory.getName());
         log.debug("🔄 Updated cache: category::{}", id);
-        log.debug("🗑️ Evicted cache: categories (all), products (all)");
+        log.debug("🗑️ Evicted cache: categories (all), product (all)");
 
         return caterogyMapper.toResponse(updatedCategory);
     }
@@ -193,6 +212,7 @@ public class CategoryServiceImpl implements CategoryService {
 
         // Soft delete
         categoryRepository.softDelete(category.getId());
+        catalogIdFilter.markMissing(CatalogIdType.CATEGORY, id);
 
         log.info("✅ Category deleted: id={}, name={}", id, category.getName());
         log.debug("🗑️ Evicted cache: category::{}, categories (all), products (all)", id);
@@ -0,0 +1,535 @@
+package com.example.smartshop.services.serviceimpl;
+
+import com.example.smartshop.commons.enums.OperationType;
+import com.example.smartshop.commons.utils.AppendOnlyJournal;
+import com.example.smartshop.entities.InventoryLogEntity;
+import com.example.smartshop.repositories.InventoryLogRepository;
+import com.example.smartshop.services.InventoryLogPipeline;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Inventory log pipeline
+ *
+ * - After commit, entries are appended to a local journal (fsync) before they are queued
+ * - Bounded queue (inventory.log-pipeline.capacity), one writer drains it with
+ *   multi-row INSERTs of up to batch-size rows, then acknowledges them in the journal
+ * - Daily rollups (product x day x operation) are upserted in the same transaction as the rows,
+ *   so a batch retried within this process (rolled back first) is counted once
+ * - Queue full or journal unwritable -> the caller writes its own logs synchronously
+ *   (backpressure, nothing is dropped)
+ * - Failed batch -> retried, then deferred and retried every retry-millis (still journaled)
+ * - Startup -> entries journaled but never acknowledged (crash, failed batches) are written again
+ * - Shutdown -> writer stops, remaining entries are flushed before the DataSource closes
+ *
+ * Delivery is at least once: a crash between INSERT commit and journal acknowledgement
+ * writes that batch a second time on the next start, log rows and rollup totals alike
+ * (there is no batch id to dedupe on). Such a day can be recounted with the rollup rebuild,
+ * after removing the duplicated log rows.
+ *
+ * Metrics: inventory.log.pipeline.{queue.size, deferred, submitted, written, backpressure, failed, write}
+ */
+@Service
+@Slf4j
+public class InventoryLogPipelineImpl implements InventoryLogPipeline {
+
+    private static final String INSERT_PREFIX = "INSERT INTO inventory_logs " +
+            "(product_id, quantity_change, stock_before, stock_after, operation, performed_by, " +
+            "order_id, notes, reference_code, created_at, updated_at) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String ROLLUP_INSERT_PREFIX = "INSERT INTO inventory_daily_rollups " +
+            "(product_id, rollup_date, operation, total_quantity, log_count, created_at, updated_at) VALUES ";
+    private static final String ROLLUP_ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, NOW(), NOW())";
+    private static final String ROLLUP_UPSERT_SUFFIX = " ON DUPLICATE KEY UPDATE " +
+            "total_quantity = total_quantity + VALUES(total_quantity), " +
+            "log_count = log_count + VALUES(log_count), " +
+            "updated_at = NOW()";
+    private static final int MAX_ATTEMPTS = 3;
+    private static final String INVENTORY_LOG_CACHE = "inventory-log";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private InventoryLogRepository inventoryLogRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("inventoryLogWriterExecutor")
+    private TaskExecutor writerExecutor;
+
+    @Value("${inventory.log-pipeline.enabled:true}")
+    private boolean enabled;
+
+    @Value("${inventory.log-pipeline.capacity:10000}")
+    private int capacity;
+
+    @Value("${inventory.log-pipeline.batch-size:200}")
+    private int batchSize;
+
+    @Value("${inventory.log-pipeline.flush-interval-millis:200}")
+    private long flushIntervalMillis;
+
+    @Value("${inventory.log-pipeline.retry-millis:5000}")
+    private long retryMillis;
+
+    @Value("${inventory.log-pipeline.journal.dir:./data/inventory-log-journal}")
+    private String journalDir;
+
+    @Value("${inventory.log-pipeline.journal.segment-bytes:16777216}")
+    private long journalSegmentBytes;
+
+    @Value("${inventory.log-pipeline.journal.fsync:true}")
+    private boolean journalFsync;
+
+    private final ObjectMapper journalMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private AppendOnlyJournal journal;
+    private BlockingQueue<LogEntry> queue;
+    // Batches that exhausted their attempts, still unacknowledged in the journal
+    private final Queue<List<LogEntry>> deferred = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger deferredEntries = new AtomicInteger();
+    // Days of the batches being written right now, with the number of such batches
+    private final Map<LocalDate, Integer> writingDates = new ConcurrentHashMap<>();
+    private volatile long nextRetryAt;
+    private volatile boolean running;
+    private final CountDownLatch writerStopped = new CountDownLatch(1);
+    // Own transaction: also used from afterCommit callbacks, where the caller's one is finished
+    private TransactionTemplate writeTransaction;
+
+    private Counter submittedCounter;
+    private Counter writtenCounter;
+    private Counter backpressureCounter;
+    private Counter failedCounter;
+    private Timer writeTimer;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            log.info("Inventory log pipeline disabled, logs are saved synchronously");
+            return;
+        }
+
+        journal = new AppendOnlyJournal(Path.of(journalDir), journalSegmentBytes, journalFsync);
+        List<LogEntry> recovered = new ArrayList<>();
+        for (AppendOnlyJournal.Entry entry : journal.open()) {
+            try {
+                recovered.add(journalMapper.readValue(entry.payload(), LogEntry.class).withSeq(entry.seq()));
+            } catch (IOException e) {
+                log.error("Unreadable inventory log journal entry {}: {}", entry.seq(), entry.payload());
+            }
+        }
+        // Written first by the writer thread
+        for (int from = 0; from < recovered.size(); from += batchSize) {
+            defer(recovered.subList(from, Math.min(from + batchSize, recovered.size())));
+        }
+        if (!recovered.isEmpty()) {
+            log.warn("Recovered {} unwritten inventory logs from the journal", recovered.size());
+        }
+
+        writeTransaction = new TransactionTemplate(transactionManager);
+        writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        queue = new ArrayBlockingQueue<>(capacity);
+        meterRegistry.gauge("inventory.log.pipeline.queue.size", queue, BlockingQueue::size);
+        meterRegistry.gauge("inventory.log.pipeline.deferred", deferredEntries);
+        submittedCounter = meterRegistry.counter("inventory.log.pipeline.submitted");
+        writtenCounter = meterRegistry.counter("inventory.log.pipeline.written");
+        backpressureCounter = meterRegistry.counter("inventory.log.pipeline.backpressure");
+        failedCounter = meterRegistry.counter("inventory.log.pipeline.failed");
+        writeTimer = meterRegistry.timer("inventory.log.pipeline.write");
+
+        running = true;
+        writerExecutor.execute(this::writeLoop);
+        log.info("Inventory log pipeline started: capacity={}, batchSize={}", capacity, batchSize);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        if (!writerStopped.await(flushIntervalMillis + 5000, TimeUnit.MILLISECONDS)) {
+            log.warn("Inventory log writer did not stop in time, flushing from shutdown thread");
+        }
+        flush();
+        retryDeferred(true);
+        if (deferredEntries.get() > 0) {
+            log.warn("{} inventory logs not written, kept in the journal for the next start", deferredEntries.get());
+        }
+        journal.close();
+        log.info("Inventory log pipeline stopped");
+    }
+
+    @Override
+    public void submit(List<InventoryLogEntity> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        if (!enabled) {
+            // Inside the caller's transaction, rollups included
+            inventoryLogRepository.saveAll(logs);
+            upsertRollups(logs.stream().map(LogEntry::of).toList());
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(logs);
+                }
+            });
+        } else {
+            enqueue(logs);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        List<LogEntry> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    @Override
+    public boolean hasPendingEntries(LocalDate date) {
+        if (!enabled) {
+            return false;
+        }
+        // Checked in the order entries move (queue -> write -> deferred), so none slips between checks
+        return queue.stream().anyMatch(entry -> entry.createdAt().toLocalDate().equals(date))
+                || writingDates.containsKey(date)
+                || deferred.stream().flatMap(List::stream).anyMatch(entry -> entry.createdAt().toLocalDate().equals(date));
+    }
+
+    private void enqueue(List<InventoryLogEntity> logs) {
+        List<LogEntry> entries = logs.stream().map(LogEntry::of).toList();
+        submittedCounter.increment(entries.size());
+
+        List<LogEntry> journaled;
+        try {
+            journaled = journal(entries);
+        } catch (IOException e) {
+            // Not durable outside the database yet: write before returning to the caller
+            backpressureCounter.increment(entries.size());
+            log.error("Inventory log journal append failed, writing {} entries synchronously: {}",
+                    entries.size(), e.getMessage());
+            write(entries);
+            return;
+        }
+
+        List<LogEntry> overflow = new ArrayList<>();
+        for (LogEntry entry : journaled) {
+            if (!queue.offer(entry)) {
+                overflow.add(entry);
+            }
+        }
+
+        if (!overflow.isEmpty()) {
+            // Queue full: slow this caller down instead of dropping audit rows
+            backpressureCounter.increment(overflow.size());
+            log.warn("Inventory log queue full, writing {} entries synchronously", overflow.size());
+            write(overflow);
+        }
+    }
+
+    private List<LogEntry> journal(List<LogEntry> entries) throws IOException {
+        List<String> payloads = new ArrayList<>(entries.size());
+        for (LogEntry entry : entries) {
+            payloads.add(journalMapper.writeValueAsString(entry));
+        }
+        long[] seqs = journal.append(payloads);
+
+        List<LogEntry> journaled = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            journaled.add(entries.get(i).withSeq(seqs[i]));
+        }
+        return journaled;
+    }
+
+    private void writeLoop() {
+        List<LogEntry> batch = new ArrayList<>(batchSize);
+        try {
+            while (running) {
+                retryDeferred(false);
+                LogEntry first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // Entries already taken from the queue must not be lost
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        } finally {
+            writerStopped.countDown();
+        }
+    }
+
+    private void write(List<LogEntry> batch) {
+        Set<LocalDate> dates = batch.stream().map(entry -> entry.createdAt().toLocalDate()).collect(Collectors.toSet());
+        dates.forEach(date -> writingDates.merge(date, 1, Integer::sum));
+        try {
+            if (!tryWrite(batch)) {
+                failedCounter.increment(batch.size());
+                defer(batch);
+                log.error("❌ Inventory log batch of {} entries failed, retried in {}ms", batch.size(), retryMillis);
+            }
+        } finally {
+            // After defer(): a failed batch is always visible to hasPendingEntries
+            dates.forEach(date -> writingDates.computeIfPresent(date, (key, count) -> count > 1 ? count - 1 : null));
+        }
+    }
+
+    private void defer(List<LogEntry> batch) {
+        deferred.add(new ArrayList<>(batch));
+        deferredEntries.addAndGet(batch.size());
+    }
+
+    /**
+     * Deferred batches, oldest first; stops at the first one that still fails
+     */
+    private void retryDeferred(boolean force) {
+        if (deferred.isEmpty() || (!force && System.currentTimeMillis() < nextRetryAt)) {
+            return;
+        }
+        List<LogEntry> batch;
+        while ((batch = deferred.peek()) != null) {
+            if (!tryWrite(batch)) {
+                nextRetryAt = System.currentTimeMillis() + retryMillis;
+                return;
+            }
+            deferred.poll();
+            deferredEntries.addAndGet(-batch.size());
+        }
+    }
+
+    private boolean tryWrite(List<LogEntry> batch) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                writeTimer.record(() -> writeTransaction.executeWithoutResult(status -> {
+                    insert(batch);
+                    upsertRollups(batch);
+                }));
+                writtenCounter.increment(batch.size());
+                acknowledge(batch);
+                evictLogCache();
+                log.debug("✅ Wrote {} inventory logs", batch.size());
+                return true;
+            } catch (Exception e) {
+                log.warn("Inventory log batch insert failed (attempt {}/{}): {}",
+                        attempt, MAX_ATTEMPTS, e.getMessage());
+                if (attempt < MAX_ATTEMPTS && !sleepQuietly(100L * attempt)) {
+                    break;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void acknowledge(List<LogEntry> batch) {
+        // seq 0: written synchronously without a journal entry
+        long[] seqs = batch.stream().mapToLong(LogEntry::seq).filter(seq -> seq > 0).toArray();
+        try {
+            journal.ack(seqs);
+        } catch (IOException e) {
+            // Rows are committed: at worst they are written again after a restart
+            log.warn("Inventory log journal ack failed: {}", e.getMessage());
+        }
+    }
+
+    private void insert(List<LogEntry> batch) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX);
+        List<Object> args = new ArrayList<>(batch.size() * 11);
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDERS);
+
+            LogEntry entry = batch.get(i);
+            Collections.addAll(args,
+                    entry.productId(),
+                    entry.quantityChange(),
+                    entry.stockBefore(),
+                    entry.stockAfter(),
+                    entry.operation() != null ? entry.operation().name() : null,
+                    entry.performedById(),
+                    entry.orderId(),
+                    entry.notes(),
+                    entry.referenceCode(),
+                    entry.createdAt(),
+                    entry.createdAt());
+        }
+        jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    private void upsertRollups(List<LogEntry> entries) {
+        // One row per key, in key order so concurrent upserts lock rollup rows in the same order
+        Map<RollupKey, long[]> totals = new TreeMap<>();
+        for (LogEntry entry : entries) {
+            if (entry.operation() == null) {
+                continue;
+            }
+            RollupKey key = new RollupKey(entry.productId(), entry.createdAt().toLocalDate(), entry.operation());
+            long[] total = totals.computeIfAbsent(key, k -> new long[2]);
+            total[0] += entry.quantityChange() != null ? entry.quantityChange() : 0;
+            total[1]++;
+        }
+        if (totals.isEmpty()) {
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder(ROLLUP_INSERT_PREFIX);
+        List<Object> args = new ArrayList<>(totals.size() * 5);
+        for (Map.Entry<RollupKey, long[]> total : totals.entrySet()) {
+            if (!args.isEmpty()) {
+                sql.append(", ");
+            }
+            sql.append(ROLLUP_ROW_PLACEHOLDERS);
+            Collections.addAll(args,
+                    total.getKey().productId(),
+                    total.getKey().date(),
+                    total.getKey().operation().name(),
+                    total.getValue()[0],
+                    total.getValue()[1]);
+        }
+        sql.append(ROLLUP_UPSERT_SUFFIX);
+        jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    private void evictLogCache() {
+        // Reads cached between commit and insert would miss these rows
+        try {
+            Cache cache = cacheManager.getCache(INVENTORY_LOG_CACHE);
+            if (cache != null) {
+                cache.clear();
+            }
+        } catch (Exception e) {
+            log.warn("Failed to evict inventory-log cache: {}", e.getMessage());
+        }
+    }
+
+    private boolean sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private record RollupKey(Long productId, LocalDate date, OperationType operation)
+            implements Comparable<RollupKey> {
+        private static final Comparator<RollupKey> ORDER = Comparator
+                .comparing(RollupKey::productId)
+                .thenComparing(RollupKey::date)
+                .thenComparing(RollupKey::operation);
+
+        @Override
+        public int compareTo(RollupKey other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    /**
+     * Plain column values, captured after commit so generated ids are known
+     * seq: journal sequence number, 0 until journaled
+     */
+    private record LogEntry(
+            long seq,
+            Long productId,
+            Integer quantityChange,
+            Integer stockBefore,
+            Integer stockAfter,
+            OperationType operation,
+            Long performedById,
+            Long orderId,
+            String notes,
+            String referenceCode,
+            LocalDateTime createdAt
+    ) {
+        static LogEntry of(InventoryLogEntity log) {
+            return new LogEntry(
+                    0,
+                    log.getProduct().getId(),
+                    log.getQuantityChange(),
+                    log.getStockBefore(),
+                    log.getStockAfter(),
+                    log.getOperation(),
+                    log.getPerformedBy() != null ? log.getPerformedBy().getId() : null,
+                    log.getOrder() != null ? log.getOrder().getId() : null,
+                    log.getNotes(),
+                    log.getReferenceCode(),
+                    LocalDateTime.now()
+            );
+        }
+
+        LogEntry withSeq(long seq) {
+            return new LogEntry(seq, productId, quantityChange, stockBefore, stockAfter, operation,
+                    performedById, orderId, notes, referenceCode, createdAt);
+        }
+    }
+}
@@ -1,24 +1,33 @@
 package com.example.smartshop.services.serviceimpl;
 
 import com.example.smartshop.commons.enums.OperationType;
+import com.example.smartshop.commons.exceptions.InsufficientStockException;
 import com.example.smartshop.commons.exceptions.InvalidQuantityException;
-import com.example.smartshop.commons.exceptions.ProductNotFoundException;
 import com.example.smartshop.commons.exceptions.ResourceNotFoundException;
 import com.example.smartshop.entities.InventoryLogEntity;
 import com.example.smartshop.entities.OrderEntity;
-import com.example.smartshop.entities.ProductEntity;
 import com.example.smartshop.entities.UserEntity;
 import com.example.smartshop.models.dtos.requets.*;
 import com.example.smartshop.models.dtos.responses.CacheablePage;
 import com.example.smartshop.models.dtos.responses.InventoryLogResponse;
+import com.example.smartshop.models.dtos.responses.InventoryRollupResponse;
+import com.example.smartshop.models.dtos.responses.InventoryRollupSummaryResponse;
+import com.example.smartshop.models.dtos.responses.UserResponse;
+import com.example.smartshop.repositories.InventoryDailyRollupRepository;
 import com.example.smartshop.repositories.InventoryLogRepository;
 import com.example.smartshop.repositories.OrderRepository;
-import com.example.smartshop.repositories.ProductRepository;
 import com.example.smartshop.repositories.UserRepository;
+import com.example.smartshop.services.InventoryLogPipeline;
 import com.example.smartshop.services.InventoryService;
-import com.example.smartshop.services.RedisService;
+import com.example.smartshop.services.PurchaseCombiner;
+import com.example.smartshop.services.ShardedStockService;
+import com.example.smartshop.services.StockReservationService;
+import com.example.smartshop.services.StockUpdateService;
+import com.example.smartshop.services.StockUpdateService.StockChange;
+import com.example.smartshop.services.UserService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
@@ -27,7 +36,9 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -39,7 +50,13 @@ import java.util.stream.Collectors;
  *
  * Cache Strategy:
  * - Inventory logs (2 min): Fresh data needed, changes frequently
- * - When stock changes: evict product, products, productStock, inventory-log caches
+ * - Rollups: same region as logs, reports read inventory_daily_rollups instead of paging logs
+ * - When stock changes: evict inventory-log caches
+ *   (product detail/lists hold no live stock, reads overlay the product:stock: counter)
+ *
+ * Stock rows are modified through StockUpdateService (pessimistic lock or atomic UPDATE)
+ * Logs are written after commit by InventoryLogPipeline, not inside the stock transaction
+ * Customers/operators: cached user lookup + reference proxy, no user query per mutation
  *
  * @version 2.0
  */
@@ -48,37 +65,48 @@ import java.util.stream.Collectors;
 public class InventoryServiceImpl implements InventoryService {
 
     @Autowired
-    private ProductRepository productRepository;
+    private InventoryLogRepository inventoryLogRepository;
 
     @Autowired
-    private InventoryLogRepository inventoryLogRepository;
+    private InventoryLogPipeline inventoryLogPipeline;
 
     @Autowired
-    private RedisService redisService;
+    private InventoryDailyRollupRepository inventoryDailyRollupRepository;
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserService userService;
+
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private StockUpdateService stockUpdateService;
+
+    @Autowired
+    private ShardedStockService shardedStockService;
+
+    @Autowired
+    private PurchaseCombiner purchaseCombiner;
+
+    @Autowired
+    @Qualifier("readCommittedTransactionTemplate")
+    private TransactionTemplate readCommittedTransactionTemplate;
+
     /**
      * Restock product with cache eviction
      *
-     * When restocking:
-     * 1. Product detail cache must be cleared (stock changed)
-     * 2. Products list cache must be cleared (may affect display)
-     * 3. Product stock cache must be cleared
-     * 4. Inventory log cache must be cleared (new log added)
+     * When restocking the inventory log cache must be cleared (new log added)
+     * Product detail and lists are not evicted: reads overlay the live stock counter
      */
     @Override
     @Transactional(isolation = Isolation.READ_COMMITTED)
-    @Caching(evict = {
-            @CacheEvict(value = "product", key = "#request.productId"),
-            @CacheEvict(value = "products", allEntries = true),
-            @CacheEvict(value = "productStock", key = "#request.productId"),
-            @CacheEvict(value = "inventory-log", allEntries = true)
-    })
+    @CacheEvict(value = "inventory-log", allEntries = true)
     public void restock(RestockRequest request) {
         log.info("📦 Restocking product: productId={}, quantity={}, operatorId={}",
                 request.getProductId(), request.getQuantity(), request.getOperatorId());
@@ -88,49 +116,39 @@ public class InventoryServiceImpl implements InventoryService {
             throw new IllegalArgumentException("Quantity must be positive");
         }
 
-        // Lock and get product
-        ProductEntity product = productRepository.findByIdForUpdate(request.getProductId())
-                .orElseThrow(() -> new RuntimeException("Product not found: " + request.getProductId()));
-
-        UserEntity operator = userRepository.findById(request.getOperatorId())
-                .orElseThrow(() -> new RuntimeException("Operator not found"));
-
-        int stockBefore = product.getStock();
+        // Lookups first, so the product row is locked as briefly as possible
+        UserResponse operator = findUser(request.getOperatorId(), "Operator not found");
 
         // Update stock
-        product.setStock(stockBefore + request.getQuantity());
-        productRepository.save(product);
+        StockChange change = stockUpdateService.applyDelta(request.getProductId(), request.getQuantity());
 
         // Create inventory log
         InventoryLogEntity log = InventoryLogEntity.builder()
-                .product(product)
+                .product(change.getProduct())
                 .quantityChange(request.getQuantity())
-                .stockBefore(stockBefore)
-                .stockAfter(product.getStock())
+                .stockBefore(change.getStockBefore())
+                .stockAfter(change.getStockAfter())
                 .operation(OperationType.RESTOCK)
-                .performedBy(operator)
+                .performedBy(userRepository.getReferenceById(operator.getId()))
                 .notes("Restocked by " + operator.getName())
                 .referenceCode("RESTOCK-" + System.currentTimeMillis())
                 .build();
 
-        inventoryLogRepository.save(log);
+        inventoryLogPipeline.submit(log);
 
         // Update Redis stock cache
-        redisService.updateStock(request.getProductId(), product.getStock());
+        stockReservationService.syncStock(request.getProductId(), request.getQuantity());
     }
 
     /**
      * Purchase product (single item)
      * Same cache eviction strategy as restock
+     *
+     * Transaction is programmatic: with the purchase combiner enabled the caller
+     * waits for its batch without holding a DB connection
      */
     @Override
-    @Transactional(isolation = Isolation.READ_COMMITTED)
-    @Caching(evict = {
-            @CacheEvict(value = "product", key = "#request.productId"),
-            @CacheEvict(value = "products", allEntries = true),
-            @CacheEvict(value = "productStock", key = "#request.productId"),
-            @CacheEvict(value = "inventory-log", allEntries = true)
-    })
+    @CacheEvict(value = "inventory-log", allEntries = true)
     public void purchase(PurchaseRequest request) {
         log.info("🛒 Processing purchase: productId={}, quantity={}, orderId={}, customerId={}",
                 request.getProductId(), request.getQuantity(), request.getOrderId(), request.getCustomerId());
@@ -139,55 +157,72 @@ public class InventoryServiceImpl implements InventoryService {
             throw new InvalidQuantityException(request.getQuantity());
         }
 
-        ProductEntity product = productRepository.findByIdForUpdate(request.getProductId())
-                .orElseThrow(() -> new ProductNotFoundException(request.getProductId()));
-
-        UserEntity customer = userRepository.findById(request.getCustomerId())
-                .orElseThrow(() -> new RuntimeException("Customer not found"));
+        if (purchaseCombiner.isEnabled()) {
+            purchaseCombined(request);
+        } else {
+            readCommittedTransactionTemplate.executeWithoutResult(status -> purchaseInTransaction(request));
+        }
+    }
 
-        int stockBefore = product.getStock();
+    private void purchaseInTransaction(PurchaseRequest request) {
+        // Reject oversell in Redis before touching the product row
+        boolean reserved = stockReservationService.reserve(
+                Map.of(request.getProductId(), request.getQuantity()));
 
-        // Check stock availability
-        if (stockBefore < request.getQuantity()) {
-            throw new RuntimeException(
-                    String.format("Insufficient stock for product %s. Available: %d, Requested: %d",
-                            product.getName(), stockBefore, request.getQuantity())
-            );
-        }
+        UserResponse customer = findUser(request.getCustomerId(), "Customer not found");
 
-        // Reduce stock
-        product.setStock(stockBefore - request.getQuantity());
-        productRepository.save(product);
+        // Check availability and reduce stock
+        StockChange change = deductStock(request.getProductId(), request.getQuantity(), reserved);
 
         // Create log
         InventoryLogEntity log = InventoryLogEntity.builder()
-                .product(product)
+                .product(change.getProduct())
                 .quantityChange(-request.getQuantity())
-                .stockBefore(stockBefore)
-                .stockAfter(product.getStock())
+                .stockBefore(change.getStockBefore())
+                .stockAfter(change.getStockAfter())
                 .operation(OperationType.PURCHASE)
-                .performedBy(customer)
+                .performedBy(userRepository.getReferenceById(customer.getId()))
                 .notes("Purchased by " + customer.getName())
                 .referenceCode("ORDER-" + request.getOrderId())
                 .build();
 
-        inventoryLogRepository.save(log);
+        inventoryLogPipeline.submit(log);
 
-        // Update Redis
-        redisService.updateStock(request.getProductId(), product.getStock());
+        // Update Redis after commit (the counter was already decremented if reserved)
+        if (!reserved) {
+            stockReservationService.syncStock(request.getProductId(), -request.getQuantity());
+        }
+    }
+
+    private void purchaseCombined(PurchaseRequest request) {
+        Map<Long, Integer> quantity = Map.of(request.getProductId(), request.getQuantity());
+
+        // No transaction here, so a failed purchase releases its reservation itself
+        boolean reserved = stockReservationService.reserve(quantity);
+        try {
+            purchaseCombiner.purchase(request);
+            if (!reserved) {
+                stockReservationService.syncStock(request.getProductId(), -request.getQuantity());
+            }
+        } catch (RuntimeException e) {
+            if (reserved) {
+                stockReservationService.release(quantity);
+                if (e instanceof InsufficientStockException) {
+                    stockReservationService.reconcile(request.getProductId());
+                }
+            }
+            throw e;
+        }
     }
 
     /**
      * Purchase multiple products
-     * Clear cache for ALL affected products
+     * Product stock is not cached, the counters are updated after commit
      */
     @Override
     @Transactional(isolation = Isolation.READ_COMMITTED)
     @Caching(evict = {
-            @CacheEvict(value = "products", allEntries = true),
             @CacheEvict(value = "inventory-log", allEntries = true)
-            // Note: Can't evict specific product/productStock keys here as we have multiple IDs
-            // They will expire via TTL
     })
     public void purchaseMultiple(PurchaseMultiRequest request) {
         log.info("🛒 Processing multiple purchases: {} items, orderId={}, customerId={}",
@@ -205,61 +240,26 @@ public class InventoryServiceImpl implements InventoryService {
             }
         }
 
-        UserEntity customer = userRepository.findById(request.getCustomerId())
-                .orElseThrow(() -> new RuntimeException("Customer not found"));
+        UserResponse customer = findUser(request.getCustomerId(), "Customer not found");
 
-        // Sort IDs to avoid deadlock
-        List<Long> sortedIds = request.getItems().keySet().stream()
-                .sorted()
-                .collect(Collectors.toList());
+        // Reject oversell in Redis before locking any product row
+        boolean reserved = stockReservationService.reserve(request.getItems());
 
-        // Lock products
-        List<ProductEntity> products = productRepository.findAllByIdInForUpdate(sortedIds);
+        // Validate and reduce stock for all items (rows touched in id order to avoid deadlock)
+        List<StockChange> changes = deductStock(request.getItems(), reserved);
 
-        if (products.size() != sortedIds.size()) {
-            throw new ProductNotFoundException(null);
-        }
-
-        Map<Long, ProductEntity> productMap = products.stream()
-                .collect(Collectors.toMap(ProductEntity::getId, p -> p));
-
-        // Validate stock for all items first
-        for (Map.Entry<Long, Integer> entry : request.getItems().entrySet()) {
-            Long productId = entry.getKey();
-            Integer quantity = entry.getValue();
-            ProductEntity product = productMap.get(productId);
-
-            if (product == null) {
-                throw new ProductNotFoundException(productId);
-            }
-
-            if (product.getStock() < quantity) {
-                throw new RuntimeException(
-                        String.format("Insufficient stock for product %s. Available: %d, Requested: %d",
-                                product.getName(), product.getStock(), quantity)
-                );
-            }
-        }
-
-        // Process all items
+        // Create logs
         List<InventoryLogEntity> logs = new ArrayList<>();
+        UserEntity performedBy = userRepository.getReferenceById(customer.getId());
 
-        for (Map.Entry<Long, Integer> entry : request.getItems().entrySet()) {
-            Long productId = entry.getKey();
-            Integer quantity = entry.getValue();
-            ProductEntity product = productMap.get(productId);
-
-            int stockBefore = product.getStock();
-            product.setStock(stockBefore - quantity);
-
-            // Create log
+        for (StockChange change : changes) {
             InventoryLogEntity log = InventoryLogEntity.builder()
-                    .product(product)
-                    .quantityChange(-quantity)
-                    .stockBefore(stockBefore)
-                    .stockAfter(product.getStock())
+                    .product(change.getProduct())
+                    .quantityChange(change.getStockAfter() - change.getStockBefore())
+                    .stockBefore(change.getStockBefore())
+                    .stockAfter(change.getStockAfter())
                     .operation(OperationType.PURCHASE)
-                    .performedBy(customer)
+                    .performedBy(performedBy)
                     .notes("Multi-purchase by " + customer.getName())
                     .referenceCode("ORDER-" + request.getOrderId())
                     .build();
@@ -267,18 +267,19 @@ public class InventoryServiceImpl implements InventoryService {
             logs.add(log);
         }
 
-        // Save all
-        productRepository.saveAll(products);
-        inventoryLogRepository.saveAll(logs);
+        inventoryLogPipeline.submit(logs);
 
-        // Update Redis for all products
-        for (ProductEntity product : products) {
-            redisService.updateStock(product.getId(), product.getStock());
+        // Update Redis for all products after commit (counters were already decremented if reserved)
+        if (!reserved) {
+            for (StockChange change : changes) {
+                stockReservationService.syncStock(change.getProduct().getId(),
+                        change.getStockAfter() - change.getStockBefore());
+            }
         }
 
         log.info("✅ Multiple purchases completed - Total items: {}, OrderId: {}",
                 request.getItems().size(), request.getOrderId());
-        log.debug("🗑️ Evicted cache: products (all), inventory-log (all)");
+        log.debug("🗑️ Evicted cache: inventory-log (all)");
     }
 
     /**
@@ -287,12 +288,7 @@ public class InventoryServiceImpl implements InventoryService {
      */
     @Override
     @Transactional(isolation = Isolation.READ_COMMITTED)
-    @Caching(evict = {
-            @CacheEvict(value = "product", key = "#request.productId"),
-            @CacheEvict(value = "products", allEntries = true),
-            @CacheEvict(value = "productStock", key = "#request.productId"),
-            @CacheEvict(value = "inventory-log", allEntries = true)
-    })
+    @CacheEvict(value = "inventory-log", allEntries = true)
     public void returnProduct(ReturnRequest request) {
         log.info("↩️ Processing return: productId={}, quantity={}, orderId={}, customerId={}",
                 request.getProductId(), request.getQuantity(), request.getOrderId(), request.getCustomerId());
@@ -301,33 +297,27 @@ public class InventoryServiceImpl implements InventoryService {
             throw new InvalidQuantityException(request.getQuantity());
         }
 
-        ProductEntity product = productRepository.findByIdForUpdate(request.getProductId())
-                .orElseThrow(() -> new ProductNotFoundException(request.getProductId()));
-
-        UserEntity customer = userRepository.findById(request.getCustomerId())
-                .orElseThrow(() -> new RuntimeException("Customer not found"));
+        UserResponse customer = findUser(request.getCustomerId(), "Customer not found");
 
         OrderEntity order = orderRepository.findById(request.getOrderId())
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
 
-        int stockBefore = product.getStock();
-        product.setStock(stockBefore + request.getQuantity());
-        productRepository.save(product);
+        StockChange change = stockUpdateService.applyDelta(request.getProductId(), request.getQuantity());
 
         InventoryLogEntity log = InventoryLogEntity.builder()
-                .product(product)
+                .product(change.getProduct())
                 .quantityChange(request.getQuantity())
-                .stockBefore(stockBefore)
-                .stockAfter(product.getStock())
+                .stockBefore(change.getStockBefore())
+                .stockAfter(change.getStockAfter())
                 .operation(OperationType.RETURN)
-                .performedBy(customer)
+                .performedBy(userRepository.getReferenceById(customer.getId()))
                 .order(order)
                 .notes("Return reason: " + request.getReason())
                 .referenceCode("RETURN-ORDER-" + request.getOrderId())
                 .build();
 
-        inventoryLogRepository.save(log);
-        redisService.updateStock(request.getProductId(), product.getStock());
+        inventoryLogPipeline.submit(log);
+        stockReservationService.syncStock(request.getProductId(), request.getQuantity());
     }
 
     /**
@@ -336,45 +326,65 @@ public class InventoryServiceImpl implements InventoryService {
      */
     @Override
     @Transactional(isolation = Isolation.READ_COMMITTED)
-    @Caching(evict = {
-            @CacheEvict(value = "product", key = "#request.productId"),
-            @CacheEvict(value = "products", allEntries = true),
-            @CacheEvict(value = "productStock", key = "#request.productId"),
-            @CacheEvict(value = "inventory-log", allEntries = true)
-    })
+    @CacheEvict(value = "inventory-log", allEntries = true)
     public void adjustStock(AdjustStockRequest request) {
         log.info("⚙️ Adjusting stock: productId={}, change={}, operatorId={}, reason={}",
                 request.getProductId(), request.getQuantityChange(), request.getOperatorId(), request.getReason());
 
-        ProductEntity product = productRepository.findByIdForUpdate(request.getProductId())
-                .orElseThrow(() -> new ProductNotFoundException(request.getProductId()));
-
-        UserEntity operator = userRepository.findById(request.getOperatorId())
-                .orElseThrow(() -> new RuntimeException("Operator not found"));
+        UserResponse operator = findUser(request.getOperatorId(), "Operator not found");
 
-        int stockBefore = product.getStock();
-        int newStock = stockBefore + request.getQuantityChange();
-
-        if (newStock < 0) {
-            throw new RuntimeException("Stock cannot be negative after adjustment");
-        }
-
-        product.setStock(newStock);
-        productRepository.save(product);
+        // Stock cannot be negative after adjustment (InsufficientStockException)
+        StockChange change = stockUpdateService.applyDelta(request.getProductId(), request.getQuantityChange());
 
         InventoryLogEntity log = InventoryLogEntity.builder()
-                .product(product)
+                .product(change.getProduct())
                 .quantityChange(request.getQuantityChange())
-                .stockBefore(stockBefore)
-                .stockAfter(newStock)
+                .stockBefore(change.getStockBefore())
+                .stockAfter(change.getStockAfter())
                 .operation(OperationType.ADJUSTMENT)
-                .performedBy(operator)
+                .performedBy(userRepository.getReferenceById(operator.getId()))
                 .notes("Adjustment reason: " + request.getReason())
                 .referenceCode("ADJUST-" + System.currentTimeMillis())
                 .build();
 
-        inventoryLogRepository.save(log);
-        redisService.updateStock(request.getProductId(), newStock);
+        inventoryLogPipeline.submit(log);
+        stockReservationService.syncStock(request.getProductId(), request.getQuantityChange());
+    }
+
+    /**
+     * Cached user lookup: name for the log notes, a reference proxy is enough for performedBy
+     */
+    private UserResponse findUser(Long userId, String notFoundMessage) {
+        try {
+            return userService.getUserById(userId);
+        } catch (ResourceNotFoundException e) {
+            throw new RuntimeException(notFoundMessage);
+        }
+    }
+
+    /**
+     * Deduct stock; when Redis admitted a quantity that MySQL rejects, the counter has drifted
+     */
+    private StockChange deductStock(Long productId, int quantity, boolean reserved) {
+        try {
+            return stockUpdateService.applyDelta(productId, -quantity);
+        } catch (InsufficientStockException e) {
+            if (reserved) {
+                stockReservationService.reconcile(productId);
+            }
+            throw e;
+        }
+    }
+
+    private List<StockChange> deductStock(Map<Long, Integer> quantities, boolean reserved) {
+        try {
+            return stockUpdateService.deduct(quantities);
+        } catch (InsufficientStockException e) {
+            if (reserved) {
+                stockReservationService.reconcile(e.getProductId());
+            }
+            throw e;
+        }
     }
 
     /**
@@ -473,6 +483,106 @@ public class InventoryServiceImpl implements InventoryService {
         return CacheablePage.of(page);
     }
 
+    /**
+     * Split the stock of a hot product over shardCount rows
+     * Stock value does not change, but the product row is rewritten
+     */
+    @Override
+    @Transactional
+    public void enableShardedStock(Long productId, int shardCount) {
+        if (!shardedStockService.isEnabled()) {
+            throw new IllegalStateException("Stock sharding is disabled (inventory.sharding.enabled)");
+        }
+        shardedStockService.enableSharding(productId, shardCount);
+    }
+
+    /**
+     * Fold the shards of a product back into products.stock
+     */
+    @Override
+    @Transactional
+    public void disableShardedStock(Long productId) {
+        shardedStockService.disableSharding(productId);
+    }
+
+    /**
+     * Daily movements of one product, read from the rollups (one row per day and operation)
+     * Cached with the logs, cleared whenever the log pipeline writes
+     */
+    @Override
+    @Transactional(readOnly = true)
+    @Cacheable(
+            value = "inventory-log",
+            key = "'rollup-product-' + #productId + '-' + #from + '-' + #to"
+    )
+    public List<InventoryRollupResponse> getDailyMovements(Long productId, LocalDate from, LocalDate to) {
+        log.debug("📊 Fetching daily rollups: productId={}, from={}, to={}", productId, from, to);
+        checkDateRange(from, to);
+
+        return inventoryDailyRollupRepository.findByProductAndDateRange(productId, from, to).stream()
+                .map(rollup -> InventoryRollupResponse.builder()
+                        .productId(productId)
+                        .date(rollup.getRollupDate())
+                        .operation(rollup.getOperation())
+                        .operationDisplay(getOperationDisplay(rollup.getOperation()))
+                        .totalQuantity(rollup.getTotalQuantity())
+                        .logCount(rollup.getLogCount())
+                        .build())
+                .toList();
+    }
+
+    /**
+     * Totals per operation over all products for a date range
+     */
+    @Override
+    @Transactional(readOnly = true)
+    @Cacheable(
+            value = "inventory-log",
+            key = "'rollup-summary-' + #from + '-' + #to"
+    )
+    public List<InventoryRollupSummaryResponse> getRollupSummary(LocalDate from, LocalDate to) {
+        log.debug("📊 Fetching rollup summary: from={}, to={}", from, to);
+        checkDateRange(from, to);
+
+        return inventoryDailyRollupRepository.summarizeByOperation(from, to).stream()
+                .map(total -> InventoryRollupSummaryResponse.builder()
+                        .operation(total.getOperation())
+                        .operationDisplay(getOperationDisplay(total.getOperation()))
+                        .totalQuantity(total.getTotalQuantity())
+                        .logCount(total.getLogCount())
+                        .productCount(total.getProductCount())
+                        .build())
+                .toList();
+    }
+
+    /**
+     * Recompute the rollups of a finished day from inventory_logs (backfill / repair)
+     * Refused while the log pipeline still holds logs of that day: its upserts would land on top
+     */
+    @Override
+    @Transactional
+    @CacheEvict(value = "inventory-log", allEntries = true)
+    public void rebuildRollups(LocalDate date) {
+        if (!date.isBefore(LocalDate.now())) {
+            // Today is still being written by the log pipeline
+            throw new IllegalArgumentException("Only past days can be rebuilt");
+        }
+        if (inventoryLogPipeline.hasPendingEntries(date)) {
+            // Deferred or recovered batches would add to the rebuilt rows a second time
+            throw new IllegalStateException("Inventory logs of " + date + " are still being written, retry later");
+        }
+
+        int deleted = inventoryDailyRollupRepository.deleteByRollupDate(date);
+        int inserted = inventoryDailyRollupRepository.rebuildForDate(date);
+        log.info("✅ Rebuilt inventory rollups for {}: {} rows replaced by {}", date, deleted, inserted);
+    }
+
+    private void checkDateRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Start date must not be after end date");
+        }
+    }
+
     private InventoryLogResponse mapToResponse(InventoryLogEntity log) {
         return InventoryLogResponse.builder()
                 .id(log.getId())
@@ -1,11 +1,20 @@
 package com.example.smartshop.services.serviceimpl;
 
+import com.example.smartshop.commons.utils.TokenHashes;
 import com.example.smartshop.entities.UserEntity;
 import com.example.smartshop.services.JWTService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
@@ -14,15 +23,66 @@ import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+
+/**
+ * Signing key and parser are built once (both immutable and thread-safe).
+ *
+ * Verified claims are cached per token (key: SHA-256 of the token, the token itself is
+ * not kept) until the token's exp, so a client reusing its token is verified once.
+ * Only successfully verified tokens are cached. Revocation is not checked here:
+ * JwtAuthenticationFilter reads the claims first, then checks them (token version claim,
+ * per-token blacklist) before trusting them. Cached Claims are shared: read only.
+ */
 @Service
 public class JWTServiceImpl implements JWTService {
 
     @Value("${jwt.accessTokenSecretKey}")
     private String SECRET_KEY;
 
+    @Value("${jwt.claims-cache.max-size:10000}")
+    private long claimsCacheMaxSize;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Key signKey;
+    private JwtParser jwtParser;
+    private Cache<String, Claims> verifiedClaims;
+
+    @PostConstruct
+    public void init() {
+        signKey = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signKey)
+                .build();
+        verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(claimsCacheMaxSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        long remainingMillis = claims.getExpiration().getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedClaims, "jwt.claims");
+    }
+
     private Key getSignKey() {
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+        return signKey;
     }
 
     @Override
@@ -30,6 +90,7 @@ public class JWTServiceImpl implements JWTService {
         Map<String, Object> claims = new HashMap<>();
         claims.put("userId", user.getId());
         claims.put("role", user.getRole().name());
+        claims.put(TOKEN_VERSION_CLAIM, user.getTokenVersion() != null ? user.getTokenVersion() : 0L);
 
         return Jwts.builder()
                 .setClaims(claims)
@@ -50,11 +111,18 @@ public class JWTServiceImpl implements JWTService {
     }
     @Override
     public Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSignKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        String cacheKey = TokenHashes.sha256(token);
+        Claims cached = verifiedClaims.getIfPresent(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Throws for invalid or expired tokens, nothing is cached then
+        Claims claims = jwtParser.parseClaimsJws(token).getBody();
+        if (claims.getExpiration() != null) {
+            verifiedClaims.put(cacheKey, claims);
+        }
+        return claims;
     }
 
     @Override
@@ -70,11 +138,7 @@ public class JWTServiceImpl implements JWTService {
 
     @Override
     public long getExpirationMillis(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSignKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        Claims claims = extractAllClaims(token);
 
         return claims.getExpiration().getTime() - System.currentTimeMillis();
     }
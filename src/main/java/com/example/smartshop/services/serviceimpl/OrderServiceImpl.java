@@ -3,6 +3,7 @@ package com.example.smartshop.services.serviceimpl;
 import com.example.smartshop.commons.enums.OperationType;
 import com.example.smartshop.commons.enums.StatusOrder;
 import com.example.smartshop.commons.exceptions.InsufficientStockException;
+import com.example.smartshop.commons.exceptions.ProductNotFoundException;
 import com.example.smartshop.commons.exceptions.ResourceNotFoundException;
 import com.example.smartshop.commons.exceptions.UnauthorizedException;
 import com.example.smartshop.entities.*;
@@ -11,9 +12,14 @@ import com.example.smartshop.models.dtos.requets.OrderItemRequest;
 import com.example.smartshop.models.dtos.responses.CacheablePage;
 import com.example.smartshop.models.dtos.responses.OrderItemResponse;
 import com.example.smartshop.models.dtos.responses.OrderResponse;
+import com.example.smartshop.models.dtos.responses.UserResponse;
 import com.example.smartshop.repositories.*;
+import com.example.smartshop.services.InventoryLogPipeline;
 import com.example.smartshop.services.OrderService;
-import com.example.smartshop.services.RedisService;
+import com.example.smartshop.services.StockReservationService;
+import com.example.smartshop.services.StockUpdateService;
+import com.example.smartshop.services.StockUpdateService.StockChange;
+import com.example.smartshop.services.UserService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
@@ -24,6 +30,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
@@ -38,7 +45,11 @@ import java.util.stream.Collectors;
  * Cache Strategy:
  * - Order detail (5 min): Moderate TTL
  * - Orders list (3 min): Short TTL (new orders frequently)
- * - When creating order: evict products, inventory-log, orders caches
+ * - When creating order: evict inventory-log, orders caches
+ *   (product detail and lists hold no live stock, reads overlay the counter)
+ *
+ * The user comes from the token (id) and the cached user lookup (name/email);
+ * orders reference it with a proxy, so no user row is read per order.
  *
  * @version 2.0
  */
@@ -50,59 +61,84 @@ public class OrderServiceImpl implements OrderService {
     private OrderRepository orderRepository;
 
     @Autowired
-    private ProductRepository productRepository;
+    private UserRepository userRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private UserService userService;
 
     @Autowired
-    private InventoryLogRepository inventoryLogRepository;
+    private InventoryLogPipeline inventoryLogPipeline;
 
     @Autowired
-    private RedisService redisService;
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private StockUpdateService stockUpdateService;
 
     /**
      * Create new order
      *
      * Cache eviction:
-     * - Clear products cache (stock changed)
      * - Clear inventory-log cache (new logs created)
      * - Clear orders cache (new order added)
-     * - Clear product/productStock for affected products
      */
     @Override
-    @Transactional
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     @Caching(evict = {
-            @CacheEvict(value = "products", allEntries = true),
             @CacheEvict(value = "inventory-log", allEntries = true),
             @CacheEvict(value = "orders", allEntries = true)
-            // Note: Can't evict specific product keys as we have multiple IDs
     })
-    public OrderResponse createOrder(CreateOrderRequest request, String userEmail) {
-        log.info("🛍️ Creating order for user: {}", userEmail);
-
-        // 1. Find user
-        UserEntity user = userRepository.findByEmailAndDeletedAtIsNull(userEmail)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
-        // 2. Validate and lock products (IMPORTANT: Sort to avoid deadlock)
-        List<Long> productIds = request.getItems().stream()
-                .map(OrderItemRequest::getProductId)
-                .distinct()
-                .sorted()  // ← CRITICAL: Prevent deadlock
-                .toList();
+    public OrderResponse createOrder(CreateOrderRequest request, Long userId) {
+        return placeOrder(request, userId, false);
+    }
 
-        List<ProductEntity> products = productRepository
-                .findAllByIdInAndDeletedAtIsNullForUpdate(productIds);
+    /**
+     * Create order from a confirmed stock hold
+     * Same as createOrder, but the Redis reservation was made when the hold was placed
+     */
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    @Caching(evict = {
+            @CacheEvict(value = "inventory-log", allEntries = true),
+            @CacheEvict(value = "orders", allEntries = true)
+    })
+    public OrderResponse createOrderFromHold(CreateOrderRequest request, Long userId) {
+        return placeOrder(request, userId, true);
+    }
 
-        if (products.size() != productIds.size()) {
+    private OrderResponse placeOrder(CreateOrderRequest request, Long userId, boolean held) {
+        log.info("🛍️ Creating order for user: {}", userId);
+
+        // 1. Resolve user: cached lookup (rejects deleted users), the order only needs a reference
+        UserResponse customer = userService.getUserById(userId);
+        UserEntity user = userRepository.getReferenceById(userId);
+
+        // 2. Reject oversell in Redis before locking any product row
+        Map<Long, Integer> requestedQuantities = request.getItems().stream()
+                .collect(Collectors.toMap(
+                        OrderItemRequest::getProductId,
+                        OrderItemRequest::getQuantity,
+                        Integer::sum
+                ));
+        boolean reserved = held || stockReservationService.reserve(requestedQuantities);
+
+        // 3. Validate and deduct stock (rows touched in ascending id order to prevent deadlock)
+        List<StockChange> stockChanges;
+        try {
+            stockChanges = stockUpdateService.deduct(requestedQuantities);
+        } catch (ProductNotFoundException e) {
             throw new ResourceNotFoundException("One or more products not found");
+        } catch (InsufficientStockException e) {
+            if (reserved) {
+                stockReservationService.reconcile(e.getProductId());
+            }
+            throw e;
         }
 
-        Map<Long, ProductEntity> productMap = products.stream()
-                .collect(Collectors.toMap(ProductEntity::getId, p -> p));
+        Map<Long, ProductEntity> productMap = stockChanges.stream()
+                .collect(Collectors.toMap(change -> change.getProduct().getId(), StockChange::getProduct));
 
-        // 3. Create order entity
+        // 4. Create order entity
         OrderEntity order = OrderEntity.builder()
                 .user(user)
                 .status(StatusOrder.PENDING)
@@ -112,24 +148,11 @@ public class OrderServiceImpl implements OrderService {
                 .build();
 
         BigDecimal totalPrice = BigDecimal.ZERO;
-        List<InventoryLogEntity> inventoryLogs = new ArrayList<>();
 
-        // 4. Process each order item
+        // 5. Process each order item
         for (OrderItemRequest itemRequest : request.getItems()) {
             ProductEntity product = productMap.get(itemRequest.getProductId());
 
-            // Check stock availability
-            if (product.getStock() < itemRequest.getQuantity()) {
-                throw new InsufficientStockException(
-                        product.getId(),
-                        itemRequest.getQuantity(),
-                        product.getStock()
-                );
-            }
-
-            int stockBefore = product.getStock();
-            product.setStock(stockBefore - itemRequest.getQuantity());
-
             // Calculate subtotal
             BigDecimal itemPrice = product.getPrice();
             BigDecimal subtotal = itemPrice.multiply(
@@ -144,13 +167,16 @@ public class OrderServiceImpl implements OrderService {
             orderItem.setQuantity(itemRequest.getQuantity());
             orderItem.setPrice(itemPrice);
             order.getItems().add(orderItem);
+        }
 
-            // Prepare inventory log (will save after order is saved)
+        // Prepare inventory logs, one per product (will save after order is saved)
+        List<InventoryLogEntity> inventoryLogs = new ArrayList<>();
+        for (StockChange change : stockChanges) {
             InventoryLogEntity inventoryLog = InventoryLogEntity.builder()
-                    .product(product)
-                    .quantityChange(-itemRequest.getQuantity())
-                    .stockBefore(stockBefore)
-                    .stockAfter(product.getStock())
+                    .product(change.getProduct())
+                    .quantityChange(change.getStockAfter() - change.getStockBefore())
+                    .stockBefore(change.getStockBefore())
+                    .stockAfter(change.getStockAfter())
                     .operation(OperationType.PURCHASE)
                     .performedBy(user)
                     .order(order)  // Will have ID after save
@@ -158,29 +184,33 @@ public class OrderServiceImpl implements OrderService {
 
             inventoryLogs.add(inventoryLog);
 
-            // Update Redis stock cache
-            redisService.updateStock(product.getId(), product.getStock());
+            // Update Redis stock counter after commit (the counter was already decremented if reserved)
+            if (!reserved) {
+                stockReservationService.syncStock(change.getProduct().getId(),
+                        change.getStockAfter() - change.getStockBefore());
+            }
 
-            log.debug("✅ Processed order item - Product: {}, Quantity: {}, New Stock: {}",
-                    product.getName(), itemRequest.getQuantity(), product.getStock());
+            log.debug("✅ Processed order item - ProductId: {}, New Stock: {}",
+                    change.getProduct().getId(), change.getStockAfter());
         }
 
-        // 5. Set total price and save order
+        // 6. Set total price and save order
         order.setTotalPrice(totalPrice);
-        OrderEntity savedOrder = orderRepository.save(order);
+        // Pooled ids: save() only assigns ids, the flush sends orders and order_items as two JDBC batches
+        OrderEntity savedOrder = orderRepository.saveAndFlush(order);
 
-        // 6. Update inventory logs with order reference and save
+        // 7. Update inventory logs with order reference, written after commit
         for (InventoryLogEntity log : inventoryLogs) {
             log.setNotes("Order #" + savedOrder.getId());
             log.setReferenceCode("ORDER-" + savedOrder.getId());
         }
-        inventoryLogRepository.saveAll(inventoryLogs);
+        inventoryLogPipeline.submit(inventoryLogs);
 
         log.info("✅ Order created successfully - OrderId: {}, TotalPrice: {}, Items: {}",
                 savedOrder.getId(), totalPrice, savedOrder.getItems().size());
-        log.debug("🗑️ Evicted cache: products (all), inventory-log (all), orders (all)");
+        log.debug("🗑️ Evicted cache: inventory-log (all), orders (all)");
 
-        return mapToOrderResponse(savedOrder);
+        return mapToOrderResponse(savedOrder, customer);
     }
 
     /**
@@ -195,52 +225,53 @@ public class OrderServiceImpl implements OrderService {
     @Transactional(readOnly = true)
     @Cacheable(
             value = "order",
-            key = "#orderId + '-' + #userEmail",
+            key = "#orderId + '-' + #userId",
             unless = "#result == null"
     )
-    public OrderResponse getOrderById(Long orderId, String userEmail) {
-        log.debug("📦 Fetching order from DB: orderId={}, user={}", orderId, userEmail);
+    public OrderResponse getOrderById(Long orderId, Long userId) {
+        log.debug("📦 Fetching order from DB: orderId={}, user={}", orderId, userId);
 
         OrderEntity order = orderRepository.findByIdAndDeletedAtIsNull(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
 
-        // Security check: user can only access their own orders
-        if (!order.getUser().getEmail().equals(userEmail)) {
+        // Security check: user can only access their own orders (the id does not load the user)
+        if (!order.getUser().getId().equals(userId)) {
             throw new UnauthorizedException("You don't have permission to access this order");
         }
 
-        return mapToOrderResponse(order);
+        return mapToOrderResponse(order, userService.getUserById(userId));
     }
 
     /**
      * Get orders by user
      *
-     * Cache key: userEmail-page-size
+     * Cache key: userId-page-size
      * TTL: 3 minutes (new orders created frequently)
      */
     @Override
     @Transactional(readOnly = true)
     @Cacheable(
             value = "orders",
-            key = "#userEmail + '-' + #page + '-' + #size",
+            key = "#userId + '-' + #page + '-' + #size",
             unless = "#result == null || #result.isEmpty()"
     )
-    public CacheablePage<OrderResponse> getOrdersByUser(String userEmail, int page, int size) {
-        log.debug("📦 Fetching orders from DB: user={}, page={}, size={}", userEmail, page, size);
+    public CacheablePage<OrderResponse> getOrdersByUser(Long userId, int page, int size) {
+        log.debug("📦 Fetching orders from DB: user={}, page={}, size={}", userId, page, size);
 
-        UserEntity user = userRepository.findByEmailAndDeletedAtIsNull(userEmail)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        UserResponse customer = userService.getUserById(userId);
+        UserEntity user = userRepository.getReferenceById(userId);
 
         Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
         Page<OrderEntity> orders = orderRepository.findByUserAndDeletedAtIsNull(user, pageable);
 
-        return CacheablePage.of(orders.map(this::mapToOrderResponse));
+        return CacheablePage.of(orders.map(order -> mapToOrderResponse(order, customer)));
     }
 
     /**
      * Map order entity to response DTO
+     * User fields come from the cached user, so order.getUser() proxy is never initialized
      */
-    private OrderResponse mapToOrderResponse(OrderEntity order) {
+    private OrderResponse mapToOrderResponse(OrderEntity order, UserResponse customer) {
         List<OrderItemResponse> itemResponses = order.getItems().stream()
                 .map(item -> OrderItemResponse.builder()
                         .id(item.getId())
@@ -254,9 +285,9 @@ public class OrderServiceImpl implements OrderService {
 
         return OrderResponse.builder()
                 .id(order.getId())
-                .userId(order.getUser().getId())
-                .userName(order.getUser().getName())
-                .userEmail(order.getUser().getEmail())
+                .userId(customer.getId())
+                .userName(customer.getName())
+                .userEmail(customer.getEmail())
                 .totalPrice(order.getTotalPrice())
                 .status(order.getStatus())
                 .notes(order.getNotes())
@@ -0,0 +1,111 @@
+package com.example.smartshop.services.serviceimpl;
+
+import com.example.smartshop.services.PasswordHashService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+@Service
+@Slf4j
+public class PasswordHashServiceImpl implements PasswordHashService {
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    @Qualifier("passwordHashExecutor")
+    private ThreadPoolTaskExecutor passwordHashExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${auth.password-hash.timeout-millis:5000}")
+    private long timeoutMillis;
+
+    private Timer queueWaitTimer;
+    private Timer hashTimer;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        meterRegistry.gauge("auth.password.hash.queue.size", passwordHashExecutor,
+                executor -> executor.getThreadPoolExecutor().getQueue().size());
+        meterRegistry.gauge("auth.password.hash.active", passwordHashExecutor,
+                ThreadPoolTaskExecutor::getActiveCount);
+        queueWaitTimer = meterRegistry.timer("auth.password.hash.queue.wait");
+        hashTimer = meterRegistry.timer("auth.password.hash.duration");
+        rejectedCounter = meterRegistry.counter("auth.password.hash.rejected");
+    }
+
+    @Override
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return await(submit(() -> passwordEncoder.matches(rawPassword, encodedPassword)));
+    }
+
+    @Override
+    public String encode(String rawPassword) {
+        return await(submit(() -> passwordEncoder.encode(rawPassword)));
+    }
+
+    @Override
+    public CompletableFuture<String> encodeAsync(String rawPassword) {
+        return submit(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> hashing) {
+        long submittedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long waited = System.nanoTime() - submittedAt;
+                queueWaitTimer.record(waited, TimeUnit.NANOSECONDS);
+                // The caller already gave up: do not spend a hash on it
+                if (waited > TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+                    throw new RuntimeException("Password check timed out, please retry");
+                }
+                return hashTimer.record(hashing);
+            }, passwordHashExecutor);
+        } catch (TaskRejectedException e) {
+            rejectedCounter.increment();
+            log.warn("🔐 Password hashing saturated, request rejected");
+            throw new RuntimeException("Too many login attempts in progress, please retry");
+        }
+    }
+
+    private <T> T await(Future<T> result) {
+        try {
+            return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // No cancel: CompletableFuture does not interrupt the task, a queued task skips itself instead
+            throw new RuntimeException("Password check timed out, please retry");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.smartshop.services.serviceimpl;
+
+import com.example.smartshop.commons.enums.CatalogIdType;
+import com.example.smartshop.configs.CacheBatchOperations;
+import com.example.smartshop.configs.CacheRegionLoader;
+import com.example.smartshop.entities.ProductEntity;
+import com.example.smartshop.models.dtos.responses.ProductIdPage;
+import com.example.smartshop.models.dtos.responses.ProductResponse;
+import com.example.smartshop.models.mappers.ProductMapper;
+import com.example.smartshop.repositories.ProductRepository;
+import com.example.smartshop.services.CatalogIdFilter;
+import com.example.smartshop.services.ProductCatalogCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Product lists cached as id pages, products cached once each
+ *
+ * A product appears in many pages but is stored once (product::{id}), and stock is
+ * overlaid from the live counter, so purchases touch neither lists nor details.
+ * Pages are cleared only when membership changes.
+ *
+ * Also reloads both regions by key for refresh-ahead (CacheRegionLoader).
+ */
+@Service
+@Slf4j
+public class ProductCatalogCacheImpl implements ProductCatalogCache, CacheRegionLoader {
+
+    private static final String PRODUCT_CACHE = "product";
+    private static final String PRODUCTS_CACHE = "products";
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductMapper productMapper;
+
+    @Autowired
+    private CacheBatchOperations cacheBatchOperations;
+
+    @Autowired
+    private CatalogIdFilter catalogIdFilter;
+
+    /**
+     * Cache key: page-size-search-category, e.g. products::0-20-null-5
+     * TTL: 5 minutes
+     *
+     * sync: after a flush, concurrent misses on the same page run the query once
+     */
+    @Override
+    @Transactional(readOnly = true)
+    @Cacheable(
+            value = "products",
+            key = "#page + '-' + #size + '-' + (#search != null ? #search : 'null') + '-' + (#categoryId != null ? #categoryId : 'null')",
+            sync = true
+    )
+    public ProductIdPage findProductIdPage(int page, int size, String search, Long categoryId) {
+        return loadProductIdPage(page, size, search, categoryId);
+    }
+
+    private ProductIdPage loadProductIdPage(int page, int size, String search, Long categoryId) {
+        log.debug("📊 Fetching product ids from DB: page={}, size={}, search={}, categoryId={}",
+                page, size, search, categoryId);
+
+        Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
+        Page<Long> productIds;
+
+        // Query based on filters
+        if (search != null && !search.isBlank() && categoryId != null) {
+            productIds = productRepository.findIdsByNameContainingAndCategoryId(search, categoryId, pageable);
+        } else if (search != null && !search.isBlank()) {
+            productIds = productRepository.findIdsByNameContaining(search, pageable);
+        } else if (categoryId != null) {
+            productIds = productRepository.findIdsByCategoryId(categoryId, pageable);
+        } else {
+            productIds = productRepository.findIdsByDeletedAtIsNull(pageable);
+        }
+
+        log.debug("✅ Found {} products", productIds.getTotalElements());
+        return ProductIdPage.of(productIds);
+    }
+
+    /**
+     * Cache key: product ID, e.g. product::123
+     * TTL: 60 minutes (stock is not read from here, the rest changes rarely)
+     * A miss on an id recently found missing (or deleted) skips the query
+     */
+    @Override
+    @Transactional(readOnly = true)
+    @Cacheable(
+            value = "product",
+            key = "#productId",
+            sync = true
+    )
+    public ProductResponse findProductDetail(Long productId) {
+        return loadProductDetail(productId);
+    }
+
+    private ProductResponse loadProductDetail(Long productId) {
+        if (catalogIdFilter.isMarkedMissing(CatalogIdType.PRODUCT, productId)) {
+            throw new RuntimeException("Product not found with id: " + productId);
+        }
+
+        log.debug("📦 Fetching product from DB: id={}", productId);
+
+        ProductEntity product = productRepository.findByIdAndDeletedAtIsNull(productId)
+                .orElseThrow(() -> {
+                    catalogIdFilter.markMissing(CatalogIdType.PRODUCT, productId);
+                    return new RuntimeException("Product not found with id: " + productId);
+                });
+
+        return productMapper.toResponse(product);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductResponse> findProductDetails(List<Long> requestedIds) {
+        // Ids rejected by the filter never reach Redis or the IN query
+        List<Long> productIds = requestedIds.stream()
+                .filter(id -> catalogIdFilter.mightContain(CatalogIdType.PRODUCT, id))
+                .toList();
+        if (productIds.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, ProductResponse> products = new HashMap<>();
+        cacheBatchOperations.getAll(PRODUCT_CACHE, productIds).forEach((key, value) -> {
+            if (value instanceof ProductResponse product) {
+                products.put((Long) key, product);
+            }
+        });
+
+        List<Long> missingIds = productIds.stream()
+                .filter(id -> !products.containsKey(id))
+                .distinct()
+                .toList();
+        if (!missingIds.isEmpty()) {
+            log.debug("📦 Fetching {} products from DB: ids={}", missingIds.size(), missingIds);
+            List<ProductResponse> loaded = productRepository.findByIdInAndDeletedAtIsNull(missingIds).stream()
+                    .map(productMapper::toResponse)
+                    .toList();
+            Map<Long, ProductResponse> loadedById = new LinkedHashMap<>();
+            loaded.forEach(product -> loadedById.put(product.getId(), product));
+            products.putAll(loadedById);
+            cacheBatchOperations.putAllIfAbsent(PRODUCT_CACHE, loadedById);
+        }
+
+        // Request order; a product deleted since the page was cached is skipped
+        return productIds.stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    @CacheEvict(value = "products", allEntries = true)
+    public void evictProductLists() {
+        log.debug("🗑️ Evicted cache: products (all)");
+    }
+
+    @Override
+    public Set<String> getRegionNames() {
+        return Set.of(PRODUCT_CACHE, PRODUCTS_CACHE);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Object load(String cacheName, Object key) {
+        if (PRODUCT_CACHE.equals(cacheName)) {
+            return loadProductDetail((Long) key);
+        }
+        if (PRODUCTS_CACHE.equals(cacheName)) {
+            // Key of findProductIdPage: page-size-search-category, only the search part may contain '-'
+            String pageKey = (String) key;
+            int sizeStart = pageKey.indexOf('-') + 1;
+            int searchStart = pageKey.indexOf('-', sizeStart) + 1;
+            int categoryStart = pageKey.lastIndexOf('-') + 1;
+            String search = pageKey.substring(searchStart, categoryStart - 1);
+            String category = pageKey.substring(categoryStart);
+            return loadProductIdPage(
+                    Integer.parseInt(pageKey.substring(0, sizeStart - 1)),
+                    Integer.parseInt(pageKey.substring(sizeStart, searchStart - 1)),
+                    "null".equals(search) ? null : search,
+                    "null".equals(category) ? null : Long.valueOf(category)
+            );
+        }
+        throw new IllegalArgumentException("Not a product catalog region: " + cacheName);
+    }
+}
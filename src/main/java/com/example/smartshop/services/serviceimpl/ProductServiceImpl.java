@@ -1,33 +1,39 @@
 package com.example.smartshop.services.serviceimpl;
 
+import com.example.smartshop.commons.enums.CatalogIdType;
 import com.example.smartshop.entities.CategoryEntity;
 import com.example.smartshop.entities.ProductEntity;
 import com.example.smartshop.models.dtos.requets.ProductRequest;
 import com.example.smartshop.models.dtos.responses.CacheablePage;
+import com.example.smartshop.models.dtos.responses.ProductIdPage;
 import com.example.smartshop.models.dtos.responses.ProductResponse;
 import com.example.smartshop.models.mappers.ProductMapper;
 import com.example.smartshop.repositories.CategoryRepository;
 import com.example.smartshop.repositories.ProductRepository;
+import com.example.smartshop.services.CatalogIdFilter;
+import com.example.smartshop.services.ProductCatalogCache;
 import com.example.smartshop.services.ProductService;
+import com.example.smartshop.services.ShardedStockService;
+import com.example.smartshop.services.StockReservationService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
 /**
  * Product Service Implementation with Redis Cache
  *
  * Cache Strategy:
- * - Product detail (15 min): Cache individual products by ID
- * - Products list (5 min): Cache paginated lists with search/filter
+ * - Product detail (60 min): Cache individual products by ID, without live stock
+ * - Products list (5 min): Cache paginated id lists with search/filter, hydrated from product detail
+ * - Stock: overlaid from the product:stock: counters on every read (hot data, never cached here)
  * - Cache eviction: Clear relevant caches on create/update/delete
  *
  * @version 2.0
@@ -36,6 +42,8 @@ import org.springframework.transaction.annotation.Transactional;
 @Slf4j
 public class ProductServiceImpl implements ProductService {
 
+    private static final int MAX_BATCH_IDS = 50;
+
     @Autowired
     private ProductRepository productRepository;
 
@@ -45,11 +53,25 @@ public class ProductServiceImpl implements ProductService {
     @Autowired
     private ProductMapper productMapper;
 
+    @Autowired
+    private ShardedStockService shardedStockService;
+
+    @Autowired
+    private ProductCatalogCache productCatalogCache;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private CatalogIdFilter catalogIdFilter;
+
     /**
      * Get all products with pagination, search and category filter
      *
-     * Cache key includes all parameters to ensure correct data is returned
-     * TTL: 5 minutes (products change frequently)
+     * Normalized caching (ProductCatalogCache):
+     * - products::{page-size-search-category} holds ids and totals
+     * - products are hydrated from product::{id} (L1, then one MGET, then DB)
+     * - stock comes from the live product:stock: counters
      *
      * Example keys:
      * - products::0-20-null-null (page 0, size 20, no search, no filter)
@@ -58,56 +80,47 @@ public class ProductServiceImpl implements ProductService {
      */
     @Override
     @Transactional(readOnly = true)
-    @Cacheable(
-            value = "products",
-            key = "#page + '-' + #size + '-' + (#search != null ? #search : 'null') + '-' + (#categoryId != null ? #categoryId : 'null')",
-            unless = "#result == null || #result.isEmpty()"
-    )
     public CacheablePage<ProductResponse> getAllProducts(int page, int size, String search, Long categoryId) {
-        log.debug("📊 Fetching products from DB: page={}, size={}, search={}, categoryId={}",
-                page, size, search, categoryId);
-
-        Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
-        Page<ProductEntity> products;
-
-        // Query based on filters
-        if (search != null && !search.isBlank() && categoryId != null) {
-            products = productRepository.findByNameContainingIgnoreCaseAndCategory_IdAndDeletedAtIsNull(
-                    search, categoryId, pageable);
-        } else if (search != null && !search.isBlank()) {
-            products = productRepository.findByNameContainingIgnoreCaseAndDeletedAtIsNull(search, pageable);
-        } else if (categoryId != null) {
-            products = productRepository.findByCategory_IdAndDeletedAtIsNull(categoryId, pageable);
-        } else {
-            products = productRepository.findByDeletedAtIsNull(pageable);
-        }
-
-        log.debug("✅ Found {} products", products.getTotalElements());
-        return CacheablePage.of(products.map(productMapper::toResponse));
+        ProductIdPage idPage = productCatalogCache.findProductIdPage(page, size, search, categoryId);
+        List<ProductResponse> products = productCatalogCache.findProductDetails(idPage.getProductIds());
+        return idPage.withContent(withLiveStock(products));
     }
 
     /**
      * Get product by ID
      *
-     * Cache key: product ID
-     * TTL: 15 minutes (product details change infrequently)
-     *
-     * Example: product::123
+     * Details: product::{id} (60 min, not evicted by stock changes)
+     * Stock: product:stock:{id} counter, seeded from DB when missing
+     * Unknown ids: rejected by the id filter before the cache, negative cache before the DB
      */
     @Override
     @Transactional(readOnly = true)
-    @Cacheable(
-            value = "product",
-            key = "#id",
-            unless = "#result == null"
-    )
     public ProductResponse getProductById(Long id) {
-        log.debug("📦 Fetching product from DB: id={}", id);
-
-        ProductEntity product = productRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
+        if (!catalogIdFilter.mightContain(CatalogIdType.PRODUCT, id)) {
+            throw new RuntimeException("Product not found with id: " + id);
+        }
+        ProductResponse product = productCatalogCache.findProductDetail(id);
+        return withLiveStock(List.of(product)).get(0);
+    }
 
-        return productMapper.toResponse(product);
+    /**
+     * Get several products at once (carts, wishlists)
+     *
+     * One MGET for cached details, one IN query for the misses, one MGET for stock.
+     * Result follows request order; duplicates are returned once, unknown ids are skipped.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductResponse> getProductsByIds(List<Long> ids) {
+        List<Long> productIds = ids.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (productIds.size() > MAX_BATCH_IDS) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_IDS + " product ids per request");
+        }
+        log.debug("📦 Batch product lookup: {} ids", productIds.size());
+        return withLiveStock(productCatalogCache.findProductDetails(productIds));
     }
 
     /**
@@ -146,6 +159,7 @@ public class ProductServiceImpl implements ProductService {
                 .build();
 
         ProductEntity savedProduct = productRepository.save(product);
+        catalogIdFilter.add(CatalogIdType.PRODUCT, savedProduct.getId());
 
         log.info("✅ Product created: id={}, name={}", savedProduct.getId(), savedProduct.getName());
         log.debug("🗑️ Evicted cache: products (all entries)");
@@ -158,20 +172,17 @@ public class ProductServiceImpl implements ProductService {
      *
      * Cache strategy:
      * - Use @CachePut to UPDATE product detail cache (avoid cache miss on next read)
-     * - Evict products list cache (pagination may change)
-     * - Evict productStock cache if stock changed
+     * - Evict products list cache only if name or category changed (search/filter membership);
+     *   lists hold ids, so price/description/stock changes are picked up from product::{id}
+     * - Stock counter is dropped after commit and re-seeded from the DB
      *
      * Note: @CachePut ALWAYS executes method and updates cache with return value
+     * Stock updates bump the product version: an update racing one fails with
+     * OptimisticLockingFailureException (409) instead of overwriting the new stock
      */
     @Override
     @Transactional
-    @Caching(
-            put = @CachePut(value = "product", key = "#id"),
-            evict = {
-                    @CacheEvict(value = "products", allEntries = true),
-                    @CacheEvict(value = "productStock", key = "#id")
-            }
-    )
+    @CachePut(value = "product", key = "#id")
     public ProductResponse updateProduct(Long id, ProductRequest request) {
         log.info("✏️ Updating product: id={}", id);
 
@@ -192,6 +203,9 @@ public class ProductServiceImpl implements ProductService {
                     "Product with name '" + request.getName() + "' already exists in this category");
         }
 
+        boolean listMembershipChanged = !updateProduct.getName().equals(request.getName())
+                || !updateProduct.getCategory().getId().equals(category.getId());
+
         // Update fields
         updateProduct.setName(request.getName());
         updateProduct.setDescription(request.getDescription());
@@ -200,12 +214,24 @@ public class ProductServiceImpl implements ProductService {
         updateProduct.setCategory(category);
 
         ProductEntity updatedProduct = productRepository.save(updateProduct);
+        if (shardedStockService.isSharded(updatedProduct)) {
+            shardedStockService.resetStock(id, request.getStock());
+        }
+
+        // Stock was overwritten: drop the counter after commit so it is re-seeded from DB
+        stockReservationService.resetStock(id);
+
+        if (listMembershipChanged) {
+            productCatalogCache.evictProductLists();
+        }
 
         log.info("✅ Product updated: id={}, name={}", updatedProduct.getId(), updatedProduct.getName());
         log.debug("🔄 Updated cache: product::{}", id);
-        log.debug("🗑️ Evicted cache: products (all), productStock::{}", id);
+        if (listMembershipChanged) {
+            log.debug("🗑️ Evicted cache: products (all)");
+        }
 
-        return productMapper.toResponse(updatedProduct);
+        return toResponse(updatedProduct);
     }
 
     /**
@@ -214,14 +240,12 @@ public class ProductServiceImpl implements ProductService {
      * Cache eviction:
      * - Clear product detail cache
      * - Clear products list cache
-     * - Clear product stock cache
      */
     @Override
     @Transactional
     @Caching(evict = {
             @CacheEvict(value = "product", key = "#id"),
-            @CacheEvict(value = "products", allEntries = true),
-            @CacheEvict(value = "productStock", key = "#id")
+            @CacheEvict(value = "products", allEntries = true)
     })
     public void deleteProduct(Long id) {
         log.info("🗑️ Deleting product: id={}", id);
@@ -231,8 +255,43 @@ public class ProductServiceImpl implements ProductService {
 
         // Soft delete
         productRepository.softDelete(product.getId());
+        catalogIdFilter.markMissing(CatalogIdType.PRODUCT, id);
 
         log.info("✅ Product deleted: id={}, name={}", id, product.getName());
-        log.debug("🗑️ Evicted cache: product::{}, products (all), productStock::{}", id, id);
+        log.debug("🗑️ Evicted cache: product::{}, products (all)", id);
+    }
+
+    /**
+     * Cached details + current stock. Copies: cached instances may be shared (L1)
+     */
+    private List<ProductResponse> withLiveStock(List<ProductResponse> products) {
+        if (products.isEmpty()) {
+            return products;
+        }
+        Map<Long, Integer> stocks = stockReservationService.getLiveStock(
+                products.stream().map(ProductResponse::getId).toList());
+
+        return products.stream()
+                .map(product -> ProductResponse.builder()
+                        .id(product.getId())
+                        .name(product.getName())
+                        .description(product.getDescription())
+                        .price(product.getPrice())
+                        .stock(stocks.getOrDefault(product.getId(), product.getStock()))
+                        .categoryId(product.getCategoryId())
+                        .categoryName(product.getCategoryName())
+                        .build())
+                .toList();
+    }
+
+    /**
+     * Map product to response, stock of a sharded product is the sum of its shards
+     */
+    private ProductResponse toResponse(ProductEntity product) {
+        ProductResponse response = productMapper.toResponse(product);
+        if (shardedStockService.isSharded(product)) {
+            response.setStock(shardedStockService.getTotalStock(product.getId()));
+        }
+        return response;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,278 @@
+package com.example.smartshop.services.serviceimpl;
+
+import com.example.smartshop.commons.enums.OperationType;
+import com.example.smartshop.commons.exceptions.InsufficientStockException;
+import com.example.smartshop.commons.exceptions.ResourceNotFoundException;
+import com.example.smartshop.entities.InventoryLogEntity;
+import com.example.smartshop.models.dtos.requets.PurchaseRequest;
+import com.example.smartshop.models.dtos.responses.UserResponse;
+import com.example.smartshop.repositories.UserRepository;
+import com.example.smartshop.services.InventoryLogPipeline;
+import com.example.smartshop.services.PurchaseCombiner;
+import com.example.smartshop.services.StockUpdateService;
+import com.example.smartshop.services.StockUpdateService.StockChange;
+import com.example.smartshop.services.UserService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Purchase combiner
+ *
+ * 1. First caller for a product opens a batch and becomes its leader
+ * 2. Callers arriving within window-millis join the batch (up to max-batch-size)
+ * 3. Leader closes the batch and, in one READ_COMMITTED transaction,
+ *    deducts the summed quantity with a single StockUpdateService call
+ * 4. Not enough stock for everybody -> requests are admitted in arrival order
+ *    while they fit, the rest get their own InsufficientStockException
+ * 5. One log row per admitted purchase, handed to the log pipeline as one batch
+ * 6. After commit every caller is released with its own result
+ *
+ * No extra threads: the leader is the request thread that opened the batch.
+ */
+@Service
+@Slf4j
+public class PurchaseCombinerImpl implements PurchaseCombiner {
+
+    @Autowired
+    private StockUpdateService stockUpdateService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private InventoryLogPipeline inventoryLogPipeline;
+
+    @Autowired
+    @Qualifier("readCommittedTransactionTemplate")
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${inventory.purchase-combiner.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inventory.purchase-combiner.window-millis:2}")
+    private long windowMillis;
+
+    @Value("${inventory.purchase-combiner.max-batch-size:100}")
+    private int maxBatchSize;
+
+    private final ConcurrentHashMap<Long, Batch> openBatches = new ConcurrentHashMap<>();
+
+    private DistributionSummary batchSizeSummary;
+
+    @PostConstruct
+    public void init() {
+        batchSizeSummary = meterRegistry.summary("inventory.purchase.combiner.batch.size");
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public int purchase(PurchaseRequest request) {
+        Long productId = request.getProductId();
+        Pending pending = new Pending(request);
+
+        // Joining and closing a batch both go through the map, so no caller can join a closed batch
+        Batch[] opened = new Batch[1];
+        Batch batch = openBatches.compute(productId, (id, current) -> {
+            if (current != null && current.add(pending)) {
+                return current;
+            }
+            Batch fresh = new Batch(maxBatchSize);
+            fresh.add(pending);
+            opened[0] = fresh;
+            return fresh;
+        });
+
+        if (opened[0] == batch) {
+            lead(productId, batch);
+        }
+
+        try {
+            return pending.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void lead(Long productId, Batch batch) {
+        try {
+            batch.awaitFull(windowMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        openBatches.remove(productId, batch);
+
+        List<Pending> pendings = batch.pendings;
+        batchSizeSummary.record(pendings.size());
+        log.debug("Combining {} purchases of productId={}", pendings.size(), productId);
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> combine(productId, pendings));
+            for (Pending pending : pendings) {
+                if (pending.error != null) {
+                    pending.result.completeExceptionally(pending.error);
+                } else {
+                    pending.result.complete(pending.stockAfter);
+                }
+            }
+        } catch (RuntimeException e) {
+            // Transaction rolled back: nobody's purchase happened
+            pendings.forEach(pending -> pending.result.completeExceptionally(e));
+        } catch (Error e) {
+            pendings.forEach(pending -> pending.result.completeExceptionally(e));
+            throw e;
+        }
+    }
+
+    private void combine(Long productId, List<Pending> pendings) {
+        Set<Long> customerIds = pendings.stream()
+                .map(pending -> pending.request.getCustomerId())
+                .collect(Collectors.toSet());
+        // Cached lookups (names for the notes); log rows only need reference proxies
+        Map<Long, UserResponse> customers = new HashMap<>();
+        for (Long customerId : customerIds) {
+            try {
+                customers.put(customerId, userService.getUserById(customerId));
+            } catch (ResourceNotFoundException e) {
+                // Rejected below
+            }
+        }
+
+        List<Pending> admitted = new ArrayList<>();
+        for (Pending pending : pendings) {
+            if (customers.containsKey(pending.request.getCustomerId())) {
+                admitted.add(pending);
+            } else {
+                pending.error = new RuntimeException("Customer not found");
+            }
+        }
+
+        StockChange change = null;
+        // Each retry only happens after a concurrent writer moved the stock; bounded anyway
+        for (int attempt = 0; attempt <= pendings.size() && !admitted.isEmpty(); attempt++) {
+            try {
+                change = stockUpdateService.applyDelta(productId, -totalQuantity(admitted));
+                break;
+            } catch (InsufficientStockException e) {
+                admitted = admitWhileAvailable(productId, admitted, e.getAvailable());
+            }
+        }
+
+        if (change == null) {
+            for (Pending pending : admitted) {
+                pending.error = new InsufficientStockException(productId, pending.request.getQuantity(), 0);
+            }
+            return;
+        }
+
+        // Chain stock values as if the purchases had run one after another
+        int stock = change.getStockBefore();
+        List<InventoryLogEntity> logs = new ArrayList<>();
+        for (Pending pending : admitted) {
+            int quantity = pending.request.getQuantity();
+            UserResponse customer = customers.get(pending.request.getCustomerId());
+
+            logs.add(InventoryLogEntity.builder()
+                    .product(change.getProduct())
+                    .quantityChange(-quantity)
+                    .stockBefore(stock)
+                    .stockAfter(stock - quantity)
+                    .operation(OperationType.PURCHASE)
+                    .performedBy(userRepository.getReferenceById(customer.getId()))
+                    .notes("Purchased by " + customer.getName())
+                    .referenceCode("ORDER-" + pending.request.getOrderId())
+                    .build());
+
+            stock -= quantity;
+            pending.stockAfter = stock;
+        }
+        inventoryLogPipeline.submit(logs);
+
+        log.info("✅ Combined purchase - ProductId: {}, Purchases: {}/{}, Stock: {} -> {}",
+                productId, admitted.size(), pendings.size(), change.getStockBefore(), change.getStockAfter());
+    }
+
+    private List<Pending> admitWhileAvailable(Long productId, List<Pending> candidates, int available) {
+        List<Pending> admitted = new ArrayList<>();
+        int remaining = available;
+        for (Pending pending : candidates) {
+            int quantity = pending.request.getQuantity();
+            if (quantity <= remaining) {
+                admitted.add(pending);
+                remaining -= quantity;
+            } else {
+                pending.error = new InsufficientStockException(productId, quantity, remaining);
+            }
+        }
+        return admitted;
+    }
+
+    private int totalQuantity(List<Pending> pendings) {
+        return pendings.stream().mapToInt(pending -> pending.request.getQuantity()).sum();
+    }
+
+    private static class Pending {
+        private final PurchaseRequest request;
+        private final CompletableFuture<Integer> result = new CompletableFuture<>();
+        // Written by the leader inside the transaction, published through result
+        private int stockAfter;
+        private RuntimeException error;
+
+        Pending(PurchaseRequest request) {
+            this.request = request;
+        }
+    }
+
+    private static class Batch {
+        private final int capacity;
+        private final List<Pending> pendings = new ArrayList<>();
+        private final CountDownLatch full = new CountDownLatch(1);
+
+        Batch(int capacity) {
+            this.capacity = capacity;
+        }
+
+        // Only called inside ConcurrentHashMap.compute for this product
+        boolean add(Pending pending) {
+            if (pendings.size() >= capacity) {
+                return false;
+            }
+            pendings.add(pending);
+            if (pendings.size() == capacity) {
+                full.countDown();
+            }
+            return true;
+        }
+
+        void awaitFull(long millis) throws InterruptedException {
+            full.await(millis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -1,12 +1,25 @@
 package com.example.smartshop.services.serviceimpl;
 
+import com.example.smartshop.commons.utils.TokenHashes;
+import com.example.smartshop.configs.LocalTokenBlacklist;
+import com.example.smartshop.configs.RedisCircuitBreaker;
 import com.example.smartshop.services.RedisService;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -16,26 +29,193 @@ public class RedisServiceImpl implements RedisService {
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
 
-    private static final String BLACKLIST_TOKEN_PREFIX = "BLACKLIST:";
+    @Autowired
+    private LocalTokenBlacklist localTokenBlacklist;
+
+    @Autowired
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    private static final String BLACKLIST_TOKEN_PREFIX = LocalTokenBlacklist.BLACKLIST_KEY_PREFIX;
     private static final String PRODUCT_STOCK_PREFIX = "product:stock:";
     private static final long STOCK_CACHE_TTL_MINUTES = 10;
+    private static final String STOCK_HOLD_PREFIX = "stock:hold:";
+    private static final String STOCK_HOLD_EXPIRY_KEY = "stock:hold:expiry";
+    private static final String STOCK_HELD_KEY = "stock:held";
+    private static final String HOLD_ITEM_PREFIX = "item:";
+
+    /**
+     * Check every counter first, then decrement all of them.
+     * Runs atomically inside Redis so two buyers can never pass the check for the same unit.
+     */
+    private static final RedisScript<Long> RESERVE_STOCK_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #KEYS do " +
+            "  local stock = redis.call('GET', KEYS[i]) " +
+            "  if not stock then return -i end " +
+            "  if tonumber(stock) < tonumber(ARGV[i]) then return i end " +
+            "end " +
+            "for i = 1, #KEYS do " +
+            "  redis.call('DECRBY', KEYS[i], ARGV[i]) " +
+            "end " +
+            "return 0",
+            Long.class
+    );
+
+    /**
+     * INCRBY only on counters that still exist (an expired counter is re-seeded from DB instead)
+     */
+    private static final RedisScript<Long> INCREMENT_IF_PRESENT_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #KEYS do " +
+            "  if redis.call('EXISTS', KEYS[i]) == 1 then " +
+            "    redis.call('INCRBY', KEYS[i], ARGV[i]) " +
+            "  end " +
+            "end " +
+            "return 0",
+            Long.class
+    );
+
+    /**
+     * counter = min(counter, ARGV[1]); missing counters are left alone (re-seeded from DB)
+     */
+    private static final RedisScript<Long> LOWER_STOCK_SCRIPT = new DefaultRedisScript<>(
+            "local stock = redis.call('GET', KEYS[1]) " +
+            "if not stock then return 0 end " +
+            "local excess = tonumber(stock) - tonumber(ARGV[1]) " +
+            "if excess > 0 then " +
+            "  redis.call('DECRBY', KEYS[1], excess) " +
+            "  return excess " +
+            "end " +
+            "return 0",
+            Long.class
+    );
+
+    /**
+     * Hold hash: owner, expiresAt, item:{productId} -> quantity
+     */
+    private static final RedisScript<Long> SAVE_STOCK_HOLD_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('HSET', KEYS[1], 'owner', ARGV[2], 'expiresAt', ARGV[3]) " +
+            "for i = 4, #ARGV, 2 do " +
+            "  redis.call('HSET', KEYS[1], 'item:' .. ARGV[i], ARGV[i + 1]) " +
+            "  redis.call('HINCRBY', KEYS[3], ARGV[i], ARGV[i + 1]) " +
+            "end " +
+            "redis.call('ZADD', KEYS[2], ARGV[3], ARGV[1]) " +
+            "return 1",
+            Long.class
+    );
+
+    /**
+     * DEL is the claim: only the caller that finds the hash gets its fields back.
+     * ARGV[2] = 1 also subtracts the hold from the held totals.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_STOCK_HOLD_SCRIPT = new DefaultRedisScript<>(
+            "local fields = redis.call('HGETALL', KEYS[1]) " +
+            "redis.call('ZREM', KEYS[2], ARGV[1]) " +
+            "if #fields == 0 then return {} end " +
+            "redis.call('DEL', KEYS[1]) " +
+            "if ARGV[2] ~= '1' then return fields end " +
+            "for i = 1, #fields, 2 do " +
+            "  if string.sub(fields[i], 1, 5) == 'item:' then " +
+            "    local productId = string.sub(fields[i], 6) " +
+            "    if redis.call('HINCRBY', KEYS[3], productId, -tonumber(fields[i + 1])) <= 0 then " +
+            "      redis.call('HDEL', KEYS[3], productId) " +
+            "    end " +
+            "  end " +
+            "end " +
+            "return fields",
+            List.class
+    );
+
+    private static final RedisScript<Long> RELEASE_HELD_STOCK_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #ARGV, 2 do " +
+            "  if redis.call('HINCRBY', KEYS[1], ARGV[i], -tonumber(ARGV[i + 1])) <= 0 then " +
+            "    redis.call('HDEL', KEYS[1], ARGV[i]) " +
+            "  end " +
+            "end " +
+            "return 1",
+            Long.class
+    );
+
+    @PostConstruct
+    public void registerRecovery() {
+        redisCircuitBreaker.onRecovery(this::resyncBlacklist);
+    }
+
     /**
+     * Logout: local replica first (always succeeds), then Redis and the other nodes.
+     * A failed Redis write is retried when the circuit closes again.
+     *
      * @param token
      * @param expirationMillis
      */
     @Override
     public void addToBlacklist(String token, long expirationMillis) {
-        ValueOperations<String, String> ops = stringRedisTemplate.opsForValue();
-        ops.set(BLACKLIST_TOKEN_PREFIX + token, "blacklisted", expirationMillis, TimeUnit.MILLISECONDS);
+        long expiresAtMillis = System.currentTimeMillis() + expirationMillis;
+        localTokenBlacklist.add(TokenHashes.sha256(token), expiresAtMillis);
+        try {
+            writeBlacklist(token, expiresAtMillis);
+        } catch (Exception e) {
+            localTokenBlacklist.markUnsynced(token, expiresAtMillis);
+            log.error("Failed to blacklist token in Redis, kept locally until Redis recovers: {}", e.getMessage());
+        }
     }
 
     /**
+     * Answered from the local replica; Redis is asked only until the replica is seeded.
+     * Fails open on Redis errors.
+     *
      * @param token
      * @return
      */
     @Override
     public boolean isBlacklisted(String token) {
-        return stringRedisTemplate.hasKey(BLACKLIST_TOKEN_PREFIX + token);
+        String tokenHash = TokenHashes.sha256(token);
+        if (localTokenBlacklist.contains(tokenHash)) {
+            return true;
+        }
+        if (localTokenBlacklist.isSeeded() || redisCircuitBreaker.isOpen()) {
+            return false;
+        }
+        try {
+            String key = BLACKLIST_TOKEN_PREFIX + token;
+            if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(key))) {
+                return false;
+            }
+            Long ttlMillis = stringRedisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+            if (ttlMillis != null && ttlMillis > 0) {
+                localTokenBlacklist.add(tokenHash, System.currentTimeMillis() + ttlMillis);
+            }
+            return true;
+        } catch (Exception e) {
+            log.warn("Blacklist lookup failed, using local replica only: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void writeBlacklist(String token, long expiresAtMillis) {
+        long ttlMillis = expiresAtMillis - System.currentTimeMillis();
+        if (ttlMillis <= 0) {
+            return;
+        }
+        ValueOperations<String, String> ops = stringRedisTemplate.opsForValue();
+        ops.set(BLACKLIST_TOKEN_PREFIX + token, "blacklisted", ttlMillis, TimeUnit.MILLISECONDS);
+        // Only the hash leaves this node
+        stringRedisTemplate.convertAndSend(LocalTokenBlacklist.BLACKLIST_CHANNEL,
+                expiresAtMillis + "|" + TokenHashes.sha256(token));
+    }
+
+    private void resyncBlacklist() {
+        Map<String, Long> pending = localTokenBlacklist.drainUnsynced();
+        pending.forEach((token, expiresAtMillis) -> {
+            try {
+                writeBlacklist(token, expiresAtMillis);
+            } catch (Exception e) {
+                localTokenBlacklist.markUnsynced(token, expiresAtMillis);
+                log.error("Failed to resync blacklisted token: {}", e.getMessage());
+            }
+        });
+        if (!pending.isEmpty()) {
+            log.info("Resynced {} blacklisted tokens to Redis", pending.size());
+        }
     }
 
     @Override
@@ -55,6 +235,30 @@ public class RedisServiceImpl implements RedisService {
         }
     }
 
+    @Override
+    public Map<Long, Integer> getStocks(Collection<Long> productIds) {
+        Map<Long, Integer> stocks = new LinkedHashMap<>();
+        if (productIds.isEmpty()) {
+            return stocks;
+        }
+        try {
+            List<Long> ids = new ArrayList<>(productIds);
+            List<String> values = stringRedisTemplate.opsForValue().multiGet(toStockKeys(ids));
+            if (values == null) {
+                return stocks;
+            }
+            for (int i = 0; i < ids.size(); i++) {
+                if (values.get(i) != null) {
+                    stocks.put(ids.get(i), Integer.parseInt(values.get(i)));
+                }
+            }
+            log.debug("Stock counters hit: {}/{}", stocks.size(), ids.size());
+        } catch (Exception e) {
+            log.error("Failed to get stocks from Redis: productIds={}", productIds, e);
+        }
+        return stocks;
+    }
+
     @Override
     public void updateStock(Long productId, Integer stock) {
         try {
@@ -81,4 +285,134 @@ public class RedisServiceImpl implements RedisService {
             log.error("Failed to evict stock from Redis: productId={}", productId, e);
         }
     }
+
+    @Override
+    public boolean initStockIfAbsent(Long productId, Integer stock) {
+        String key = PRODUCT_STOCK_PREFIX + productId;
+        Boolean created = stringRedisTemplate.opsForValue().setIfAbsent(
+                key,
+                String.valueOf(stock),
+                STOCK_CACHE_TTL_MINUTES,
+                TimeUnit.MINUTES
+        );
+        log.debug("Seeded stock counter: productId={}, stock={}, created={}", productId, stock, created);
+        return Boolean.TRUE.equals(created);
+    }
+
+    @Override
+    public long reserveStock(List<Long> productIds, List<Integer> quantities) {
+        Long result = stringRedisTemplate.execute(
+                RESERVE_STOCK_SCRIPT,
+                toStockKeys(productIds),
+                quantities.stream().map(String::valueOf).toArray()
+        );
+        return result != null ? result : 0L;
+    }
+
+    @Override
+    public void incrementStockIfPresent(List<Long> productIds, List<Integer> quantities) {
+        stringRedisTemplate.execute(
+                INCREMENT_IF_PRESENT_SCRIPT,
+                toStockKeys(productIds),
+                quantities.stream().map(String::valueOf).toArray()
+        );
+        log.debug("Incremented stock counters: productIds={}, quantities={}", productIds, quantities);
+    }
+
+    @Override
+    public void lowerStockTo(Long productId, int maxStock) {
+        Long lowered = stringRedisTemplate.execute(
+                LOWER_STOCK_SCRIPT,
+                toStockKeys(List.of(productId)),
+                String.valueOf(maxStock)
+        );
+        log.debug("Lowered stock counter: productId={}, maxStock={}, lowered={}", productId, maxStock, lowered);
+    }
+
+    @Override
+    public void saveStockHold(String holdId, String owner, Map<Long, Integer> quantities, long expiresAtMillis) {
+        List<String> args = new ArrayList<>();
+        args.add(holdId);
+        args.add(owner);
+        args.add(String.valueOf(expiresAtMillis));
+        quantities.forEach((productId, quantity) -> {
+            args.add(String.valueOf(productId));
+            args.add(String.valueOf(quantity));
+        });
+
+        stringRedisTemplate.execute(SAVE_STOCK_HOLD_SCRIPT, holdKeys(holdId), args.toArray());
+        log.debug("Saved stock hold: holdId={}, items={}", holdId, quantities);
+    }
+
+    @Override
+    public Optional<String> getStockHoldOwner(String holdId) {
+        Object owner = stringRedisTemplate.opsForHash().get(STOCK_HOLD_PREFIX + holdId, "owner");
+        return Optional.ofNullable(owner).map(Object::toString);
+    }
+
+    @Override
+    public Map<Long, Integer> claimStockHold(String holdId) {
+        return claimStockHold(holdId, true);
+    }
+
+    @Override
+    public Map<Long, Integer> takeStockHold(String holdId) {
+        return claimStockHold(holdId, false);
+    }
+
+    @Override
+    public void releaseHeldStock(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        List<String> args = new ArrayList<>();
+        quantities.forEach((productId, quantity) -> {
+            args.add(String.valueOf(productId));
+            args.add(String.valueOf(quantity));
+        });
+        stringRedisTemplate.execute(RELEASE_HELD_STOCK_SCRIPT, List.of(STOCK_HELD_KEY), args.toArray());
+    }
+
+    private Map<Long, Integer> claimStockHold(String holdId, boolean releaseHeld) {
+        List<?> fields = stringRedisTemplate.execute(CLAIM_STOCK_HOLD_SCRIPT, holdKeys(holdId),
+                holdId, releaseHeld ? "1" : "0");
+
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        if (fields == null) {
+            return quantities;
+        }
+        for (int i = 0; i + 1 < fields.size(); i += 2) {
+            String field = String.valueOf(fields.get(i));
+            if (field.startsWith(HOLD_ITEM_PREFIX)) {
+                quantities.put(
+                        Long.valueOf(field.substring(HOLD_ITEM_PREFIX.length())),
+                        Integer.valueOf(String.valueOf(fields.get(i + 1)))
+                );
+            }
+        }
+        return quantities;
+    }
+
+    @Override
+    public List<String> findExpiredStockHolds(long beforeMillis, int limit) {
+        Set<String> holdIds = stringRedisTemplate.opsForZSet()
+                .rangeByScore(STOCK_HOLD_EXPIRY_KEY, 0, beforeMillis, 0, limit);
+        return holdIds != null ? new ArrayList<>(holdIds) : List.of();
+    }
+
+    @Override
+    public int getHeldStock(Long productId) {
+        Object held = stringRedisTemplate.opsForHash().get(STOCK_HELD_KEY, String.valueOf(productId));
+        return held != null ? Integer.parseInt(held.toString()) : 0;
+    }
+
+    private List<String> holdKeys(String holdId) {
+        return List.of(STOCK_HOLD_PREFIX + holdId, STOCK_HOLD_EXPIRY_KEY, STOCK_HELD_KEY);
+    }
+
+    private List<String> toStockKeys(List<Long> productIds) {
+        return productIds.stream()
+                .map(id -> PRODUCT_STOCK_PREFIX + id)
+                .toList();
+    }
 }
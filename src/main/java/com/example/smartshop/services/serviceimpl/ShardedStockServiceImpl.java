@@ -0,0 +1,207 @@
+package com.example.smartshop.services.serviceimpl;
+
+import com.example.smartshop.commons.exceptions.InsufficientStockException;
+import com.example.smartshop.commons.exceptions.ProductNotFoundException;
+import com.example.smartshop.entities.ProductEntity;
+import com.example.smartshop.entities.ProductStockShardEntity;
+import com.example.smartshop.repositories.ProductRepository;
+import com.example.smartshop.repositories.ProductStockShardRepository;
+import com.example.smartshop.services.ShardedStockService;
+import com.example.smartshop.services.StockUpdateService.StockChange;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sharded stock counters
+ *
+ * Deduct:  conditional UPDATE on a random shard, then on its siblings.
+ *          Only when no single shard can cover the quantity, all shards are locked
+ *          (in shard_no order) and drained one after another.
+ * Restock: one UPDATE spreads the quantity evenly over all shards.
+ *
+ * Concurrent buyers of the same product usually land on different rows,
+ * so they no longer queue on a single products.stock row lock.
+ *
+ * inventory.sharding.enabled only gates enableSharding: products that already have
+ * shards keep using them when the flag is turned off (products.stock is stale for them).
+ */
+@Service
+@Slf4j
+public class ShardedStockServiceImpl implements ShardedStockService {
+
+    private static final int MAX_SHARDS = 64;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductStockShardRepository shardRepository;
+
+    @Value("${inventory.sharding.enabled:false}")
+    private boolean enabled;
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public boolean isSharded(ProductEntity product) {
+        return product.getStockShards() != null;
+    }
+
+    @Override
+    public Map<Long, Integer> findShardCounts(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, Integer> shardCounts = new HashMap<>();
+        for (Object[] row : productRepository.findStockShardsByIdIn(productIds)) {
+            shardCounts.put((Long) row[0], (Integer) row[1]);
+        }
+        return shardCounts;
+    }
+
+    @Override
+    public StockChange applyDelta(Long productId, int shardCount, int delta) {
+        ProductEntity product = productRepository.getReferenceById(productId);
+        if (delta < 0 && !deductFromOneShard(productId, shardCount, delta)) {
+            // Every shard is locked: the total before the change is exact
+            int stockBefore = drainShards(productId, -delta);
+            return new StockChange(product, stockBefore, stockBefore + delta);
+        }
+        if (delta >= 0) {
+            shardRepository.addToAllShards(productId, delta / shardCount, delta % shardCount);
+        }
+
+        // Before/after differ by exactly this transaction's delta. After a restock every shard
+        // is locked by us, so the total is exact; after a single-shard deduct the other shards
+        // are read as last committed.
+        int stockAfter = shardRepository.sumStockByProductId(productId).intValue();
+        return new StockChange(product, stockAfter - delta, stockAfter);
+    }
+
+    @Override
+    public Integer getTotalStock(Long productId) {
+        log.debug("📦 Summing stock shards from DB: productId={}", productId);
+        return shardRepository.sumStockByProductId(productId).intValue();
+    }
+
+    @Override
+    public void resetStock(Long productId, int stock) {
+        List<ProductStockShardEntity> shards = shardRepository.findByProductIdForUpdate(productId);
+        if (shards.isEmpty()) {
+            return;
+        }
+        spread(shards, stock);
+        shardRepository.saveAll(shards);
+    }
+
+    @Override
+    public void enableSharding(Long productId, int shardCount) {
+        if (shardCount < 2 || shardCount > MAX_SHARDS) {
+            throw new IllegalArgumentException("Shard count must be between 2 and " + MAX_SHARDS);
+        }
+
+        ProductEntity product = productRepository.findByIdForUpdate(productId)
+                .orElseThrow(() -> new ProductNotFoundException(productId));
+
+        int stock = product.getStock();
+        if (product.getStockShards() != null) {
+            stock = lockedTotal(productId);
+            shardRepository.deleteByProductId(productId);
+        }
+
+        List<ProductStockShardEntity> shards = new ArrayList<>();
+        for (int shardNo = 0; shardNo < shardCount; shardNo++) {
+            shards.add(ProductStockShardEntity.builder()
+                    .product(product)
+                    .shardNo(shardNo)
+                    .stock(0)
+                    .build());
+        }
+        spread(shards, stock);
+        shardRepository.saveAll(shards);
+
+        product.setStock(stock);
+        product.setStockShards(shardCount);
+        productRepository.save(product);
+
+        log.info("✅ Stock sharding enabled - ProductId: {}, Shards: {}, Stock: {}", productId, shardCount, stock);
+    }
+
+    @Override
+    public void disableSharding(Long productId) {
+        ProductEntity product = productRepository.findByIdForUpdate(productId)
+                .orElseThrow(() -> new ProductNotFoundException(productId));
+        if (product.getStockShards() == null) {
+            return;
+        }
+
+        int stock = lockedTotal(productId);
+        shardRepository.deleteByProductId(productId);
+
+        product.setStock(stock);
+        product.setStockShards(null);
+        productRepository.save(product);
+
+        log.info("✅ Stock sharding disabled - ProductId: {}, Stock: {}", productId, stock);
+    }
+
+    private boolean deductFromOneShard(Long productId, int shardCount, int delta) {
+        int start = ThreadLocalRandom.current().nextInt(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            if (shardRepository.addToShard(productId, (start + i) % shardCount, delta) == 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return total stock of the (locked) shards before draining
+     */
+    private int drainShards(Long productId, int quantity) {
+        List<ProductStockShardEntity> shards = shardRepository.findByProductIdForUpdate(productId);
+        if (shards.isEmpty()) {
+            throw new ProductNotFoundException(productId);
+        }
+
+        int available = shards.stream().mapToInt(ProductStockShardEntity::getStock).sum();
+        if (available < quantity) {
+            throw new InsufficientStockException(productId, quantity, available);
+        }
+
+        int remaining = quantity;
+        for (ProductStockShardEntity shard : shards) {
+            int taken = Math.min(shard.getStock(), remaining);
+            shard.setStock(shard.getStock() - taken);
+            remaining -= taken;
+            if (remaining == 0) {
+                break;
+            }
+        }
+        shardRepository.saveAll(shards);
+        log.debug("Drained {} units across {} shards: productId={}", quantity, shards.size(), productId);
+        return available;
+    }
+
+    private int lockedTotal(Long productId) {
+        return shardRepository.findByProductIdForUpdate(productId).stream()
+                .mapToInt(ProductStockShardEntity::getStock)
+                .sum();
+    }
+
+    private void spread(List<ProductStockShardEntity> shards, int stock) {
+        int base = stock / shards.size();
+        int remainder = stock % shards.size();
+        for (int i = 0; i < shards.size(); i++) {
+            shards.get(i).setStock(base + (i < remainder ? 1 : 0));
+        }
+    }
+}
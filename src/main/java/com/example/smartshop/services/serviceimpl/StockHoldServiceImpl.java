@@ -0,0 +1,266 @@
+package com.example.smartshop.services.serviceimpl;
+
+import com.example.smartshop.commons.exceptions.ResourceNotFoundException;
+import com.example.smartshop.commons.exceptions.UnauthorizedException;
+import com.example.smartshop.commons.utils.HashedTimingWheel;
+import com.example.smartshop.configs.AuthenticatedUser;
+import com.example.smartshop.models.dtos.requets.CreateOrderRequest;
+import com.example.smartshop.models.dtos.requets.CreateStockHoldRequest;
+import com.example.smartshop.models.dtos.requets.OrderItemRequest;
+import com.example.smartshop.models.dtos.responses.OrderResponse;
+import com.example.smartshop.models.dtos.responses.StockHoldResponse;
+import com.example.smartshop.services.OrderService;
+import com.example.smartshop.services.RedisService;
+import com.example.smartshop.services.StockHoldService;
+import com.example.smartshop.services.StockReservationService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Stock holds
+ *
+ * Create:  Lua reservation on product:stock: counters (fails fast, no DB lock),
+ *          then the hold is stored in Redis (stock:hold:{id}) with its expiry in a sorted set
+ *          and its units added to stock:held, which counter re-seeding subtracts.
+ * Expire:  a hashed timing wheel fires each hold at its deadline in O(1);
+ *          a sweep of the expiry sorted set picks up holds of nodes that went away.
+ * Confirm: the hold is taken (deleted) and turned into an order that skips the reservation;
+ *          its units leave stock:held only once the order has committed (or rolled back and
+ *          given them back), so counter re-seeding never sees them neither held nor deducted.
+ *
+ * Claiming is atomic in Redis, so expiry, release and confirm never give back the same units twice.
+ */
+@Service
+@Slf4j
+public class StockHoldServiceImpl implements StockHoldService {
+
+    private static final int SWEEP_BATCH_SIZE = 100;
+
+    @Autowired
+    private RedisService redisService;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    @Qualifier("stockHoldScheduler")
+    private TaskScheduler stockHoldScheduler;
+
+    @Value("${inventory.holds.default-seconds:600}")
+    private int defaultHoldSeconds;
+
+    @Value("${inventory.holds.max-seconds:1800}")
+    private int maxHoldSeconds;
+
+    @Value("${inventory.holds.tick-millis:1000}")
+    private long tickMillis;
+
+    @Value("${inventory.holds.wheel-size:512}")
+    private int wheelSize;
+
+    // Holds of other (dead) nodes are released this long after their deadline
+    @Value("${inventory.holds.sweep-interval-millis:30000}")
+    private long sweepIntervalMillis;
+
+    private HashedTimingWheel<String> expiryWheel;
+
+    @PostConstruct
+    public void start() {
+        expiryWheel = new HashedTimingWheel<>(tickMillis, wheelSize);
+        stockHoldScheduler.scheduleAtFixedRate(this::advanceWheel, Duration.ofMillis(tickMillis));
+        stockHoldScheduler.scheduleAtFixedRate(this::sweepOrphanedHolds, Duration.ofMillis(sweepIntervalMillis));
+    }
+
+    @Override
+    public StockHoldResponse createHold(CreateStockHoldRequest request, AuthenticatedUser user) {
+        if (!stockReservationService.isEnabled()) {
+            throw new IllegalStateException("Stock holds require inventory.reservation.enabled");
+        }
+
+        int holdSeconds = request.getHoldSeconds() != null ? request.getHoldSeconds() : defaultHoldSeconds;
+        if (holdSeconds > maxHoldSeconds) {
+            throw new IllegalArgumentException("Hold duration cannot exceed " + maxHoldSeconds + " seconds");
+        }
+
+        Map<Long, Integer> quantities = request.getItems().stream()
+                .collect(Collectors.toMap(
+                        OrderItemRequest::getProductId,
+                        OrderItemRequest::getQuantity,
+                        Integer::sum,
+                        TreeMap::new
+                ));
+
+        // Throws InsufficientStockException without touching MySQL
+        if (!stockReservationService.reserve(quantities)) {
+            throw new IllegalStateException("Stock hold could not be placed (unknown product or Redis unavailable)");
+        }
+
+        String holdId = UUID.randomUUID().toString();
+        long expiresAt = System.currentTimeMillis() + holdSeconds * 1000L;
+        try {
+            redisService.saveStockHold(holdId, ownerOf(user), quantities, expiresAt);
+        } catch (RuntimeException e) {
+            stockReservationService.release(quantities);
+            throw e;
+        }
+        expiryWheel.schedule(holdId, expiresAt);
+
+        log.info("🔒 Stock hold created - HoldId: {}, UserId: {}, Items: {}, Seconds: {}",
+                holdId, user.id(), quantities, holdSeconds);
+
+        return StockHoldResponse.builder()
+                .holdId(holdId)
+                .items(toItems(quantities))
+                .expiresAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(expiresAt), ZoneId.systemDefault()))
+                .build();
+    }
+
+    @Override
+    public OrderResponse confirmHold(String holdId, AuthenticatedUser user, String notes) {
+        checkOwner(holdId, user);
+
+        Map<Long, Integer> quantities = redisService.takeStockHold(holdId);
+        if (quantities.isEmpty()) {
+            throw new ResourceNotFoundException("Stock hold not found or expired");
+        }
+
+        CreateOrderRequest orderRequest = CreateOrderRequest.builder()
+                .items(toItems(quantities))
+                .notes(notes)
+                .build();
+
+        // Called inside a transaction: the order commits (or rolls back) with it
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    settleTakenHold(quantities, status == STATUS_COMMITTED);
+                }
+            });
+            OrderResponse order = orderService.createOrderFromHold(orderRequest, user.id());
+            log.info("✅ Stock hold confirmed - HoldId: {}, OrderId: {}", holdId, order.getId());
+            return order;
+        }
+
+        OrderResponse order;
+        try {
+            order = orderService.createOrderFromHold(orderRequest, user.id());
+        } catch (RuntimeException e) {
+            settleTakenHold(quantities, false);
+            throw e;
+        }
+        // createOrderFromHold returned: its transaction has committed
+        settleTakenHold(quantities, true);
+        log.info("✅ Stock hold confirmed - HoldId: {}, OrderId: {}", holdId, order.getId());
+        return order;
+    }
+
+    /**
+     * Committed: the deduction is in the database, the units stop counting as held.
+     * Rolled back: the units go back to the counters first, then leave the held totals.
+     */
+    private void settleTakenHold(Map<Long, Integer> quantities, boolean committed) {
+        try {
+            if (!committed) {
+                stockReservationService.release(quantities);
+            }
+            redisService.releaseHeldStock(quantities);
+        } catch (RuntimeException e) {
+            // Held totals stay too high: counters are re-seeded lower than needed, never oversold
+            log.error("Failed to settle confirmed stock hold: items={}, committed={}", quantities, committed, e);
+        }
+    }
+
+    @Override
+    public void releaseHold(String holdId, AuthenticatedUser user) {
+        checkOwner(holdId, user);
+        if (!release(holdId)) {
+            throw new ResourceNotFoundException("Stock hold not found or expired");
+        }
+    }
+
+    private void checkOwner(String holdId, AuthenticatedUser user) {
+        String owner = redisService.getStockHoldOwner(holdId)
+                .orElseThrow(() -> new ResourceNotFoundException("Stock hold not found or expired"));
+        if (!owner.equals(ownerOf(user))) {
+            throw new UnauthorizedException("You don't have permission to access this stock hold");
+        }
+    }
+
+    /**
+     * Owner field of stock:hold:{id}: the user id, like every other order endpoint
+     */
+    private String ownerOf(AuthenticatedUser user) {
+        return String.valueOf(user.id());
+    }
+
+    private boolean release(String holdId) {
+        Map<Long, Integer> quantities = redisService.claimStockHold(holdId);
+        if (quantities.isEmpty()) {
+            // Already confirmed, released or expired elsewhere
+            return false;
+        }
+        stockReservationService.release(quantities);
+        log.info("🔓 Stock hold released - HoldId: {}, Items: {}", holdId, quantities);
+        return true;
+    }
+
+    private void advanceWheel() {
+        try {
+            expiryWheel.advance(holdId -> {
+                try {
+                    release(holdId);
+                } catch (Exception e) {
+                    // Left in the expiry set, the sweep retries it
+                    log.error("Failed to release expired stock hold: holdId={}", holdId, e);
+                }
+            });
+        } catch (Exception e) {
+            log.error("Stock hold wheel tick failed", e);
+        }
+    }
+
+    private void sweepOrphanedHolds() {
+        try {
+            long cutoff = System.currentTimeMillis() - sweepIntervalMillis;
+            List<String> expired = redisService.findExpiredStockHolds(cutoff, SWEEP_BATCH_SIZE);
+            for (String holdId : expired) {
+                release(holdId);
+            }
+            if (!expired.isEmpty()) {
+                log.info("Swept {} orphaned stock holds", expired.size());
+            }
+        } catch (Exception e) {
+            log.error("Stock hold sweep failed", e);
+        }
+    }
+
+    private List<OrderItemRequest> toItems(Map<Long, Integer> quantities) {
+        return quantities.entrySet().stream()
+                .map(entry -> OrderItemRequest.builder()
+                        .productId(entry.getKey())
+                        .quantity(entry.getValue())
+                        .build())
+                .toList();
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.smartshop.services.serviceimpl;
+
+import com.example.smartshop.commons.exceptions.InsufficientStockException;
+import com.example.smartshop.services.RedisService;
+import com.example.smartshop.services.StockReservationService;
+import com.example.smartshop.services.StockUpdateService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Redis/Lua stock reservation
+ *
+ * Flow for a purchase:
+ * 1. Lua script checks and decrements product:stock:{id} counters atomically
+ * 2. Not enough stock -> InsufficientStockException, no DB lock was taken
+ * 3. Counter missing (expired / never seeded) -> seed from DB with SET NX, retry
+ * 4. Transaction rolls back -> reserved units are released (compensation)
+ * 5. Redis admitted a quantity that MySQL rejected -> counter has drifted,
+ *    callers trigger reconcile(): after completion it lowers the counter to
+ *    the committed value minus held units (min, never an overwrite upward)
+ *
+ * Redis failures never block a purchase: the reservation is skipped and
+ * the database row lock remains the final guard.
+ */
+@Service
+@Slf4j
+public class StockReservationServiceImpl implements StockReservationService {
+
+    @Autowired
+    private RedisService redisService;
+
+    @Autowired
+    private StockUpdateService stockUpdateService;
+
+    @Autowired
+    @Qualifier("stockReconcileExecutor")
+    private TaskExecutor stockReconcileExecutor;
+
+    @Value("${inventory.reservation.enabled:false}")
+    private boolean enabled;
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public boolean reserve(Map<Long, Integer> quantities) {
+        if (!enabled || quantities.isEmpty()) {
+            return false;
+        }
+
+        // Sorted so the script result index maps back to a stable product order
+        Map<Long, Integer> sorted = new TreeMap<>(quantities);
+        List<Long> productIds = new ArrayList<>(sorted.keySet());
+        List<Integer> amounts = new ArrayList<>(sorted.values());
+
+        try {
+            // Each retry seeds at most one missing counter
+            for (int attempt = 0; attempt <= productIds.size(); attempt++) {
+                long result = redisService.reserveStock(productIds, amounts);
+
+                if (result == 0) {
+                    registerCompensation(sorted);
+                    log.debug("Reserved stock in Redis: {}", sorted);
+                    return true;
+                }
+
+                int index = (int) Math.abs(result) - 1;
+                Long productId = productIds.get(index);
+
+                if (result > 0) {
+                    Integer available = redisService.getStock(productId);
+                    throw new InsufficientStockException(
+                            productId,
+                            amounts.get(index),
+                            available != null ? available : 0
+                    );
+                }
+
+                if (!seedCounter(productId)) {
+                    // Unknown product: let the database path report it
+                    return false;
+                }
+            }
+        } catch (InsufficientStockException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Stock reservation failed, falling back to database locking: {}", sorted, e);
+        }
+        return false;
+    }
+
+    @Override
+    public void release(Map<Long, Integer> quantities) {
+        try {
+            Map<Long, Integer> sorted = new TreeMap<>(quantities);
+            redisService.incrementStockIfPresent(new ArrayList<>(sorted.keySet()), new ArrayList<>(sorted.values()));
+            log.debug("Released reserved stock: {}", sorted);
+        } catch (Exception e) {
+            log.error("Failed to release reserved stock: {}", quantities, e);
+        }
+    }
+
+    @Override
+    public void syncStock(Long productId, int quantityChange) {
+        // Delta, not stockAfter: deltas commute, so out-of-order callbacks still add up, and the counter
+        // may hold in-flight reservations. A missing counter stays missing and is re-seeded from the DB.
+        // After commit: product reads show the counter, a rolled back change must not leak.
+        Runnable apply = () -> release(Map.of(productId, quantityChange));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    @Override
+    public void resetStock(Long productId) {
+        // Evicting before commit would let a concurrent read re-seed the old value,
+        // which reconcile() (only ever lowers) cannot raise again
+        Runnable evict = () -> redisService.evictStock(productId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict.run();
+                }
+            });
+        } else {
+            evict.run();
+        }
+    }
+
+    @Override
+    public void reconcile(Long productId) {
+        // Registered after the reservation's compensation, so the rollback release is applied first
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    scheduleReconcile(productId);
+                }
+            });
+        } else {
+            scheduleReconcile(productId);
+        }
+    }
+
+    private void scheduleReconcile(Long productId) {
+        try {
+            stockReconcileExecutor.execute(() -> {
+                try {
+                    // min(): reservations of other in-flight transactions stay subtracted
+                    stockUpdateService.findCurrentStock(productId).ifPresentOrElse(
+                            stock -> redisService.lowerStockTo(productId, stock - redisService.getHeldStock(productId)),
+                            () -> redisService.evictStock(productId)
+                    );
+                    log.info("Reconciled stock counter with database: productId={}", productId);
+                } catch (Exception e) {
+                    log.error("Stock reconciliation failed: productId={}", productId, e);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Stock reconciliation not scheduled: productId={}, reason={}", productId, e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<Long, Integer> getLiveStock(Collection<Long> productIds) {
+        Map<Long, Integer> stocks = new HashMap<>(redisService.getStocks(productIds));
+        List<Long> missingIds = productIds.stream()
+                .filter(productId -> !stocks.containsKey(productId))
+                .distinct()
+                .toList();
+        if (missingIds.isEmpty()) {
+            return stocks;
+        }
+
+        // One query for every missing counter (a cold list page), not one per product
+        Map<Long, Integer> committed = stockUpdateService.findCurrentStocks(missingIds);
+        boolean seeding = true;
+        for (Map.Entry<Long, Integer> entry : committed.entrySet()) {
+            if (seeding) {
+                try {
+                    stocks.put(entry.getKey(), seed(entry.getKey(), entry.getValue()));
+                    continue;
+                } catch (Exception e) {
+                    // Redis is down: show the committed values, logged once per call
+                    log.warn("Failed to seed stock counters, showing database stock: productIds={}, reason={}",
+                            committed.keySet(), e.getMessage());
+                    seeding = false;
+                }
+            }
+            stocks.put(entry.getKey(), entry.getValue());
+        }
+        return stocks;
+    }
+
+    private boolean seedCounter(Long productId) {
+        // Scalar query: does not put a stale entity into the persistence context
+        return stockUpdateService.findCurrentStock(productId)
+                .map(stock -> {
+                    seed(productId, stock);
+                    return true;
+                })
+                .orElse(false);
+    }
+
+    /**
+     * @return the counter value for the committed stock
+     */
+    private int seed(Long productId, int stock) {
+        // Units taken by stock holds are not deducted in the database yet
+        int available = enabled ? stock - redisService.getHeldStock(productId) : stock;
+        redisService.initStockIfAbsent(productId, available);
+        return available;
+    }
+
+    private void registerCompensation(Map<Long, Integer> reserved) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    log.warn("Transaction rolled back, releasing reserved stock: {}", reserved);
+                    release(reserved);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,389 @@
+package com.example.smartshop.services.serviceimpl;
+
+import com.example.smartshop.commons.enums.StockUpdateStrategy;
+import com.example.smartshop.commons.exceptions.InsufficientStockException;
+import com.example.smartshop.commons.exceptions.ProductNotFoundException;
+import com.example.smartshop.entities.ProductEntity;
+import com.example.smartshop.repositories.ProductRepository;
+import com.example.smartshop.repositories.ProductRepository.StockVersion;
+import com.example.smartshop.services.ShardedStockService;
+import com.example.smartshop.services.StockUpdateService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Stock update strategies
+ *
+ * PESSIMISTIC: lock row (SELECT ... FOR UPDATE), check in Java, save.
+ *              Lock is held across the select, the dirty-check flush and everything after.
+ * ATOMIC:      UPDATE products SET stock = stock + :delta WHERE id = :id AND stock + :delta >= 0
+ *              One round trip, no read before write; the new value comes back via LAST_INSERT_ID().
+ * OPTIMISTIC:  read stock + version without locking, UPDATE ... WHERE version = :read.
+ *              A conflict (0 rows) is retried with jittered backoff while this call holds no row lock;
+ *              in a multi-product deduct, once an earlier product is updated, a conflict goes
+ *              straight to PESSIMISTIC (sleeping would keep the earlier rows locked).
+ *              Retries exhausted or a product escalated for contention -> PESSIMISTIC for that product.
+ *              Relies on READ COMMITTED so every retry reads the latest committed version.
+ *
+ * Sharded products bypass the strategy and go to ShardedStockService.
+ * In a multi-product deduct, products rows are updated first, then shard rows, each in id order.
+ */
+@Service
+@Slf4j
+public class StockUpdateServiceImpl implements StockUpdateService {
+
+    // Contention stats of products not updated for a while are dropped
+    private static final long CONTENTION_MAX_PRODUCTS = 10_000;
+    private static final Duration CONTENTION_IDLE = Duration.ofMinutes(10);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ShardedStockService shardedStockService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${inventory.stock-update-strategy:PESSIMISTIC}")
+    private StockUpdateStrategy strategy;
+
+    @Value("${inventory.optimistic.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${inventory.optimistic.backoff-millis:2}")
+    private long backoffMillis;
+
+    // Conflict ratio above which a product switches to pessimistic locking
+    @Value("${inventory.optimistic.escalation-threshold:0.3}")
+    private double escalationThreshold;
+
+    @Value("${inventory.optimistic.escalation-min-samples:20}")
+    private int escalationMinSamples;
+
+    @Value("${inventory.optimistic.escalation-millis:60000}")
+    private long escalationMillis;
+
+    private final Cache<Long, Contention> contentionByProduct = Caffeine.newBuilder()
+            .maximumSize(CONTENTION_MAX_PRODUCTS)
+            .expireAfterAccess(CONTENTION_IDLE)
+            .build();
+
+    private Counter optimisticAttempts;
+    private Counter optimisticRetries;
+    private Counter optimisticExhausted;
+    private Counter optimisticEscalations;
+    private DistributionSummary retriesPerUpdate;
+
+    @PostConstruct
+    public void initMetrics() {
+        optimisticAttempts = meterRegistry.counter("inventory.stock.optimistic.attempts");
+        optimisticRetries = meterRegistry.counter("inventory.stock.optimistic.retries");
+        optimisticExhausted = meterRegistry.counter("inventory.stock.optimistic.exhausted");
+        optimisticEscalations = meterRegistry.counter("inventory.stock.optimistic.escalations");
+        retriesPerUpdate = meterRegistry.summary("inventory.stock.optimistic.retries.per.update");
+        meterRegistry.gauge("inventory.stock.optimistic.escalated.products", contentionByProduct,
+                cache -> cache.asMap().values().stream().filter(Contention::isEscalated).count());
+    }
+
+    @Override
+    public StockChange applyDelta(Long productId, int delta) {
+        Integer shardCount = shardedStockService.findShardCounts(List.of(productId)).get(productId);
+        if (shardCount != null) {
+            return shardedStockService.applyDelta(productId, shardCount, delta);
+        }
+        return switch (strategy) {
+            case ATOMIC -> applyDeltaAtomically(productId, delta);
+            case OPTIMISTIC -> applyDeltaOptimistically(productId, delta);
+            case PESSIMISTIC -> applyDeltaWithLock(productId, delta);
+        };
+    }
+
+    @Override
+    public List<StockChange> deduct(Map<Long, Integer> quantities) {
+        Map<Long, Integer> sorted = new TreeMap<>(quantities);
+        Map<Long, Integer> shardCounts = shardedStockService.findShardCounts(sorted.keySet());
+        sorted.keySet().removeAll(shardCounts.keySet());
+
+        List<StockChange> changes = new ArrayList<>();
+        if (!sorted.isEmpty()) {
+            changes.addAll(switch (strategy) {
+                case ATOMIC -> deductAtomically(sorted);
+                case OPTIMISTIC -> deductOptimistically(sorted);
+                case PESSIMISTIC -> deductWithLock(sorted);
+            });
+        }
+        for (Map.Entry<Long, Integer> entry : new TreeMap<>(shardCounts).entrySet()) {
+            changes.add(shardedStockService.applyDelta(
+                    entry.getKey(), entry.getValue(), -quantities.get(entry.getKey())));
+        }
+        return changes;
+    }
+
+    @Override
+    public Optional<Integer> findCurrentStock(Long productId) {
+        Optional<Integer> stock = productRepository.findStockById(productId);
+        if (stock.isPresent() && shardedStockService.findShardCounts(List.of(productId)).containsKey(productId)) {
+            return Optional.of(shardedStockService.getTotalStock(productId));
+        }
+        return stock;
+    }
+
+    @Override
+    public Map<Long, Integer> findCurrentStocks(Collection<Long> productIds) {
+        Map<Long, Integer> stocks = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return stocks;
+        }
+        for (Object[] row : productRepository.findStocksByIdIn(productIds)) {
+            stocks.put((Long) row[0], (Integer) row[1]);
+        }
+        // products.stock of a sharded product is stale, its shards hold the stock
+        for (Long productId : shardedStockService.findShardCounts(stocks.keySet()).keySet()) {
+            stocks.put(productId, shardedStockService.getTotalStock(productId));
+        }
+        return stocks;
+    }
+
+    // ==================== PESSIMISTIC ====================
+
+    private StockChange applyDeltaWithLock(Long productId, int delta) {
+        ProductEntity product = productRepository.findByIdForUpdate(productId)
+                .orElseThrow(() -> new ProductNotFoundException(productId));
+
+        int stockBefore = product.getStock();
+        int stockAfter = stockBefore + delta;
+        if (stockAfter < 0) {
+            throw new InsufficientStockException(productId, -delta, stockBefore);
+        }
+
+        product.setStock(stockAfter);
+        productRepository.save(product);
+        return new StockChange(product, stockBefore, stockAfter);
+    }
+
+    private List<StockChange> deductWithLock(Map<Long, Integer> quantities) {
+        List<Long> sortedIds = new ArrayList<>(quantities.keySet());
+        Map<Long, ProductEntity> productMap = productRepository.findAllByIdInForUpdate(sortedIds).stream()
+                .collect(Collectors.toMap(ProductEntity::getId, Function.identity()));
+
+        // Validate everything before touching any row
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            ProductEntity product = productMap.get(entry.getKey());
+            if (product == null) {
+                throw new ProductNotFoundException(entry.getKey());
+            }
+            if (product.getStock() < entry.getValue()) {
+                throw new InsufficientStockException(product.getId(), entry.getValue(), product.getStock());
+            }
+        }
+
+        List<StockChange> changes = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            ProductEntity product = productMap.get(entry.getKey());
+            int stockBefore = product.getStock();
+            product.setStock(stockBefore - entry.getValue());
+            changes.add(new StockChange(product, stockBefore, product.getStock()));
+        }
+
+        productRepository.saveAll(productMap.values());
+        return changes;
+    }
+
+    // ==================== ATOMIC ====================
+
+    private StockChange applyDeltaAtomically(Long productId, int delta) {
+        int stockAfter = updateAtomically(productId, delta);
+        // Reference only: the row was not read, the log just needs the foreign key
+        return new StockChange(productRepository.getReferenceById(productId), stockAfter - delta, stockAfter);
+    }
+
+    private List<StockChange> deductAtomically(Map<Long, Integer> quantities) {
+        Map<Long, Integer> stockAfter = new TreeMap<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            // A failure here throws and the caller's transaction rolls back earlier updates
+            stockAfter.put(entry.getKey(), updateAtomically(entry.getKey(), -entry.getValue()));
+        }
+
+        // Load after the updates so the entities already carry the new stock values
+        Map<Long, ProductEntity> productMap = productRepository.findAllById(quantities.keySet()).stream()
+                .collect(Collectors.toMap(ProductEntity::getId, Function.identity()));
+
+        List<StockChange> changes = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : stockAfter.entrySet()) {
+            int after = entry.getValue();
+            changes.add(new StockChange(
+                    productMap.get(entry.getKey()),
+                    after + quantities.get(entry.getKey()),
+                    after
+            ));
+        }
+        return changes;
+    }
+
+    private int updateAtomically(Long productId, int delta) {
+        if (productRepository.addStockIfSufficient(productId, delta) == 0) {
+            // Failure path only: find out why the conditional update matched nothing
+            Integer available = productRepository.findStockById(productId)
+                    .orElseThrow(() -> new ProductNotFoundException(productId));
+            throw new InsufficientStockException(productId, -delta, available);
+        }
+        return productRepository.findLastUpdatedStock().intValue();
+    }
+
+    // ==================== OPTIMISTIC ====================
+
+    private StockChange applyDeltaOptimistically(Long productId, int delta) {
+        Integer stockAfter = tryOptimistically(productId, delta, maxRetries);
+        if (stockAfter == null) {
+            return applyDeltaWithLock(productId, delta);
+        }
+        return new StockChange(productRepository.getReferenceById(productId), stockAfter - delta, stockAfter);
+    }
+
+    private List<StockChange> deductOptimistically(Map<Long, Integer> quantities) {
+        Map<Long, Integer> stockAfter = new TreeMap<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            // Rows of earlier products are locked by now: no backoff while holding them
+            int retries = stockAfter.isEmpty() ? maxRetries : 0;
+            Integer after = tryOptimistically(entry.getKey(), -entry.getValue(), retries);
+            if (after == null) {
+                // Locked entity stays managed, findAllById below returns it with the new stock
+                after = applyDeltaWithLock(entry.getKey(), -entry.getValue()).getStockAfter();
+            }
+            stockAfter.put(entry.getKey(), after);
+        }
+
+        Map<Long, ProductEntity> productMap = productRepository.findAllById(quantities.keySet()).stream()
+                .collect(Collectors.toMap(ProductEntity::getId, Function.identity()));
+
+        List<StockChange> changes = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : stockAfter.entrySet()) {
+            int after = entry.getValue();
+            changes.add(new StockChange(
+                    productMap.get(entry.getKey()),
+                    after + quantities.get(entry.getKey()),
+                    after
+            ));
+        }
+        return changes;
+    }
+
+    /**
+     * @param retries conflicts retried with backoff; 0 = first conflict falls back to locking
+     * @return stock after the update, or null if the caller must fall back to locking
+     */
+    private Integer tryOptimistically(Long productId, int delta, int retries) {
+        Contention contention = contentionByProduct.get(productId, id -> new Contention());
+        if (contention.isEscalated()) {
+            return null;
+        }
+
+        for (int attempt = 0; attempt <= retries; attempt++) {
+            if (attempt > 0) {
+                optimisticRetries.increment();
+                backoff(attempt);
+            }
+            optimisticAttempts.increment();
+
+            StockVersion current = productRepository.findStockVersionById(productId)
+                    .orElseThrow(() -> new ProductNotFoundException(productId));
+            int stockAfter = current.getStock() + delta;
+            if (stockAfter < 0) {
+                throw new InsufficientStockException(productId, -delta, current.getStock());
+            }
+
+            if (productRepository.updateStockIfVersion(productId, current.getVersion(), stockAfter) == 1) {
+                retriesPerUpdate.record(attempt);
+                if (contention.record(attempt > 0)) {
+                    escalate(productId, contention, "conflict rate");
+                }
+                return stockAfter;
+            }
+        }
+
+        retriesPerUpdate.record(retries);
+        if (retries < maxRetries) {
+            // Fallback without retrying: a conflict sample, not exhausted retries
+            if (contention.record(true)) {
+                escalate(productId, contention, "conflict rate");
+            }
+            return null;
+        }
+        optimisticExhausted.increment();
+        contention.record(true);
+        escalate(productId, contention, "retries exhausted");
+        return null;
+    }
+
+    private void escalate(Long productId, Contention contention, String reason) {
+        contention.escalate(System.currentTimeMillis() + escalationMillis);
+        optimisticEscalations.increment();
+        log.warn("Stock updates of productId={} switched to pessimistic locking for {} ms ({})",
+                productId, escalationMillis, reason);
+    }
+
+    private void backoff(int attempt) {
+        // Full jitter: random wait in [0, backoff * 2^(attempt-1)]
+        long ceiling = backoffMillis << Math.min(attempt - 1, 10);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Conflict ratio of one product over its last escalation-min-samples updates
+     */
+    private class Contention {
+        private int samples;
+        private int conflicts;
+        private volatile long escalatedUntil;
+
+        boolean isEscalated() {
+            return escalatedUntil > System.currentTimeMillis();
+        }
+
+        /**
+         * @return true if the conflict ratio just crossed the threshold
+         */
+        synchronized boolean record(boolean conflicted) {
+            samples++;
+            if (conflicted) {
+                conflicts++;
+            }
+            if (samples < escalationMinSamples) {
+                return false;
+            }
+            boolean crossed = (double) conflicts / samples > escalationThreshold;
+            samples = 0;
+            conflicts = 0;
+            return crossed;
+        }
+
+        void escalate(long until) {
+            escalatedUntil = until;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.smartshop.services.serviceimpl;
+
+import com.example.smartshop.commons.exceptions.ResourceNotFoundException;
+import com.example.smartshop.configs.RedisCircuitBreaker;
+import com.example.smartshop.repositories.UserRepository;
+import com.example.smartshop.services.TokenVersionService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * users.token_version is the source of truth (survives a Redis flush); the Redis hash
+ * auth:token-version is the shared copy; pub/sub pushes every increment to the local maps
+ * of all nodes, a periodic resync catches missed messages and retries unpublished increments.
+ *
+ * Versions only move forward everywhere (max), so late or duplicate messages are harmless.
+ */
+@Service
+@Slf4j
+public class TokenVersionServiceImpl implements TokenVersionService {
+
+    private static final String VERSION_HASH_KEY = "auth:token-version";
+    private static final String VERSION_CHANNEL = "auth:token-version";
+    private static final int RESYNC_BATCH_SIZE = 1000;
+
+    /**
+     * HSET only if the version is newer than the stored one
+     */
+    private static final RedisScript<Long> SET_IF_NEWER_SCRIPT = new DefaultRedisScript<>(
+            "local current = tonumber(redis.call('HGET', KEYS[1], ARGV[1]) or '-1') " +
+            "if tonumber(ARGV[2]) > current then " +
+            "  redis.call('HSET', KEYS[1], ARGV[1], ARGV[2]) " +
+            "  return 1 " +
+            "end " +
+            "return 0",
+            Long.class
+    );
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    @Autowired
+    @Qualifier("readCommittedTransactionTemplate")
+    private TransactionTemplate readCommittedTransactionTemplate;
+
+    @Autowired
+    @Qualifier("cacheMaintenanceScheduler")
+    private TaskScheduler cacheMaintenanceScheduler;
+
+    @Value("${auth.token-version.local-max-size:100000}")
+    private long localMaxSize;
+
+    @Value("${auth.token-version.resync-millis:30000}")
+    private long resyncMillis;
+
+    private Cache<Long, Long> versions;
+
+    // Increments not yet in Redis / not yet published (Redis unavailable)
+    private final Map<Long, Long> unpublished = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() {
+        versions = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .build();
+
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            int separator = body.indexOf(':');
+            if (separator > 0) {
+                advanceTo(Long.parseLong(body.substring(0, separator)), Long.parseLong(body.substring(separator + 1)));
+            }
+        }, new ChannelTopic(VERSION_CHANNEL));
+
+        cacheMaintenanceScheduler.scheduleWithFixedDelay(this::resync, Duration.ofMillis(resyncMillis));
+        redisCircuitBreaker.onRecovery(this::republish);
+    }
+
+    @Override
+    public long current(Long userId) {
+        return versions.get(userId, this::load);
+    }
+
+    @Override
+    public long revokeAll(Long userId) {
+        Long version = readCommittedTransactionTemplate.execute(status -> {
+            if (userRepository.incrementTokenVersion(userId) == 0) {
+                throw new ResourceNotFoundException("User not found");
+            }
+            return userRepository.findTokenVersionById(userId).orElse(0L);
+        });
+        long newVersion = version != null ? version : 0L;
+
+        advanceTo(userId, newVersion);
+        publish(userId, newVersion);
+        log.info("🔐 Revoked all tokens of user {}: tokenVersion={}", userId, newVersion);
+        return newVersion;
+    }
+
+    private void publish(Long userId, long version) {
+        try {
+            stringRedisTemplate.execute(SET_IF_NEWER_SCRIPT, List.of(VERSION_HASH_KEY),
+                    String.valueOf(userId), String.valueOf(version));
+            stringRedisTemplate.convertAndSend(VERSION_CHANNEL, userId + ":" + version);
+        } catch (Exception e) {
+            // Other nodes keep accepting old tokens of this user until Redis is back
+            unpublished.merge(userId, version, Math::max);
+            log.error("❌ Token version of user {} not published, retried on resync: {}",
+                    userId, e.getMessage());
+        }
+    }
+
+    private void republish() {
+        for (Long userId : new ArrayList<>(unpublished.keySet())) {
+            Long version = unpublished.remove(userId);
+            if (version != null) {
+                publish(userId, version);
+            }
+        }
+    }
+
+    private void advanceTo(Long userId, long version) {
+        versions.asMap().merge(userId, version, Math::max);
+    }
+
+    /**
+     * The DB is read on every local miss: a revocation whose publish failed is only there,
+     * so a hash entry alone could hand back an older version
+     */
+    private Long load(Long userId) {
+        long version = userRepository.findTokenVersionById(userId).orElse(0L);
+        if (redisCircuitBreaker.isOpen()) {
+            return version;
+        }
+
+        try {
+            Object cached = stringRedisTemplate.opsForHash().get(VERSION_HASH_KEY, String.valueOf(userId));
+            long shared = cached != null ? Long.parseLong(cached.toString()) : -1L;
+            if (shared >= version) {
+                return shared;
+            }
+            stringRedisTemplate.execute(SET_IF_NEWER_SCRIPT, List.of(VERSION_HASH_KEY),
+                    String.valueOf(userId), String.valueOf(version));
+        } catch (Exception e) {
+            log.debug("Token version of user {} not synced with Redis: {}", userId, e.getMessage());
+        }
+        return version;
+    }
+
+    private void resync() {
+        // A failed publish must not wait for a circuit breaker transition that may never come
+        if (!unpublished.isEmpty() && !redisCircuitBreaker.isOpen()) {
+            republish();
+        }
+        try {
+            List<Long> userIds = new ArrayList<>(versions.asMap().keySet());
+            for (int from = 0; from < userIds.size(); from += RESYNC_BATCH_SIZE) {
+                List<Long> batch = userIds.subList(from, Math.min(from + RESYNC_BATCH_SIZE, userIds.size()));
+                List<Object> values = stringRedisTemplate.opsForHash()
+                        .multiGet(VERSION_HASH_KEY, batch.stream().map(id -> (Object) String.valueOf(id)).toList());
+                for (int i = 0; i < batch.size(); i++) {
+                    if (values.get(i) != null) {
+                        advanceTo(batch.get(i), Long.parseLong(values.get(i).toString()));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Token version resync failed: {}", e.getMessage());
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.smartshop.services.serviceimpl;
 
 import com.example.smartshop.commons.enums.Role;
+import com.example.smartshop.commons.exceptions.ResourceNotFoundException;
 import com.example.smartshop.entities.UserEntity;
 import com.example.smartshop.models.dtos.requets.LoginDTO;
 import com.example.smartshop.models.dtos.requets.RegisterRequest;
@@ -8,17 +9,19 @@ import com.example.smartshop.models.dtos.responses.TokenDTO;
 import com.example.smartshop.models.dtos.responses.UserResponse;
 import com.example.smartshop.models.mappers.UserMapper;
 import com.example.smartshop.repositories.UserRepository;
+import com.example.smartshop.services.PasswordHashService;
 import com.example.smartshop.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class UserServiceImpl implements UserService {
     @Autowired
     private UserRepository userRepository;
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashService passwordHashService;
     @Autowired
     private UserMapper userMapper;
 
@@ -29,10 +32,23 @@ public class UserServiceImpl implements UserService {
             throw new RuntimeException("Email already exists!");
         }
         UserEntity user = userMapper.toUserEntity(request);
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setPassword(passwordHashService.encode(request.getPassword()));
         user.setRole(Role.CUSTOMER);
         UserEntity savedUser = userRepository.save(user);
         return userMapper.toResponse(savedUser);
     }
 
+    /**
+     * Cache key: user ID
+     * TTL: 15 minutes (Redis), 60 seconds (local L1)
+     */
+    @Override
+    @Transactional(readOnly = true)
+    @Cacheable(value = "user", key = "#userId", sync = true)
+    public UserResponse getUserById(Long userId) {
+        return userRepository.findByIdAndDeletedAtIsNull(userId)
+                .map(userMapper::toResponse)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    }
+
 }
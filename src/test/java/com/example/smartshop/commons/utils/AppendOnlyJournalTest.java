@@ -0,0 +1,79 @@
+package com.example.smartshop.commons.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AppendOnlyJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void unacknowledgedRecordsAreReplayedAfterRestart() throws IOException {
+        AppendOnlyJournal journal = new AppendOnlyJournal(directory, 1024 * 1024, false);
+        assertThat(journal.open()).isEmpty();
+        long[] seqs = journal.append(List.of("a", "b", "c"));
+        journal.ack(new long[]{seqs[0], seqs[2]});
+        journal.close();
+
+        AppendOnlyJournal reopened = new AppendOnlyJournal(directory, 1024 * 1024, false);
+        List<AppendOnlyJournal.Entry> pending = reopened.open();
+
+        assertThat(pending).containsExactly(new AppendOnlyJournal.Entry(seqs[1], "b"));
+        // Sequence numbers keep increasing across restarts
+        assertThat(reopened.append(List.of("d"))[0]).isGreaterThan(seqs[2]);
+        reopened.close();
+    }
+
+    @Test
+    void tornLastLineIsIgnored() throws IOException {
+        AppendOnlyJournal journal = new AppendOnlyJournal(directory, 1024 * 1024, false);
+        journal.open();
+        journal.append(List.of("complete"));
+        journal.close();
+
+        Path segment = segments().get(0);
+        Files.writeString(segment, "E 2 {\"trunc", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        List<AppendOnlyJournal.Entry> pending = new AppendOnlyJournal(directory, 1024 * 1024, false).open();
+        assertThat(pending).extracting(AppendOnlyJournal.Entry::payload).containsExactly("complete");
+    }
+
+    @Test
+    void fullyAcknowledgedSegmentsAreDeleted() throws IOException {
+        // Tiny segments: every append after the first rolls to a new file
+        AppendOnlyJournal journal = new AppendOnlyJournal(directory, 1, false);
+        journal.open();
+        long[] first = journal.append(List.of("one"));
+        long[] second = journal.append(List.of("two"));
+        journal.append(List.of("three"));
+        assertThat(segments()).hasSize(3);
+
+        // Newer segment acknowledged first: kept until the older one is done
+        journal.ack(second);
+        assertThat(segments()).hasSize(3);
+
+        journal.ack(first);
+        assertThat(segments()).hasSize(1);
+        journal.close();
+
+        List<AppendOnlyJournal.Entry> pending = new AppendOnlyJournal(directory, 1, false).open();
+        assertThat(pending).extracting(AppendOnlyJournal.Entry::payload).containsExactly("three");
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.smartshop.commons.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashedTimingWheelTest {
+
+    private static final long TICK_MILLIS = 10;
+
+    @Test
+    void entryExpiresOnceItsDeadlinePassed() throws InterruptedException {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(TICK_MILLIS, 8);
+        List<String> expired = new ArrayList<>();
+        wheel.schedule("hold", System.currentTimeMillis() + 5 * TICK_MILLIS);
+
+        wheel.advance(expired::add);
+        assertThat(expired).isEmpty();
+        assertThat(wheel.pendingCount()).isEqualTo(1);
+
+        Thread.sleep(8 * TICK_MILLIS);
+        wheel.advance(expired::add);
+
+        assertThat(expired).containsExactly("hold");
+        assertThat(wheel.pendingCount()).isZero();
+    }
+
+    @Test
+    void pastDeadlineExpiresOnTheNextTick() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(TICK_MILLIS, 8);
+        List<String> expired = new ArrayList<>();
+        wheel.schedule("late", System.currentTimeMillis() - 1_000);
+
+        wheel.advance(expired::add);
+
+        assertThat(expired).containsExactly("late");
+    }
+
+    @Test
+    void deadlineSeveralRevolutionsAwayDoesNotFireEarly() throws InterruptedException {
+        // 4 buckets: the entry shares its bucket with ticks passed on the first revolutions
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(TICK_MILLIS, 4);
+        List<String> expired = new ArrayList<>();
+        wheel.schedule("far", System.currentTimeMillis() + 40 * TICK_MILLIS);
+
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(TICK_MILLIS);
+            wheel.advance(expired::add);
+        }
+        assertThat(expired).isEmpty();
+
+        Thread.sleep(50 * TICK_MILLIS);
+        wheel.advance(expired::add);
+        assertThat(expired).containsExactly("far");
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.smartshop.commons.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongBloomFilterTest {
+
+    @Test
+    void addedIdsAreAlwaysFound() {
+        LongBloomFilter filter = new LongBloomFilter(10_000, 0.01);
+        for (long id = 1; id <= 10_000; id++) {
+            filter.add(id);
+        }
+
+        for (long id = 1; id <= 10_000; id++) {
+            assertThat(filter.mightContain(id)).as("id %d", id).isTrue();
+        }
+        // Extreme values hash like any other id
+        filter.add(Long.MIN_VALUE);
+        filter.add(-1);
+        assertThat(filter.mightContain(Long.MIN_VALUE)).isTrue();
+        assertThat(filter.mightContain(-1)).isTrue();
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheConfiguredOne() {
+        LongBloomFilter filter = new LongBloomFilter(10_000, 0.01);
+        for (long id = 1; id <= 10_000; id++) {
+            filter.add(id);
+        }
+
+        int falsePositives = 0;
+        for (long id = 1_000_001; id <= 1_100_000; id++) {
+            if (filter.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+        // 1% expected, generous bound against flakiness
+        assertThat(falsePositives).isLessThan(3_000);
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        LongBloomFilter filter = new LongBloomFilter(100, 0.01);
+
+        assertThat(filter.mightContain(42)).isFalse();
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.smartshop.configs;
+
+import com.example.smartshop.commons.enums.CacheCodecFormat;
+import com.example.smartshop.commons.enums.StatusOrder;
+import com.example.smartshop.models.dtos.responses.CacheablePage;
+import com.example.smartshop.models.dtos.responses.OrderItemResponse;
+import com.example.smartshop.models.dtos.responses.OrderResponse;
+import com.example.smartshop.models.dtos.responses.ProductIdPage;
+import com.example.smartshop.models.dtos.responses.ProductResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompactCacheSerializerTest {
+
+    private static final int THRESHOLD = 256;
+
+    // Production codecs, typing and type allowlist included
+    private final RedisSerializer<Object> serializer = CacheConfig.createValueSerializer(CacheCodecFormat.SMILE, THRESHOLD);
+    private final RedisSerializer<Object> jsonSerializer = CacheConfig.createValueSerializer(CacheCodecFormat.JSON, THRESHOLD);
+
+    @Test
+    void smallValueIsStoredUncompressed() {
+        ProductResponse value = product(1L);
+
+        byte[] bytes = serializer.serialize(value);
+
+        assertThat(bytes[0]).isEqualTo((byte) 0x00);
+        assertThat(bytes.length).isLessThan(THRESHOLD + 1);
+        assertThat(serializer.deserialize(bytes)).isEqualTo(value);
+    }
+
+    @Test
+    void valueAboveThresholdIsCompressed() {
+        List<ProductResponse> products = new ArrayList<>();
+        for (long id = 1; id <= 50; id++) {
+            products.add(product(id));
+        }
+        CacheablePage<ProductResponse> value = CacheablePage.of(new PageImpl<>(products, PageRequest.of(0, 50), 120));
+
+        byte[] bytes = serializer.serialize(value);
+
+        assertThat(bytes[0]).isEqualTo((byte) 0x01);
+        assertThat(serializer.deserialize(bytes)).isEqualTo(value);
+    }
+
+    @Test
+    void refreshAheadEntriesOfProductsAndIdPagesRoundTrip() {
+        RefreshAheadEntry detail = new RefreshAheadEntry(product(7L), 12, 1_700_000_000_000L);
+        ProductIdPage page = ProductIdPage.of(new PageImpl<>(List.of(3L, 2L, 1L), PageRequest.of(0, 20), 3));
+        RefreshAheadEntry list = new RefreshAheadEntry(page, 40, 1_700_000_000_000L);
+
+        assertThat(serializer.deserialize(serializer.serialize(detail))).isEqualTo(detail);
+        assertThat(serializer.deserialize(serializer.serialize(list))).isEqualTo(list);
+    }
+
+    @Test
+    void jsonWrittenByThePreviousSerializerIsStillRead() {
+        ProductResponse value = product(2L);
+
+        byte[] legacy = jsonSerializer.serialize(value);
+
+        assertThat(serializer.deserialize(legacy)).isEqualTo(value);
+    }
+
+    @Test
+    void typesOutsideTheAllowlistAreRejected() throws Exception {
+        byte[] document = new ObjectMapper(new SmileFactory())
+                .writeValueAsBytes(Map.of("@class", "java.lang.ProcessBuilder"));
+        byte[] bytes = new byte[document.length + 1];
+        System.arraycopy(document, 0, bytes, 1, document.length);
+
+        assertThatThrownBy(() -> serializer.deserialize(bytes)).isInstanceOf(SerializationException.class);
+    }
+
+    @Test
+    void smileIsSmallerThanJsonForCachedDtos() {
+        List<ProductResponse> products = new ArrayList<>();
+        for (long id = 1; id <= 20; id++) {
+            products.add(product(id));
+        }
+        CacheablePage<ProductResponse> page = CacheablePage.of(new PageImpl<>(products, PageRequest.of(0, 20), 240));
+
+        assertSmallerThanJson(page);
+        assertSmallerThanJson(product(1L));
+        assertSmallerThanJson(order(9L));
+    }
+
+    @Test
+    void nullAndEmptyAreSymmetric() {
+        assertThat(serializer.serialize(null)).isEmpty();
+        assertThat(serializer.deserialize(new byte[0])).isNull();
+        assertThat(serializer.deserialize(null)).isNull();
+    }
+
+    private void assertSmallerThanJson(Object value) {
+        byte[] compact = serializer.serialize(value);
+        byte[] json = jsonSerializer.serialize(value);
+
+        assertThat(compact.length).as(value.getClass().getSimpleName()).isLessThan(json.length);
+        assertThat(serializer.deserialize(compact)).isEqualTo(value);
+    }
+
+    private OrderResponse order(Long id) {
+        List<OrderItemResponse> items = new ArrayList<>();
+        for (long itemId = 1; itemId <= 5; itemId++) {
+            items.add(OrderItemResponse.builder()
+                    .id(id * 10 + itemId)
+                    .productId(itemId)
+                    .productName("Phone " + itemId)
+                    .quantity(2)
+                    .price(new BigDecimal("199.90"))
+                    .subtotal(new BigDecimal("399.80"))
+                    .build());
+        }
+        return OrderResponse.builder()
+                .id(id)
+                .userId(4L)
+                .userName("Nguyen Van A")
+                .userEmail("customer@example.com")
+                .totalPrice(new BigDecimal("1999.00"))
+                .status(StatusOrder.PENDING)
+                .notes("Deliver after 6 pm")
+                .items(items)
+                .createdAt(LocalDateTime.of(2024, 5, 1, 10, 30))
+                .updatedAt(LocalDateTime.of(2024, 5, 1, 10, 30))
+                .build();
+    }
+
+    private ProductResponse product(Long id) {
+        return ProductResponse.builder()
+                .id(id)
+                .name("Phone " + id)
+                .description("A phone with a description that repeats across the page")
+                .price(new BigDecimal("199.90"))
+                .stock(5)
+                .categoryId(3L)
+                .categoryName("Phones")
+                .build();
+    }
+}
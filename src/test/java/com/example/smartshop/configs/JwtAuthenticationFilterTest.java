@@ -0,0 +1,76 @@
+package com.example.smartshop.configs;
+
+import com.example.smartshop.services.JWTService;
+import com.example.smartshop.services.RedisService;
+import com.example.smartshop.services.TokenVersionService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class JwtAuthenticationFilterTest {
+
+    private static final String TOKEN = "header.payload.signature";
+
+    @Mock
+    private JWTService jwtService;
+
+    @Mock
+    private RedisService redisService;
+
+    @Mock
+    private TokenVersionService tokenVersionService;
+
+    @InjectMocks
+    private JwtAuthenticationFilter filter;
+
+    @Test
+    void tokenOlderThanTheUsersVersionIsRevoked() {
+        when(tokenVersionService.current(7L)).thenReturn(3L);
+
+        assertThat(filter.isRevoked(TOKEN, versioned(7, 2))).isTrue();
+        verify(redisService, never()).isBlacklisted(any());
+    }
+
+    @Test
+    void currentVersionIsAcceptedUnlessThisTokenWasLoggedOut() {
+        when(tokenVersionService.current(7L)).thenReturn(2L);
+        when(redisService.isBlacklisted(TOKEN)).thenReturn(false, true);
+
+        assertThat(filter.isRevoked(TOKEN, versioned(7, 2))).isFalse();
+        // Single-device logout blacklists the token without touching the version
+        assertThat(filter.isRevoked(TOKEN, versioned(7, 2))).isTrue();
+    }
+
+    @Test
+    void versionAheadOfTheLocalReplicaIsAccepted() {
+        // Issued after a logout-all this node has not heard about yet
+        when(tokenVersionService.current(7L)).thenReturn(1L);
+
+        assertThat(filter.isRevoked(TOKEN, versioned(7, 2))).isFalse();
+    }
+
+    @Test
+    void tokenWithoutVersionOnlyChecksTheBlacklist() {
+        when(redisService.isBlacklisted(TOKEN)).thenReturn(true);
+
+        assertThat(filter.isRevoked(TOKEN, Jwts.claims(Map.of("userId", 7)))).isTrue();
+        verify(tokenVersionService, never()).current(any());
+    }
+
+    private static Claims versioned(int userId, int tokenVersion) {
+        return Jwts.claims(Map.of("userId", userId, JWTService.TOKEN_VERSION_CLAIM, tokenVersion));
+    }
+}
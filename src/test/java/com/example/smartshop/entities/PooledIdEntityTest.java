@@ -0,0 +1,69 @@
+package com.example.smartshop.entities;
+
+import org.hibernate.id.IdentifierGeneratorHelper;
+import org.hibernate.id.IntegralDataTypeHolder;
+import org.hibernate.id.enhanced.AccessCallback;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.OptimizerFactory;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.smartshop.entities.PooledIdEntity.ALLOCATION_SIZE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs Hibernate's pooled optimizer against an in-memory id_sequences row, the way the
+ * table generator drives it: each block reads next_val and bumps it by ALLOCATION_SIZE.
+ */
+class PooledIdEntityTest {
+
+    // Highest id already in orders / order_items
+    private static final long EXISTING_MAX_ID = 1234;
+
+    @Test
+    void documentedSeedStartsAboveThePopulatedTableOnEveryNode() {
+        AtomicLong nextVal = new AtomicLong(EXISTING_MAX_ID + ALLOCATION_SIZE + 1);
+        Optimizer first = pooledOptimizer();
+        Optimizer second = pooledOptimizer();
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3 * ALLOCATION_SIZE; i++) {
+            ids.add(generate(first, nextVal));
+            ids.add(generate(second, nextVal));
+        }
+
+        assertThat(ids).allMatch(id -> id > EXISTING_MAX_ID).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void seedOfMaxPlusOneWouldReuseExistingIds() {
+        AtomicLong nextVal = new AtomicLong(EXISTING_MAX_ID + 1);
+
+        assertThat(generate(pooledOptimizer(), nextVal)).isLessThanOrEqualTo(EXISTING_MAX_ID);
+    }
+
+    private Optimizer pooledOptimizer() {
+        // No initial_value on the @TableGenerator, so the generator passes -1
+        return OptimizerFactory.buildOptimizer(StandardOptimizerDescriptor.POOLED, Long.class, ALLOCATION_SIZE, -1);
+    }
+
+    private long generate(Optimizer optimizer, AtomicLong nextVal) {
+        AccessCallback table = new AccessCallback() {
+            @Override
+            public IntegralDataTypeHolder getNextValue() {
+                return IdentifierGeneratorHelper.getIntegralDataTypeHolder(Long.class)
+                        .initialize(nextVal.getAndAdd(ALLOCATION_SIZE));
+            }
+
+            @Override
+            public String getTenantIdentifier() {
+                return null;
+            }
+        };
+        return ((Number) optimizer.generate(table)).longValue();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.smartshop.services.serviceimpl;
+
+import com.example.smartshop.commons.enums.Role;
+import com.example.smartshop.entities.UserEntity;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class JWTServiceImplTest {
+
+    private final JWTServiceImpl jwtService = new JWTServiceImpl();
+
+    private JwtParser jwtParser;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(jwtService, "SECRET_KEY", "a-test-secret-key-of-at-least-32-bytes");
+        ReflectionTestUtils.setField(jwtService, "claimsCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(jwtService, "meterRegistry", new SimpleMeterRegistry());
+        jwtService.init();
+
+        // Counts signature verifications
+        jwtParser = spy((JwtParser) ReflectionTestUtils.getField(jwtService, "jwtParser"));
+        ReflectionTestUtils.setField(jwtService, "jwtParser", jwtParser);
+    }
+
+    @Test
+    void repeatedTokenIsParsedAndVerifiedOnce() {
+        String token = jwtService.generateTokenWithUserInfo(user());
+
+        Claims first = jwtService.extractAllClaims(token);
+        assertThat(jwtService.extractEmail(token)).isEqualTo("customer@example.com");
+        assertThat(jwtService.isTokenExpired(token)).isFalse();
+
+        assertThat(jwtService.extractAllClaims(token)).isSameAs(first);
+        verify(jwtParser, times(1)).parseClaimsJws(token);
+    }
+
+    @Test
+    void tokenWithABadSignatureIsVerifiedOnEveryCall() {
+        String token = jwtService.generateTokenWithUserInfo(user());
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertThatThrownBy(() -> jwtService.extractAllClaims(tampered)).isInstanceOf(JwtException.class);
+        assertThatThrownBy(() -> jwtService.extractAllClaims(tampered)).isInstanceOf(JwtException.class);
+        verify(jwtParser, times(2)).parseClaimsJws(tampered);
+    }
+
+    private UserEntity user() {
+        return UserEntity.builder()
+                .id(7L)
+                .email("customer@example.com")
+                .role(Role.CUSTOMER)
+                .tokenVersion(2L)
+                .build();
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.smartshop.services.serviceimpl;
+
+import com.example.smartshop.commons.exceptions.InsufficientStockException;
+import com.example.smartshop.models.dtos.requets.PurchaseRequest;
+import com.example.smartshop.models.dtos.responses.UserResponse;
+import com.example.smartshop.repositories.UserRepository;
+import com.example.smartshop.services.InventoryLogPipeline;
+import com.example.smartshop.services.StockUpdateService;
+import com.example.smartshop.services.StockUpdateService.StockChange;
+import com.example.smartshop.services.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PurchaseCombinerImplTest {
+
+    private static final long PRODUCT_ID = 1L;
+    private static final long CUSTOMER_ID = 5L;
+
+    @Mock
+    private StockUpdateService stockUpdateService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private InventoryLogPipeline inventoryLogPipeline;
+
+    @InjectMocks
+    private PurchaseCombinerImpl purchaseCombiner;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(purchaseCombiner, "transactionTemplate",
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(purchaseCombiner, "meterRegistry", new SimpleMeterRegistry());
+        // The batch closes when the third purchase joins, long before the window ends
+        ReflectionTestUtils.setField(purchaseCombiner, "maxBatchSize", 3);
+        ReflectionTestUtils.setField(purchaseCombiner, "windowMillis", 10_000L);
+        purchaseCombiner.init();
+    }
+
+    @Test
+    void shortStockIsAdmittedInArrivalOrder() throws Exception {
+        when(userService.getUserById(CUSTOMER_ID)).thenReturn(UserResponse.builder().id(CUSTOMER_ID).name("Lan").build());
+        when(stockUpdateService.applyDelta(PRODUCT_ID, -8))
+                .thenThrow(new InsufficientStockException(PRODUCT_ID, 8, 4));
+        // First (2) and third (1) fit into 4; the second (5) does not
+        when(stockUpdateService.applyDelta(PRODUCT_ID, -3)).thenReturn(new StockChange(null, 4, 1));
+
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        try {
+            CompletableFuture<Integer> first = arrive(callers, 2);
+            CompletableFuture<Integer> second = arrive(callers, 5);
+            CompletableFuture<Integer> third = arrive(callers, 1);
+
+            // Stock values chained as if the admitted purchases ran one after another
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(2);
+            assertThat(third.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+            assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(InsufficientStockException.class);
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    /**
+     * Starts a purchase and returns once it has joined the batch (its thread is parked:
+     * the leader waiting for the batch to fill, a follower waiting for its result)
+     */
+    private CompletableFuture<Integer> arrive(ExecutorService callers, int quantity) throws InterruptedException {
+        PurchaseRequest request = new PurchaseRequest();
+        request.setProductId(PRODUCT_ID);
+        request.setQuantity(quantity);
+        request.setOrderId((long) quantity);
+        request.setCustomerId(CUSTOMER_ID);
+
+        AtomicReference<Thread> caller = new AtomicReference<>();
+        CompletableFuture<Integer> result = CompletableFuture.supplyAsync(() -> {
+            caller.set(Thread.currentThread());
+            return purchaseCombiner.purchase(request);
+        }, callers);
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!result.isDone() && System.currentTimeMillis() < deadline) {
+            Thread thread = caller.get();
+            if (thread != null && (thread.getState() == Thread.State.WAITING
+                    || thread.getState() == Thread.State.TIMED_WAITING)) {
+                return result;
+            }
+            Thread.sleep(1);
+        }
+        return result;
+    }
+}
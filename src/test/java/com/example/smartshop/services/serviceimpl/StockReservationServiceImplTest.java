@@ -0,0 +1,213 @@
+package com.example.smartshop.services.serviceimpl;
+
+import com.example.smartshop.commons.exceptions.InsufficientStockException;
+import com.example.smartshop.services.RedisService;
+import com.example.smartshop.services.StockUpdateService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StockReservationServiceImplTest {
+
+    @Mock
+    private RedisService redisService;
+
+    @Mock
+    private StockUpdateService stockUpdateService;
+
+    @InjectMocks
+    private StockReservationServiceImpl stockReservationService;
+
+    @BeforeEach
+    void setUp() {
+        // Reconciliation runs inline instead of on the pool
+        ReflectionTestUtils.setField(stockReservationService, "stockReconcileExecutor", (TaskExecutor) Runnable::run);
+        ReflectionTestUtils.setField(stockReservationService, "enabled", true);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void reservationIsReleasedWhenTheTransactionRollsBack() {
+        when(redisService.reserveStock(List.of(1L, 2L), List.of(3, 1))).thenReturn(0L);
+
+        assertThat(stockReservationService.reserve(Map.of(2L, 1, 1L, 3))).isTrue();
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        verify(redisService).incrementStockIfPresent(List.of(1L, 2L), List.of(3, 1));
+    }
+
+    @Test
+    void reservationIsKeptWhenTheTransactionCommits() {
+        when(redisService.reserveStock(List.of(1L), List.of(3))).thenReturn(0L);
+
+        stockReservationService.reserve(Map.of(1L, 3));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        verify(redisService, never()).incrementStockIfPresent(anyList(), anyList());
+    }
+
+    @Test
+    void insufficientCounterRejectsWithoutCompensation() {
+        // Second product (index 2) cannot be covered
+        when(redisService.reserveStock(List.of(1L, 2L), List.of(1, 5))).thenReturn(2L);
+        when(redisService.getStock(2L)).thenReturn(4);
+
+        assertThatThrownBy(() -> stockReservationService.reserve(Map.of(1L, 1, 2L, 5)))
+                .isInstanceOfSatisfying(InsufficientStockException.class, e -> {
+                    assertThat(e.getProductId()).isEqualTo(2L);
+                    assertThat(e.getAvailable()).isEqualTo(4);
+                });
+        assertThat(TransactionSynchronizationManager.getSynchronizations()).isEmpty();
+    }
+
+    @Test
+    void missingCounterIsSeededWithoutHeldUnitsAndRetried() {
+        when(redisService.reserveStock(List.of(7L), List.of(2))).thenReturn(-1L, 0L);
+        when(stockUpdateService.findCurrentStock(7L)).thenReturn(Optional.of(10));
+        when(redisService.getHeldStock(7L)).thenReturn(3);
+
+        assertThat(stockReservationService.reserve(Map.of(7L, 2))).isTrue();
+
+        verify(redisService).initStockIfAbsent(7L, 7);
+    }
+
+    @Test
+    void redisFailureFallsBackToDatabaseLocking() {
+        when(redisService.reserveStock(anyList(), anyList())).thenThrow(new IllegalStateException("connection refused"));
+
+        assertThat(stockReservationService.reserve(Map.of(1L, 1))).isFalse();
+    }
+
+    @Test
+    void reconcileRunsAfterTheRollbackReleaseAndOnlyLowersTheCounter() {
+        when(redisService.reserveStock(List.of(1L), List.of(3))).thenReturn(0L);
+        when(stockUpdateService.findCurrentStock(1L)).thenReturn(Optional.of(5));
+        when(redisService.getHeldStock(1L)).thenReturn(2);
+
+        stockReservationService.reserve(Map.of(1L, 3));
+        // Database rejected what Redis admitted
+        stockReservationService.reconcile(1L);
+        verify(redisService, never()).lowerStockTo(anyLong(), anyInt());
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        InOrder order = inOrder(redisService);
+        order.verify(redisService).incrementStockIfPresent(List.of(1L), List.of(3));
+        order.verify(redisService).lowerStockTo(1L, 3);
+    }
+
+    @Test
+    void reconcileOutsideATransactionEvictsTheCounterOfADeletedProduct() {
+        TransactionSynchronizationManager.clearSynchronization();
+        when(stockUpdateService.findCurrentStock(9L)).thenReturn(Optional.empty());
+
+        stockReservationService.reconcile(9L);
+
+        verify(redisService).evictStock(9L);
+        verify(redisService, never()).lowerStockTo(any(), anyInt());
+    }
+
+    @Test
+    void raisedStockIsSeededFromTheCommittedValueOnceTheOldCounterIsDropped() {
+        // Admin raises stock 0 -> 100 while a counter of 0 exists
+        stockReservationService.resetStock(4L);
+        verify(redisService, never()).evictStock(anyLong());
+
+        commit();
+        verify(redisService).evictStock(4L);
+
+        when(redisService.getStocks(List.of(4L))).thenReturn(Map.of());
+        when(stockUpdateService.findCurrentStocks(List.of(4L))).thenReturn(Map.of(4L, 100));
+        when(redisService.getHeldStock(4L)).thenReturn(0);
+
+        assertThat(stockReservationService.getLiveStock(List.of(4L))).containsEntry(4L, 100);
+        verify(redisService).initStockIfAbsent(4L, 100);
+    }
+
+    @Test
+    void counterIsKeptWhenTheStockUpdateRollsBack() {
+        stockReservationService.resetStock(4L);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        verify(redisService, never()).evictStock(anyLong());
+    }
+
+    @Test
+    void stockSyncsOfTwoCommitsAddUpWhenTheirCallbacksRunInReverseOrder() {
+        ReflectionTestUtils.setField(stockReservationService, "enabled", false);
+
+        // Purchase 10 -> 8 commits first, restock 8 -> 13 second
+        stockReservationService.syncStock(4L, -2);
+        List<TransactionSynchronization> purchase = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+        stockReservationService.syncStock(4L, 5);
+        List<TransactionSynchronization> restock = TransactionSynchronizationManager.getSynchronizations();
+
+        restock.forEach(TransactionSynchronization::afterCommit);
+        purchase.forEach(TransactionSynchronization::afterCommit);
+
+        InOrder order = inOrder(redisService);
+        order.verify(redisService).incrementStockIfPresent(List.of(4L), List.of(5));
+        order.verify(redisService).incrementStockIfPresent(List.of(4L), List.of(-2));
+        verify(redisService, never()).updateStock(anyLong(), anyInt());
+    }
+
+    @Test
+    void coldPageLoadsMissingCountersInOneQueryAndShowsDatabaseStockWhileRedisIsDown() {
+        when(redisService.getStocks(List.of(1L, 2L, 3L))).thenReturn(Map.of(1L, 5));
+        when(stockUpdateService.findCurrentStocks(List.of(2L, 3L))).thenReturn(Map.of(2L, 8, 3L, 9));
+        when(redisService.getHeldStock(anyLong())).thenThrow(new IllegalStateException("connection refused"));
+
+        assertThat(stockReservationService.getLiveStock(List.of(1L, 2L, 3L)))
+                .containsExactlyInAnyOrderEntriesOf(Map.of(1L, 5, 2L, 8, 3L, 9));
+        verify(stockUpdateService, never()).findCurrentStock(anyLong());
+        // Seeding stops at the first Redis failure
+        verify(redisService).getHeldStock(anyLong());
+    }
+
+    private void commit() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+    }
+
+    private void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+        TransactionSynchronizationManager.initSynchronization();
+    }
+}
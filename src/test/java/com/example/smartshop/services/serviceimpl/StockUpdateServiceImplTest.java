@@ -0,0 +1,176 @@
+package com.example.smartshop.services.serviceimpl;
+
+import com.example.smartshop.commons.enums.StockUpdateStrategy;
+import com.example.smartshop.commons.exceptions.InsufficientStockException;
+import com.example.smartshop.commons.exceptions.ProductNotFoundException;
+import com.example.smartshop.entities.ProductEntity;
+import com.example.smartshop.repositories.ProductRepository;
+import com.example.smartshop.services.ShardedStockService;
+import com.example.smartshop.services.StockUpdateService.StockChange;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StockUpdateServiceImplTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ShardedStockService shardedStockService;
+
+    @InjectMocks
+    private StockUpdateServiceImpl stockUpdateService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(stockUpdateService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(stockUpdateService, "maxRetries", 3);
+        ReflectionTestUtils.setField(stockUpdateService, "backoffMillis", 0L);
+        ReflectionTestUtils.setField(stockUpdateService, "escalationThreshold", 0.3);
+        ReflectionTestUtils.setField(stockUpdateService, "escalationMinSamples", 20);
+        ReflectionTestUtils.setField(stockUpdateService, "escalationMillis", 60_000L);
+        stockUpdateService.initMetrics();
+    }
+
+    // ==================== ATOMIC ====================
+
+    @Test
+    void atomicDeltaReturnsTheValuesAroundTheUpdate() {
+        useStrategy(StockUpdateStrategy.ATOMIC);
+        when(productRepository.addStockIfSufficient(1L, -3)).thenReturn(1);
+        when(productRepository.findLastUpdatedStock()).thenReturn(7L);
+
+        StockChange change = stockUpdateService.applyDelta(1L, -3);
+
+        assertThat(change.getStockBefore()).isEqualTo(10);
+        assertThat(change.getStockAfter()).isEqualTo(7);
+    }
+
+    @Test
+    void atomicDeltaWithInsufficientStockReportsWhatIsAvailable() {
+        useStrategy(StockUpdateStrategy.ATOMIC);
+        when(productRepository.addStockIfSufficient(1L, -5)).thenReturn(0);
+        when(productRepository.findStockById(1L)).thenReturn(Optional.of(2));
+
+        assertThatThrownBy(() -> stockUpdateService.applyDelta(1L, -5))
+                .isInstanceOfSatisfying(InsufficientStockException.class, e -> {
+                    assertThat(e.getRequested()).isEqualTo(5);
+                    assertThat(e.getAvailable()).isEqualTo(2);
+                });
+        verify(productRepository, never()).findLastUpdatedStock();
+    }
+
+    @Test
+    void atomicDeltaOnAMissingProductIsNotFound() {
+        useStrategy(StockUpdateStrategy.ATOMIC);
+        when(productRepository.addStockIfSufficient(1L, -1)).thenReturn(0);
+        when(productRepository.findStockById(1L)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> stockUpdateService.applyDelta(1L, -1))
+                .isInstanceOf(ProductNotFoundException.class);
+    }
+
+    // ==================== OPTIMISTIC ====================
+
+    @Test
+    void optimisticDeltaWithInsufficientStockNeverWrites() {
+        useStrategy(StockUpdateStrategy.OPTIMISTIC);
+        when(productRepository.findStockVersionById(1L)).thenReturn(Optional.of(stockVersion(2, 4L)));
+
+        assertThatThrownBy(() -> stockUpdateService.applyDelta(1L, -5))
+                .isInstanceOfSatisfying(InsufficientStockException.class,
+                        e -> assertThat(e.getAvailable()).isEqualTo(2));
+        verify(productRepository, never()).updateStockIfVersion(anyLong(), anyLong(), anyInt());
+        verify(productRepository, never()).findByIdForUpdate(anyLong());
+    }
+
+    @Test
+    void optimisticConflictIsRetriedWithTheNewVersion() {
+        useStrategy(StockUpdateStrategy.OPTIMISTIC);
+        when(productRepository.findStockVersionById(1L))
+                .thenReturn(Optional.of(stockVersion(10, 4L)), Optional.of(stockVersion(9, 5L)));
+        when(productRepository.updateStockIfVersion(1L, 4L, 7)).thenReturn(0);
+        when(productRepository.updateStockIfVersion(1L, 5L, 6)).thenReturn(1);
+
+        StockChange change = stockUpdateService.applyDelta(1L, -3);
+
+        assertThat(change.getStockBefore()).isEqualTo(9);
+        assertThat(change.getStockAfter()).isEqualTo(6);
+    }
+
+    @Test
+    void exhaustedRetriesFallBackToTheRowLock() {
+        useStrategy(StockUpdateStrategy.OPTIMISTIC);
+        when(productRepository.findStockVersionById(1L)).thenReturn(Optional.of(stockVersion(10, 4L)));
+        when(productRepository.updateStockIfVersion(1L, 4L, 7)).thenReturn(0);
+        when(productRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(product(1L, 2)));
+
+        // Stock dropped meanwhile: the locked read decides
+        assertThatThrownBy(() -> stockUpdateService.applyDelta(1L, -3))
+                .isInstanceOfSatisfying(InsufficientStockException.class,
+                        e -> assertThat(e.getAvailable()).isEqualTo(2));
+        verify(productRepository, times(4)).updateStockIfVersion(1L, 4L, 7);
+    }
+
+    @Test
+    void conflictAfterAnEarlierRowIsLockedFallsBackWithoutRetrying() {
+        useStrategy(StockUpdateStrategy.OPTIMISTIC);
+        when(productRepository.findStockVersionById(1L)).thenReturn(Optional.of(stockVersion(10, 1L)));
+        when(productRepository.updateStockIfVersion(1L, 1L, 9)).thenReturn(1);
+        when(productRepository.findStockVersionById(2L)).thenReturn(Optional.of(stockVersion(10, 1L)));
+        when(productRepository.updateStockIfVersion(2L, 1L, 8)).thenReturn(0);
+        when(productRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(product(2L, 10)));
+        when(productRepository.findAllById(Set.of(1L, 2L))).thenReturn(List.of(product(1L, 9), product(2L, 8)));
+
+        List<StockChange> changes = stockUpdateService.deduct(Map.of(1L, 1, 2L, 2));
+
+        assertThat(changes).extracting(StockChange::getStockAfter).containsExactly(9, 8);
+        verify(productRepository, times(1)).updateStockIfVersion(2L, 1L, 8);
+    }
+
+    private static ProductRepository.StockVersion stockVersion(int stock, long version) {
+        return new ProductRepository.StockVersion() {
+            @Override
+            public Integer getStock() {
+                return stock;
+            }
+
+            @Override
+            public Long getVersion() {
+                return version;
+            }
+        };
+    }
+
+    private static ProductEntity product(Long id, int stock) {
+        ProductEntity product = new ProductEntity();
+        product.setId(id);
+        product.setStock(stock);
+        return product;
+    }
+
+    private void useStrategy(StockUpdateStrategy strategy) {
+        ReflectionTestUtils.setField(stockUpdateService, "strategy", strategy);
+    }
+}
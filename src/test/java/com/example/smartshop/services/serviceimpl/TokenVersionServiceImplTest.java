@@ -0,0 +1,102 @@
+package com.example.smartshop.services.serviceimpl;
+
+import com.example.smartshop.configs.RedisCircuitBreaker;
+import com.example.smartshop.repositories.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TokenVersionServiceImplTest {
+
+    private static final String VERSION_KEY = "auth:token-version";
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Mock
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    @Mock
+    private TransactionTemplate readCommittedTransactionTemplate;
+
+    @Mock
+    private TaskScheduler cacheMaintenanceScheduler;
+
+    @InjectMocks
+    private TokenVersionServiceImpl tokenVersionService;
+
+    private Runnable resync;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(tokenVersionService, "localMaxSize", 100L);
+        ReflectionTestUtils.setField(tokenVersionService, "resyncMillis", 30000L);
+        tokenVersionService.start();
+
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(cacheMaintenanceScheduler).scheduleWithFixedDelay(task.capture(), any(Duration.class));
+        resync = task.getValue();
+    }
+
+    @Test
+    void staleRedisCopyLosesToTheDatabase() {
+        when(stringRedisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+        when(userRepository.findTokenVersionById(7L)).thenReturn(Optional.of(3L));
+        when(hashOperations.get(VERSION_KEY, "7")).thenReturn("2");
+
+        assertThat(tokenVersionService.current(7L)).isEqualTo(3L);
+        verify(stringRedisTemplate).execute(any(RedisScript.class), eq(List.of(VERSION_KEY)), eq("7"), eq("3"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedPublishIsRetriedByTheNextResync() {
+        when(readCommittedTransactionTemplate.execute(any()))
+                .thenAnswer(invocation -> ((TransactionCallback<Long>) invocation.getArgument(0)).doInTransaction(null));
+        when(userRepository.incrementTokenVersion(7L)).thenReturn(1);
+        when(userRepository.findTokenVersionById(7L)).thenReturn(Optional.of(4L));
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenThrow(new IllegalStateException("connection refused"))
+                .thenReturn(1L);
+        when(stringRedisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.multiGet(VERSION_KEY, List.<Object>of("7"))).thenReturn(List.<Object>of("4"));
+
+        assertThat(tokenVersionService.revokeAll(7L)).isEqualTo(4L);
+        resync.run();
+
+        verify(stringRedisTemplate).convertAndSend(VERSION_KEY, "7:4");
+    }
+}